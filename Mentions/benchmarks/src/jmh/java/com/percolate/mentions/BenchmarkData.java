@@ -0,0 +1,131 @@
+package com.percolate.mentions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible test data for the benchmarks.
+ */
+final class BenchmarkData {
+
+    private static final String[] SYLLABLES = {"al", "an", "be", "bri", "ca", "da", "el", "fa",
+            "gi", "ha", "is", "jo", "ka", "li", "ma", "ne", "ol", "pa", "qui", "ro", "sa", "ta",
+            "ul", "vi", "wa", "xe", "ya", "zo", "ton", "son", "ley", "mer", "dor", "lin"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Generates <code>count</code> mentions with a first and last name of 2 to 4 syllables.
+     *
+     * @param count int     The number of mentions.
+     * @param seed  long    Seed of the random names.
+     * @return List<BenchmarkMention>   The mentions.
+     */
+    static List<BenchmarkMention> mentions(final int count, final long seed) {
+        final Random random = new Random(seed);
+        final List<BenchmarkMention> mentions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            mentions.add(new BenchmarkMention(name(random) + " " + name(random)));
+        }
+        return mentions;
+    }
+
+    /**
+     * Generates <code>count</code> mentions with a single name of 2 to 4 syllables, short enough
+     * to fit thousands of them in a document.
+     *
+     * @param count int     The number of mentions.
+     * @param seed  long    Seed of the random names.
+     * @return List<BenchmarkMention>   The mentions.
+     */
+    static List<BenchmarkMention> handles(final int count, final long seed) {
+        final Random random = new Random(seed);
+        final List<BenchmarkMention> mentions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            mentions.add(new BenchmarkMention(name(random)));
+        }
+        return mentions;
+    }
+
+    /**
+     * Generates <code>length</code> characters of lower case words separated by spaces.
+     *
+     * @param length    int     The number of characters.
+     * @param seed      long    Seed of the random words.
+     * @return String   The text.
+     */
+    static String words(final int length, final long seed) {
+        final StringBuilder text = new StringBuilder(length);
+        appendWords(text, length, new Random(seed));
+        return text.toString();
+    }
+
+    /**
+     * Generates a document of <code>length</code> characters with the <code>mentions</code>
+     * spread evenly between words, and sets their offsets.
+     *
+     * @param length    int                     The number of characters.
+     * @param mentions  List<BenchmarkMention>  The mentions to place in the document.
+     * @param seed      long                    Seed of the random words.
+     * @return String   The document.
+     */
+    static String document(final int length, final List<BenchmarkMention> mentions,
+                           final long seed) {
+        final Random random = new Random(seed);
+        final StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < mentions.size(); i++) {
+            final BenchmarkMention mention = mentions.get(i);
+            final int slotEnd = (int) ((long) length * (i + 1) / mentions.size());
+            mention.setMentionOffset(text.length());
+            text.append(mention.getMentionName()).append(' ');
+            if (text.length() > slotEnd) {
+                throw new IllegalArgumentException(mentions.size() + " mentions do not fit in "
+                        + length + " characters.");
+            }
+            appendWords(text, slotEnd, random);
+        }
+        appendWords(text, length, random);
+        return text.toString();
+    }
+
+    /**
+     * Returns a query for the name of a random mention, cut to 3 to 8 characters, with a typo
+     * every other query.
+     *
+     * @param mentions  List<BenchmarkMention>  The mentions to pick from.
+     * @param random    Random                  Source of randomness.
+     * @return String   A query.
+     */
+    static String query(final List<BenchmarkMention> mentions, final Random random) {
+        final String name = mentions.get(random.nextInt(mentions.size())).getMentionName();
+        final StringBuilder query = new StringBuilder(
+                name.substring(0, Math.min(name.indexOf(' '), 3 + random.nextInt(6))));
+        if (random.nextBoolean() && query.length() > 3) {
+            final int position = 1 + random.nextInt(query.length() - 1);
+            query.setCharAt(position, (char) ('a' + random.nextInt(26)));
+        }
+        return query.toString();
+    }
+
+    private static void appendWords(final StringBuilder text, final int length,
+                                    final Random random) {
+        while (text.length() < length) {
+            text.append(SYLLABLES[random.nextInt(SYLLABLES.length)])
+                    .append(SYLLABLES[random.nextInt(SYLLABLES.length)])
+                    .append(' ');
+        }
+        text.setLength(length);
+    }
+
+    private static String name(final Random random) {
+        final StringBuilder name = new StringBuilder();
+        final int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+}
@@ -0,0 +1,536 @@
+package com.percolate.mentions;
+
+import android.text.Editable;
+import android.text.InputFilter;
+import android.text.Spanned;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Pure-JVM {@link Editable} used by the benchmarks in place of
+ * {@link android.text.SpannableStringBuilder}, which needs the Android runtime. Like
+ * {@link android.text.SpannableStringBuilder}, the text is kept in a buffer with a gap at the last
+ * edit, and span boundaries after the gap are stored with the gap length added, so an edit does
+ * not shift the spans after it. Spans are kept sorted by start, and an edit or a
+ * {@link #getSpans(int, int, Class)} call only visits the spans starting within the longest span
+ * length before the position. Boundaries are moved the way
+ * {@link android.text.SpannableStringBuilder} moves point and mark boundaries. Filters are stored
+ * but not applied and span watchers are not notified.
+ * <p/>
+ * The framework class walks all of its spans on some edits and keeps them in an interval tree,
+ * so the span bookkeeping measured here is cheaper than on a device. The keystroke benchmarks
+ * measure the work of the library on top of the text, not the cost of editing a long spanned
+ * text on a device.
+ */
+class BenchmarkEditable implements Editable {
+
+    private static final InputFilter[] NO_FILTERS = new InputFilter[0];
+
+    private static final int POINT = 2;
+
+    private static final int BOUNDARY_MASK = 0x03;
+
+    private static final int START_SHIFT = 4;
+
+    private static final int MIN_GAP = 16;
+
+    /**
+     * The text, with <code>gapLength</code> unused chars at <code>gapStart</code>.
+     */
+    private char[] buffer;
+
+    private int gapStart;
+
+    /**
+     * Always greater than 0, so a boundary at the gap can be stored before the gap for a mark
+     * and after it for a point.
+     */
+    private int gapLength;
+
+    /**
+     * The spans sorted by their stored start, up to <code>spanCount</code>.
+     */
+    private Span[] spans;
+
+    private int spanCount;
+
+    private final Map<Object, Span> spanIndex;
+
+    /**
+     * Not less than the length of any span, so a span containing a position starts at most this
+     * far before it.
+     */
+    private int maxSpanLength;
+
+    private InputFilter[] filters;
+
+    BenchmarkEditable(final CharSequence text) {
+        final int length = text.length();
+        this.buffer = new char[length + MIN_GAP];
+        for (int i = 0; i < length; i++) {
+            buffer[i] = text.charAt(i);
+        }
+        this.gapStart = length;
+        this.gapLength = MIN_GAP;
+        this.spans = new Span[8];
+        this.spanIndex = new IdentityHashMap<>();
+        this.filters = NO_FILTERS;
+    }
+
+    @Override
+    public Editable replace(final int st, final int en, final CharSequence source, final int start,
+                            final int end) {
+        checkRange(st, en);
+        moveGapTo(en);
+
+        // The replaced text is right before the gap. Boundaries in it move to the start of the
+        // gap if they are marks, or to its end if they are points. The end of the gap is where
+        // the new text ends once it is inserted.
+        final int gapEnd = gapStart + gapLength;
+        final int newGapLength = gapLength + en - st;
+        final int from = lowerBound(Math.max(0, st - maxSpanLength));
+        int to = upperBound(gapEnd);
+        for (int i = to - 1; i >= from; i--) {
+            final Span span = spans[i];
+            final boolean wasEmpty = toOffset(span.start) == toOffset(span.end);
+            span.start = collapse(span.start, st, en, gapEnd,
+                    (span.flags >> START_SHIFT & BOUNDARY_MASK) == POINT);
+            span.end = collapse(span.end, st, en, gapEnd, (span.flags & BOUNDARY_MASK) == POINT);
+
+            // Like SpannableStringBuilder, drop exclusive spans whose text was removed.
+            if (!wasEmpty && toOffset(span.start, st, newGapLength)
+                    == toOffset(span.end, st, newGapLength)
+                    && (span.flags & Spanned.SPAN_POINT_MARK_MASK)
+                    == Spanned.SPAN_EXCLUSIVE_EXCLUSIVE) {
+                removeSpanAt(i);
+                to--;
+            }
+        }
+        gapStart = st;
+        gapLength = newGapLength;
+        sort(from, to);
+
+        final int count = end - start;
+        if (count >= gapLength) {
+            grow(count);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer[gapStart + i] = source.charAt(start + i);
+        }
+        gapStart += count;
+        gapLength -= count;
+
+        // Spans containing the edit may be longer now.
+        for (int i = from; i < to; i++) {
+            maxSpanLength = Math.max(maxSpanLength,
+                    toOffset(spans[i].end) - toOffset(spans[i].start));
+        }
+        return this;
+    }
+
+    /**
+     * Moves a stored boundary in the replaced range <code>[st, en]</code>, right before the gap.
+     */
+    private static int collapse(final int stored, final int st, final int en, final int gapEnd,
+                                final boolean point) {
+        if (stored < st || stored > en) {
+            return stored;
+        }
+        return point ? gapEnd : st;
+    }
+
+    /**
+     * Moves the gap to <code>where</code>, updating the stored boundaries of the spans between
+     * the old and the new position.
+     */
+    private void moveGapTo(final int where) {
+        if (where == gapStart) {
+            return;
+        }
+        final int gapEnd = gapStart + gapLength;
+        final int from;
+        final int to;
+        if (where < gapStart) {
+            // Including the spans starting with a point at the gap, whose end may be before it.
+            from = lowerBound(Math.max(0, where - maxSpanLength));
+            to = upperBound(gapEnd);
+            System.arraycopy(buffer, where, buffer, where + gapLength, gapStart - where);
+            for (int i = from; i < to; i++) {
+                final Span span = spans[i];
+                span.start = moveBehindGap(span.start, where,
+                        (span.flags >> START_SHIFT & BOUNDARY_MASK) == POINT);
+                span.end = moveBehindGap(span.end, where, (span.flags & BOUNDARY_MASK) == POINT);
+            }
+        } else {
+            from = lowerBound(Math.max(0, gapStart - maxSpanLength));
+            to = upperBound(where + gapLength);
+            System.arraycopy(buffer, gapEnd, buffer, gapStart, where - gapStart);
+            for (int i = from; i < to; i++) {
+                final Span span = spans[i];
+                span.start = moveBeforeGap(span.start, gapEnd, where,
+                        (span.flags >> START_SHIFT & BOUNDARY_MASK) == POINT);
+                span.end = moveBeforeGap(span.end, gapEnd, where,
+                        (span.flags & BOUNDARY_MASK) == POINT);
+            }
+        }
+        gapStart = where;
+        sort(from, to);
+    }
+
+    /**
+     * Updates a stored boundary when the gap moves back to <code>where</code>.
+     */
+    private int moveBehindGap(final int stored, final int where, final boolean point) {
+        if (stored > where && stored <= gapStart || stored == where && point) {
+            return stored + gapLength;
+        }
+        return stored;
+    }
+
+    /**
+     * Updates a stored boundary when the gap moves forward to <code>where</code>.
+     */
+    private int moveBeforeGap(final int stored, final int gapEnd, final int where,
+                              final boolean point) {
+        final int whereStored = where + gapLength;
+        if (stored >= gapEnd && stored < whereStored || stored == whereStored && !point) {
+            return stored - gapLength;
+        }
+        return stored;
+    }
+
+    /**
+     * Makes the gap longer than <code>count</code>. Shifts all the boundaries after the gap.
+     */
+    private void grow(final int count) {
+        final int length = length();
+        final int newGapLength = Math.max(count + MIN_GAP, length);
+        final char[] newBuffer = new char[length + newGapLength];
+        System.arraycopy(buffer, 0, newBuffer, 0, gapStart);
+        System.arraycopy(buffer, gapStart + gapLength, newBuffer, gapStart + newGapLength,
+                length - gapStart);
+        final int delta = newGapLength - gapLength;
+        for (int i = 0; i < spanCount; i++) {
+            if (spans[i].start > gapStart) {
+                spans[i].start += delta;
+            }
+            if (spans[i].end > gapStart) {
+                spans[i].end += delta;
+            }
+        }
+        buffer = newBuffer;
+        gapLength = newGapLength;
+    }
+
+    @Override
+    public Editable replace(final int st, final int en, final CharSequence text) {
+        return replace(st, en, text, 0, text.length());
+    }
+
+    @Override
+    public Editable insert(final int where, final CharSequence text, final int start,
+                           final int end) {
+        return replace(where, where, text, start, end);
+    }
+
+    @Override
+    public Editable insert(final int where, final CharSequence text) {
+        return replace(where, where, text, 0, text.length());
+    }
+
+    @Override
+    public Editable delete(final int st, final int en) {
+        return replace(st, en, "", 0, 0);
+    }
+
+    @Override
+    public Editable append(final CharSequence text) {
+        return replace(length(), length(), text, 0, text.length());
+    }
+
+    @Override
+    public Editable append(final CharSequence text, final int start, final int end) {
+        return replace(length(), length(), text, start, end);
+    }
+
+    @Override
+    public Editable append(final char c) {
+        return append(String.valueOf(c));
+    }
+
+    @Override
+    public void clear() {
+        replace(0, length(), "", 0, 0);
+    }
+
+    @Override
+    public void clearSpans() {
+        Arrays.fill(spans, 0, spanCount, null);
+        spanIndex.clear();
+        spanCount = 0;
+        maxSpanLength = 0;
+    }
+
+    @Override
+    public void setFilters(final InputFilter[] filters) {
+        this.filters = filters;
+    }
+
+    @Override
+    public InputFilter[] getFilters() {
+        return filters;
+    }
+
+    @Override
+    public void setSpan(final Object what, final int start, final int end, final int flags) {
+        checkRange(start, end);
+        removeSpan(what);
+        final Span span = new Span(what, toStored(start, (flags >> START_SHIFT & BOUNDARY_MASK)
+                == POINT), toStored(end, (flags & BOUNDARY_MASK) == POINT), flags);
+        if (spanCount == spans.length) {
+            spans = Arrays.copyOf(spans, spanCount * 2);
+        }
+        final int index = upperBound(span.start);
+        System.arraycopy(spans, index, spans, index + 1, spanCount - index);
+        spans[index] = span;
+        spanCount++;
+        spanIndex.put(what, span);
+        maxSpanLength = Math.max(maxSpanLength, end - start);
+    }
+
+    @Override
+    public void removeSpan(final Object what) {
+        final Span span = spanIndex.get(what);
+        if (span != null) {
+            int index = lowerBound(span.start);
+            while (spans[index] != span) {
+                index++;
+            }
+            removeSpanAt(index);
+        }
+    }
+
+    private void removeSpanAt(final int index) {
+        spanIndex.remove(spans[index].what);
+        System.arraycopy(spans, index + 1, spans, index, spanCount - index - 1);
+        spans[--spanCount] = null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] getSpans(final int start, final int end, final Class<T> kind) {
+        final int from = lowerBound(toStored(Math.max(0, start - maxSpanLength), false));
+        final int to = upperBound(toStored(end, true));
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (overlaps(spans[i], start, end, kind)) {
+                count++;
+            }
+        }
+
+        final T[] result = (T[]) Array.newInstance(kind == null ? Object.class : kind, count);
+        count = 0;
+        for (int i = from; i < to; i++) {
+            if (overlaps(spans[i], start, end, kind)) {
+                result[count++] = (T) spans[i].what;
+            }
+        }
+        return result;
+    }
+
+    private boolean overlaps(final Span span, final int start, final int end,
+                             final Class<?> kind) {
+        final int spanStart = toOffset(span.start);
+        final int spanEnd = toOffset(span.end);
+        if (spanStart > end || spanEnd < start) {
+            return false;
+        }
+        // Non-empty spans only touching a non-empty range do not overlap it.
+        if (spanStart != spanEnd && start != end && (spanStart == end || spanEnd == start)) {
+            return false;
+        }
+        return kind == null || kind.isInstance(span.what);
+    }
+
+    @Override
+    public int getSpanStart(final Object what) {
+        final Span span = spanIndex.get(what);
+        return span == null ? -1 : toOffset(span.start);
+    }
+
+    @Override
+    public int getSpanEnd(final Object what) {
+        final Span span = spanIndex.get(what);
+        return span == null ? -1 : toOffset(span.end);
+    }
+
+    @Override
+    public int getSpanFlags(final Object what) {
+        final Span span = spanIndex.get(what);
+        return span == null ? 0 : span.flags;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public int nextSpanTransition(final int start, final int limit, final Class kind) {
+        final int from = lowerBound(toStored(Math.max(0, start - maxSpanLength), false));
+        final int to = upperBound(toStored(limit, true));
+        int next = limit;
+        for (int i = from; i < to; i++) {
+            if (kind == null || kind.isInstance(spans[i].what)) {
+                final int spanStart = toOffset(spans[i].start);
+                final int spanEnd = toOffset(spans[i].end);
+                if (spanStart > start && spanStart < next) {
+                    next = spanStart;
+                }
+                if (spanEnd > start && spanEnd < next) {
+                    next = spanEnd;
+                }
+            }
+        }
+        return next;
+    }
+
+    @Override
+    public void getChars(final int start, final int end, final char[] dest, final int destoff) {
+        checkRange(start, end);
+        if (end <= gapStart) {
+            System.arraycopy(buffer, start, dest, destoff, end - start);
+        } else if (start >= gapStart) {
+            System.arraycopy(buffer, start + gapLength, dest, destoff, end - start);
+        } else {
+            System.arraycopy(buffer, start, dest, destoff, gapStart - start);
+            System.arraycopy(buffer, gapStart + gapLength, dest, destoff + gapStart - start,
+                    end - gapStart);
+        }
+    }
+
+    @Override
+    public int length() {
+        return buffer.length - gapLength;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException("Index " + index + ", length " + length() + ".");
+        }
+        return index < gapStart ? buffer[index] : buffer[index + gapLength];
+    }
+
+    /**
+     * Unlike {@link android.text.SpannableStringBuilder}, the spans are not copied.
+     */
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        final char[] chars = new char[end - start];
+        getChars(start, end, chars, 0);
+        return new String(chars);
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length()).toString();
+    }
+
+    /**
+     * @return int  The stored form of the boundary at <code>offset</code>.
+     */
+    private int toStored(final int offset, final boolean point) {
+        return offset < gapStart || offset == gapStart && !point ? offset : offset + gapLength;
+    }
+
+    /**
+     * @return int  The offset of a stored boundary.
+     */
+    private int toOffset(final int stored) {
+        return toOffset(stored, gapStart, gapLength);
+    }
+
+    private static int toOffset(final int stored, final int gapStart, final int gapLength) {
+        return stored > gapStart ? stored - gapLength : stored;
+    }
+
+    /**
+     * @return int  The index of the first span whose stored start is not less than
+     *              <code>stored</code>.
+     */
+    private int lowerBound(final int stored) {
+        int low = 0;
+        int high = spanCount;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (spans[mid].start < stored) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return int  The index of the first span whose stored start is greater than
+     *              <code>stored</code>.
+     */
+    private int upperBound(final int stored) {
+        int low = 0;
+        int high = spanCount;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (spans[mid].start <= stored) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Restores the order of the spans in <code>[from, to)</code>, which are nearly sorted after
+     * their boundaries moved.
+     */
+    private void sort(final int from, final int to) {
+        for (int i = from + 1; i < to; i++) {
+            final Span span = spans[i];
+            int j = i;
+            while (j > from && spans[j - 1].start > span.start) {
+                spans[j] = spans[j - 1];
+                j--;
+            }
+            spans[j] = span;
+        }
+    }
+
+    private void checkRange(final int start, final int end) {
+        if (start < 0 || end < start || end > length()) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + ") is not in [0, "
+                    + length() + "].");
+        }
+    }
+
+    /**
+     * A span and its stored boundaries.
+     */
+    private static class Span {
+
+        final Object what;
+
+        int start;
+
+        int end;
+
+        final int flags;
+
+        Span(final Object what, final int start, final int end, final int flags) {
+            this.what = what;
+            this.start = start;
+            this.end = end;
+            this.flags = flags;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.percolate.mentions;
+
+/**
+ * Plain {@link Mentionable} used by the benchmarks.
+ */
+class BenchmarkMention implements Mentionable {
+
+    private String mentionName;
+
+    private int offset;
+
+    private int length;
+
+    BenchmarkMention(final String mentionName) {
+        this.mentionName = mentionName;
+        this.length = mentionName.length();
+    }
+
+    @Override
+    public int getMentionOffset() {
+        return offset;
+    }
+
+    @Override
+    public int getMentionLength() {
+        return length;
+    }
+
+    @Override
+    public String getMentionName() {
+        return mentionName;
+    }
+
+    @Override
+    public void setMentionOffset(int offset) {
+        this.offset = offset;
+    }
+
+    @Override
+    public void setMentionLength(int length) {
+        this.length = length;
+    }
+
+    @Override
+    public void setMentionName(String mentionName) {
+        this.mentionName = mentionName;
+    }
+}
@@ -0,0 +1,62 @@
+package com.percolate.mentions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to find the top 10 fuzzy matches for a query among <code>size</code> names,
+ * compared to the exact prefix search of {@link MentionSuggestionIndex}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FuzzyMentionMatcherBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int size;
+
+    private FuzzyMentionMatcher<BenchmarkMention> matcher;
+
+    private MentionSuggestionIndex<BenchmarkMention> index;
+
+    private String[] queries;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final List<BenchmarkMention> mentions = BenchmarkData.mentions(size, 42);
+        matcher = new FuzzyMentionMatcher<>(mentions);
+        index = new MentionSuggestionIndex<>(mentions);
+
+        final Random random = new Random(7);
+        queries = new String[256];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = BenchmarkData.query(mentions, random);
+        }
+    }
+
+    @Benchmark
+    public List<FuzzyMentionMatcher.Match<BenchmarkMention>> fuzzyMatch() {
+        return matcher.match(nextQuery(), 10);
+    }
+
+    @Benchmark
+    public List<BenchmarkMention> prefixSearch() {
+        return index.search(nextQuery(), 10);
+    }
+
+    private String nextQuery() {
+        return queries[next++ & (queries.length - 1)];
+    }
+}
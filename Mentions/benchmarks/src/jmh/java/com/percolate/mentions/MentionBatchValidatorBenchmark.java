@@ -0,0 +1,93 @@
+package com.percolate.mentions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many stored comments per second {@link MentionBatchValidator} validates with
+ * <code>threads</code> threads. Comments have about 300 characters and 3 mentions, one in ten
+ * had text inserted before its mentions and one in fifty lost a mention. Shifted mentions are
+ * only reported, so the records stay the same between invocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MentionBatchValidatorBenchmark {
+
+    private static final int RECORDS = 10000;
+
+    @Param({"1", "2", "4"})
+    int threads;
+
+    private List<MentionRecord<BenchmarkMention>> records;
+
+    private ExecutorService executor;
+
+    private MentionBatchValidator batchValidator;
+
+    @Setup
+    public void setUp() {
+        records = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            final List<BenchmarkMention> mentions = BenchmarkData.mentions(3, i);
+            String text = BenchmarkData.document(300, mentions, i);
+            if (i % 10 == 0) {
+                text = "Edited: " + text;
+            } else if (i % 50 == 1) {
+                text = text.replace(mentions.get(1).getMentionName(), "someone");
+            }
+            records.add(new Record(text, mentions));
+        }
+
+        executor = Executors.newFixedThreadPool(threads);
+        batchValidator = new MentionBatchValidator(new MentionValidator(false), executor, 256,
+                threads * 4);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public MentionBatchValidator.Summary validate() throws InterruptedException {
+        return batchValidator.validate(records.iterator(), null);
+    }
+
+    private static class Record implements MentionRecord<BenchmarkMention> {
+
+        private final String text;
+
+        private final List<BenchmarkMention> mentions;
+
+        Record(final String text, final List<BenchmarkMention> mentions) {
+            this.text = text;
+            this.mentions = mentions;
+        }
+
+        @Override
+        public CharSequence getText() {
+            return text;
+        }
+
+        @Override
+        public List<BenchmarkMention> getMentions() {
+            return mentions;
+        }
+    }
+}
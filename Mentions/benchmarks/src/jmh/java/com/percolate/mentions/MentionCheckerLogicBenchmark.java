@@ -0,0 +1,69 @@
+package com.percolate.mentions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the query check done on every keystroke by
+ * {@link MentionCheckerLogic#doMentionCheck()}, with the cursor at the end of a document of
+ * <code>length</code> characters, for '@' alone and for three trigger symbols.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MentionCheckerLogicBenchmark {
+
+    private static final int MAX_CHARACTERS = 13;
+
+    @Param({"100", "1000", "10000", "100000"})
+    int length;
+
+    @Param({"@", "@#+"})
+    String triggers;
+
+    /**
+     * Ends with a query being typed, " @Bre".
+     */
+    private BenchmarkEditable query;
+
+    /**
+     * Ends with a word and contains no '@' symbol.
+     */
+    private BenchmarkEditable noQuery;
+
+    @Setup
+    public void setUp() {
+        query = new BenchmarkEditable(BenchmarkData.words(length - " @Bre".length(), 42)
+                + " @Bre");
+        noQuery = new BenchmarkEditable(BenchmarkData.words(length, 42));
+    }
+
+    @Benchmark
+    public String query() {
+        return doMentionCheck(query);
+    }
+
+    @Benchmark
+    public String noQuery() {
+        return doMentionCheck(noQuery);
+    }
+
+    /**
+     * Same work as {@link MentionCheckerLogic#doMentionCheck()}, which needs an
+     * {@link android.widget.EditText}.
+     */
+    private String doMentionCheck(final BenchmarkEditable text) {
+        final int cursorPosition = text.length();
+        final int queryStart = MentionScanner.findQueryStart(text, cursorPosition,
+                MAX_CHARACTERS, triggers);
+        return queryStart == -1 ? "" : text.subSequence(queryStart, cursorPosition).toString();
+    }
+}
@@ -0,0 +1,147 @@
+package com.percolate.mentions;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding and decoding a feed of <code>comments</code> comments with
+ * {@link MentionEncoder}/{@link MentionDecoder} to the JSON form of the sample app, written with
+ * Gson. Comments have about 200 characters and 2 mentions of 200 people. The encoded sizes are
+ * printed when the benchmark starts. The feed is generated from fixed seeds, so they are exact
+ * byte counts which do not change between runs, forks or VMs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MentionCodecBenchmark {
+
+    private static final Type FEED_TYPE = new TypeToken<List<Comment>>() {
+    }.getType();
+
+    private static final MentionDecoder.Factory<BenchmarkMention> FACTORY =
+            new MentionDecoder.Factory<BenchmarkMention>() {
+                @Override
+                public BenchmarkMention createMention() {
+                    return new BenchmarkMention("");
+                }
+            };
+
+    @Param({"1000"})
+    int comments;
+
+    private List<Comment> feed;
+
+    private Gson gson;
+
+    private byte[] binary;
+
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        final List<BenchmarkMention> people = BenchmarkData.mentions(200, 42);
+        feed = new ArrayList<>(comments);
+        for (int i = 0; i < comments; i++) {
+            final List<BenchmarkMention> mentions = new ArrayList<>(2);
+            for (int j = 0; j < 2; j++) {
+                mentions.add(new BenchmarkMention(
+                        people.get((i * 7 + j * 13) % people.size()).getMentionName()));
+            }
+            feed.add(new Comment(BenchmarkData.document(200, mentions, i), mentions));
+        }
+        gson = new Gson();
+
+        binary = encodeBinary().toByteArray();
+        json = encodeJson().toByteArray();
+        System.out.printf("%nBinary: %d bytes, %.1f per comment. JSON: %d bytes, %.1f per comment."
+                + " Binary/JSON: %.2f%n", binary.length, (double) binary.length / comments,
+                json.length, (double) json.length / comments, (double) binary.length / json.length);
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream encodeBinary() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final MentionEncoder encoder = new MentionEncoder(out, true);
+        for (int i = 0; i < feed.size(); i++) {
+            encoder.write(feed.get(i));
+        }
+        encoder.close();
+        return out;
+    }
+
+    @Benchmark
+    public List<MentionRecord<BenchmarkMention>> decodeBinary() throws IOException {
+        final MentionDecoder<BenchmarkMention> decoder =
+                new MentionDecoder<>(new ByteArrayInputStream(binary), FACTORY);
+        final List<MentionRecord<BenchmarkMention>> records = new ArrayList<>(comments);
+        MentionRecord<BenchmarkMention> record;
+        while ((record = decoder.read()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream encodeJson() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Writer writer = new OutputStreamWriter(out, MentionEncoder.UTF_8);
+        gson.toJson(feed, FEED_TYPE, writer);
+        writer.close();
+        return out;
+    }
+
+    @Benchmark
+    public List<Comment> decodeJson() throws IOException {
+        final Reader reader = new InputStreamReader(new ByteArrayInputStream(json),
+                MentionEncoder.UTF_8);
+        final List<Comment> decoded = gson.fromJson(reader, FEED_TYPE);
+        reader.close();
+        return decoded;
+    }
+
+    /**
+     * A comment as stored by the sample app.
+     */
+    static class Comment implements MentionRecord<BenchmarkMention> {
+
+        private String comment;
+
+        private List<BenchmarkMention> mentions;
+
+        Comment(final String comment, final List<BenchmarkMention> mentions) {
+            this.comment = comment;
+            this.mentions = mentions;
+        }
+
+        @Override
+        public CharSequence getText() {
+            return comment;
+        }
+
+        @Override
+        public List<BenchmarkMention> getMentions() {
+            return mentions;
+        }
+    }
+}
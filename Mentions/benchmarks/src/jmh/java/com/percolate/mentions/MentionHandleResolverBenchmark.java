@@ -0,0 +1,81 @@
+package com.percolate.mentions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures finding the handles of <code>handles</code> people in a text of a million ASCII
+ * characters, i.e. 1 MB of UTF-8, with 2000 handles spread between words, so the score in
+ * operations per second is the throughput in MB/s. A quarter of the handles are unknown ones.
+ * The text is scanned with the automaton, and with the per-trigger lookups of a paste.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MentionHandleResolverBenchmark {
+
+    private static final int LENGTH = 1000000;
+
+    private static final MentionDecoder.Factory<BenchmarkMention> FACTORY =
+            new MentionDecoder.Factory<BenchmarkMention>() {
+                @Override
+                public BenchmarkMention createMention() {
+                    return new BenchmarkMention("");
+                }
+            };
+
+    @Param({"100", "10000"})
+    int handles;
+
+    private MentionHandleResolver<BenchmarkMention> resolver;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        final List<BenchmarkMention> people = BenchmarkData.handles(handles, 42);
+        final Map<String, String> names = new HashMap<>();
+        for (BenchmarkMention person : people) {
+            names.put("@" + person.getMentionName().toLowerCase(Locale.ROOT),
+                    person.getMentionName());
+        }
+        resolver = new MentionHandleResolver<>(names, FACTORY);
+
+        final Random random = new Random(7);
+        final List<BenchmarkMention> typed = new ArrayList<>(2000);
+        for (int i = 0; i < 2000; i++) {
+            final String name = people.get(random.nextInt(people.size())).getMentionName();
+            // The words before a handle may be cut, so it starts with a space.
+            typed.add(new BenchmarkMention(i % 4 == 0 ? " @x" + name : " @" + name));
+        }
+        text = BenchmarkData.document(LENGTH, typed, 7);
+    }
+
+    @Benchmark
+    public List<BenchmarkMention> findMentions() {
+        return resolver.findMentions(text);
+    }
+
+    @Benchmark
+    public List<BenchmarkMention> resolveTriggers() {
+        final StringBuilder out = new StringBuilder(LENGTH);
+        final List<BenchmarkMention> mentions = new ArrayList<>();
+        MentionScanner.resolveMentions(text, 0, text.length(), true, "@", resolver, out, mentions,
+                new StringBuilder());
+        return mentions;
+    }
+}
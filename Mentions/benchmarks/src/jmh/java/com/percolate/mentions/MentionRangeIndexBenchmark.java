@@ -0,0 +1,69 @@
+package com.percolate.mentions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the memory and time {@link MentionRangeIndex} needs for a document with
+ * <code>mentions</code> mentions, like meeting notes with an attendee list. The heap retained per
+ * tracked mention, besides the {@link Mentionable}s themselves, is printed when the benchmark
+ * starts. It is computed from the object graph of the index with JOL, not sampled from the heap,
+ * so it only depends on the object layout of the VM, e.g. whether references are compressed, and
+ * not on the garbage collector or the fork. Along with the time of each operation, the
+ * <code>gc</code> profiler reports the bytes allocated by adding the mentions one by one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MentionRangeIndexBenchmark {
+
+    @Param({"1000", "10000"})
+    int mentions;
+
+    private List<BenchmarkMention> handles;
+
+    private MentionRangeIndex index;
+
+    @Setup
+    public void setUp() {
+        handles = BenchmarkData.handles(mentions, 42);
+        BenchmarkData.document(mentions * 20, handles, 42);
+
+        index = new MentionRangeIndex();
+        index.addAll(handles);
+
+        // The mentions are reachable from the index, only count what the index adds to them.
+        final Object[] tracked = handles.toArray();
+        final long retained = GraphLayout.parseInstance(index, tracked).totalSize()
+                - GraphLayout.parseInstance(tracked).totalSize();
+        System.out.printf("%nMentionRangeIndex: %d bytes for %d mentions, %.1f bytes per mention%n",
+                retained, mentions, (double) retained / mentions);
+    }
+
+    @Benchmark
+    public MentionRangeIndex addOneByOne() {
+        final MentionRangeIndex added = new MentionRangeIndex();
+        for (int i = 0; i < handles.size(); i++) {
+            final BenchmarkMention mention = handles.get(i);
+            added.add(mention, mention.getMentionOffset());
+        }
+        return added;
+    }
+
+    @Benchmark
+    public List<Mentionable> typeAndMaterialize() {
+        index.applyEdit(0, 0, 1, null);
+        index.applyEdit(0, 1, 0, null);
+        return index.materialize();
+    }
+}
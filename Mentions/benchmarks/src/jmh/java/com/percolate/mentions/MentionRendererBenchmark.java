@@ -0,0 +1,94 @@
+package com.percolate.mentions;
+
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the span work done on the main thread to bind a comment with mentions: highlighting
+ * each mention and copying the text into the view every time, as the sample app used to; rendering
+ * it with {@link MentionRenderer} on a cache miss; and the cached rendering a prefetched comment
+ * is bound with. Measuring and laying out the text can not run on the JVM; the main-thread time of
+ * a whole bind, with and without text metrics, is measured on a device by
+ * <code>MentionRendererBindBenchmark</code> in the instrumentation tests of the library.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MentionRendererBenchmark {
+
+    private static final int COLOR = 0xFFFF8800;
+
+    /**
+     * The number of characters and of mentions of the comment, as "characters/mentions".
+     */
+    @Param({"200/2", "1000/10", "5000/50"})
+    String comment;
+
+    private String text;
+
+    private List<BenchmarkMention> mentions;
+
+    private MentionRenderer renderer;
+
+    /**
+     * Version of the comment, incremented to miss the cache.
+     */
+    private long version;
+
+    @Setup
+    public void setUp() {
+        final String[] size = comment.split("/");
+        mentions = BenchmarkData.handles(Integer.parseInt(size[1]), 42);
+        text = BenchmarkData.document(Integer.parseInt(size[0]), mentions, 42);
+        renderer = new MentionRenderer(COLOR, 100, new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        });
+        renderer.prefetch(0L, 0, text, mentions);
+    }
+
+    /**
+     * Highlights each mention and sets the text after each one, which copies it.
+     */
+    @Benchmark
+    public Spanned bindHighlightingEachMention() {
+        final Spannable spannable = new SpannableString(text);
+        Spanned displayed = spannable;
+        for (int i = 0; i < mentions.size(); i++) {
+            final Mentionable mention = mentions.get(i);
+            spannable.setSpan(new ForegroundColorSpan(COLOR), mention.getMentionOffset(),
+                              mention.getMentionOffset() + mention.getMentionLength(),
+                              Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            // TextView.setText(spannable, BufferType.SPANNABLE) copies the text.
+            displayed = new SpannableString(spannable);
+        }
+        return displayed;
+    }
+
+    @Benchmark
+    public Spanned bindRendering() {
+        return renderer.render(1L, ++version, text, mentions);
+    }
+
+    @Benchmark
+    public Spanned bindPrefetched() {
+        return renderer.render(0L, 0, text, mentions);
+    }
+}
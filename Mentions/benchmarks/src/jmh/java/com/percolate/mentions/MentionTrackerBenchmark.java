@@ -0,0 +1,99 @@
+package com.percolate.mentions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the work {@link MentionInsertionLogic} does on every keystroke
+ * (<code>updateInternalMentionsArray</code>) and on every insertion
+ * (<code>highlightMentionsText</code>), both of which go through {@link MentionTracker}. Each
+ * keystroke benchmark types a character and deletes it again, so the document does not change
+ * between invocations.
+ * <p/>
+ * The text is a {@link BenchmarkEditable}, whose edits only touch the spans near them. On a
+ * device, {@link android.text.SpannableStringBuilder} also updates its span arrays on most edits,
+ * so these numbers leave out part of the cost of a keystroke in a long text with many mentions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MentionTrackerBenchmark {
+
+    private static final int COLOR = 0xFFFF8800;
+
+    /**
+     * The number of characters and of mentions of the document, as "characters/mentions".
+     */
+    @Param({"100/0", "100/5", "1000/50", "10000/500", "100000/0", "100000/500", "100000/5000"})
+    String document;
+
+    private BenchmarkEditable text;
+
+    private MentionTracker tracker;
+
+    /**
+     * Right after the mention in the middle of the document, which does not remove it.
+     */
+    private int middle;
+
+    @Setup
+    public void setUp() {
+        final String[] size = document.split("/");
+        final List<BenchmarkMention> mentions = BenchmarkData.handles(Integer.parseInt(size[1]),
+                42);
+        text = new BenchmarkEditable(BenchmarkData.document(Integer.parseInt(size[0]), mentions,
+                42));
+        tracker = new MentionTracker();
+        tracker.addAll(mentions);
+        tracker.highlight(text, COLOR);
+
+        if (mentions.isEmpty()) {
+            middle = text.length() / 2;
+        } else {
+            final Mentionable mention = mentions.get(mentions.size() / 2);
+            middle = mention.getMentionOffset() + mention.getMentionLength();
+        }
+    }
+
+    @Benchmark
+    public void typeAtStart() {
+        type(0);
+    }
+
+    @Benchmark
+    public void typeInMiddle() {
+        type(middle);
+    }
+
+    @Benchmark
+    public void typeAtEnd() {
+        type(text.length());
+    }
+
+    @Benchmark
+    public List<Mentionable> typeAndGetMentions() {
+        type(0);
+        return tracker.getMentions();
+    }
+
+    @Benchmark
+    public void highlight() {
+        tracker.highlight(text, COLOR);
+    }
+
+    private void type(final int position) {
+        text.insert(position, "a");
+        tracker.onTextChanged(text, position, 0, 1);
+        text.delete(position, position + 1);
+        tracker.onTextChanged(text, position, 1, 0);
+    }
+}
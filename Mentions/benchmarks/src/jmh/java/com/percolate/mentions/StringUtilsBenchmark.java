@@ -0,0 +1,80 @@
+package com.percolate.mentions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link StringUtils} and {@link CharSequenceUtils} helpers on texts of
+ * <code>length</code> characters, in their worst case where the whole text is looked at.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StringUtilsBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    int length;
+
+    /**
+     * Only whitespace.
+     */
+    private String blank;
+
+    /**
+     * Words, with an '@' symbol at the start only.
+     */
+    private String text;
+
+    /**
+     * Same characters as <code>text</code>, in an {@link android.text.Editable}.
+     */
+    private BenchmarkEditable editable;
+
+    @Setup
+    public void setUp() {
+        final char[] spaces = new char[length];
+        Arrays.fill(spaces, ' ');
+        blank = new String(spaces);
+        text = "@" + BenchmarkData.words(length - 1, 42);
+        editable = new BenchmarkEditable(text);
+    }
+
+    @Benchmark
+    public boolean isBlank() {
+        return StringUtils.isBlank(blank);
+    }
+
+    @Benchmark
+    public boolean equals() {
+        return StringUtils.equals(editable, text);
+    }
+
+    @Benchmark
+    public boolean regionMatches() {
+        return CharSequenceUtils.regionMatches(editable, false, 0, text, 0, length);
+    }
+
+    @Benchmark
+    public int lastIndexOf() {
+        return StringUtils.lastIndexOf(editable, "@");
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return StringUtils.contains(editable, "@@");
+    }
+
+    @Benchmark
+    public String substringAfterLast() {
+        return StringUtils.substringAfterLast(text, "@");
+    }
+}
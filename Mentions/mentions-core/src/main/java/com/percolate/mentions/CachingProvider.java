@@ -0,0 +1,33 @@
+package com.percolate.mentions;
+
+import java.util.List;
+
+/**
+ * A {@link SuggestionProvider} that can answer some queries from a cache without blocking. The
+ * suggestion dispatcher looks queries up on the main thread first and only searches on the
+ * background executor when the cache can not answer them.
+ *
+ * @param <T>   The type of {@link Mentionable} searched for.
+ */
+interface CachingProvider<T extends Mentionable> extends SuggestionProvider<T> {
+
+    /**
+     * Looks up <code>query</code> without searching.
+     *
+     * @param query String  A query typed by the user.
+     * @param limit int     The maximum number of results.
+     * @return List<T>      The cached results, or null if the cache can not answer the query.
+     */
+    List<T> getCached(final String query, final int limit);
+
+    /**
+     * Searches for a query already looked up with {@link #getCached(String, int)}, skipping the
+     * cache lookup. May block.
+     *
+     * @param query String  A query typed by the user.
+     * @param limit int     The maximum number of results.
+     * @return List<T>      Up to <code>limit</code> matching {@link Mentionable}s.
+     */
+    List<T> searchProvider(final String query, final int limit);
+
+}
@@ -0,0 +1,478 @@
+package com.percolate.mentions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds {@link Mentionable}s whose tokens start with a query typed with typos, and ranks them by
+ * the number of edits needed. Up to 1 edit is allowed for queries of 3 to 5 characters and up to 2
+ * edits for longer queries; shorter queries must match exactly.
+ * <p/>
+ * The index is built once: every distinct case folded token is listed under the character
+ * bigrams it contains, including a bigram marking its first character. A query only verifies
+ * the tokens sharing enough bigrams with it, since an edit destroys at most two bigrams. The
+ * verification is a banded edit distance between the query and the start of the token.
+ * <p/>
+ * The matcher is immutable and may be searched from any thread.
+ *
+ * @param <T>   The type of {@link Mentionable} to match.
+ */
+@SuppressWarnings("WeakerAccess")
+public class FuzzyMentionMatcher<T extends Mentionable> implements SuggestionProvider<T> {
+
+    /**
+     * A {@link Mentionable} matching a query.
+     *
+     * @param <T>   The type of {@link Mentionable} matched.
+     */
+    public static class Match<T> {
+
+        private final T item;
+
+        private final String token;
+
+        private final int distance;
+
+        private final float score;
+
+        Match(final T item, final String token, final int distance, final float score) {
+            this.item = item;
+            this.token = token;
+            this.distance = distance;
+            this.score = score;
+        }
+
+        /**
+         * @return T    The matching {@link Mentionable}.
+         */
+        public T getItem() {
+            return item;
+        }
+
+        /**
+         * @return String   The case folded token that matched the query.
+         */
+        public String getToken() {
+            return token;
+        }
+
+        /**
+         * @return int  The number of edits between the query and the start of the token.
+         */
+        public int getDistance() {
+            return distance;
+        }
+
+        /**
+         * @return float    1 for an exact match, lower the more edits were needed.
+         */
+        public float getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Marks the start of a token, so that the first character forms a bigram too.
+     */
+    private static final char START = '\u0002';
+
+    /**
+     * The indexed {@link Mentionable}s.
+     */
+    private final List<T> items;
+
+    /**
+     * Distinct case folded tokens, sorted.
+     */
+    private final String[] tokens;
+
+    /**
+     * Indexes into <code>items</code> of the {@link Mentionable}s each token belongs to.
+     */
+    private final int[][] tokenItems;
+
+    /**
+     * Open addressing table of bigram keys, 0 for an empty slot.
+     */
+    private final int[] bigramKeys;
+
+    /**
+     * Sorted token indexes containing the bigram in the same slot of <code>bigramKeys</code>.
+     */
+    private final int[][] bigramTokens;
+
+    /**
+     * Locale used for case folding.
+     */
+    private final Locale locale;
+
+    /**
+     * Per thread scratch space for counting shared bigrams.
+     */
+    private final ThreadLocal<int[]> bigramCounts;
+
+    /**
+     * Builds a matcher of <code>items</code> by the words of their mention names.
+     *
+     * @param items     List<? extends T>   The {@link Mentionable}s to match.
+     */
+    public FuzzyMentionMatcher(final List<? extends T> items) {
+        this(items, MentionSuggestionIndex.NAME_TOKENIZER, Locale.getDefault());
+    }
+
+    /**
+     * Builds a matcher of <code>items</code> by the tokens provided by <code>tokenizer</code>.
+     *
+     * @param items     List<? extends T>       The {@link Mentionable}s to match.
+     * @param tokenizer MentionSuggestionIndex.Tokenizer<? super T>     Provides the tokens of
+     *                                          each {@link Mentionable}.
+     * @param locale    Locale                  The locale used to case fold tokens and queries.
+     */
+    public FuzzyMentionMatcher(final List<? extends T> items,
+                               final MentionSuggestionIndex.Tokenizer<? super T> tokenizer,
+                               final Locale locale) {
+        if (items == null || tokenizer == null || locale == null) {
+            throw new IllegalArgumentException("Items, tokenizer and locale must not be null.");
+        }
+        this.items = Collections.unmodifiableList(new ArrayList<T>(items));
+        this.locale = locale;
+
+        // Sort (token, item) pairs to group items by distinct folded token.
+        final List<String> foldedTokens = new ArrayList<>();
+        final List<Integer> foldedTokenItems = new ArrayList<>();
+        for (int i = 0; i < this.items.size(); i++) {
+            for (String token : tokenizer.getTokens(this.items.get(i))) {
+                if (StringUtils.isNotBlank(token)) {
+                    foldedTokens.add(token.toLowerCase(locale));
+                    foldedTokenItems.add(i);
+                }
+            }
+        }
+        final Integer[] order = new Integer[foldedTokens.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer lhs, final Integer rhs) {
+                return foldedTokens.get(lhs).compareTo(foldedTokens.get(rhs));
+            }
+        });
+
+        final List<String> distinctTokens = new ArrayList<>();
+        final List<int[]> distinctTokenItems = new ArrayList<>();
+        for (int i = 0; i < order.length; ) {
+            final String token = foldedTokens.get(order[i]);
+            int end = i + 1;
+            while (end < order.length && foldedTokens.get(order[end]).equals(token)) {
+                end++;
+            }
+            final int[] tokenItemArray = new int[end - i];
+            for (int j = i; j < end; j++) {
+                tokenItemArray[j - i] = foldedTokenItems.get(order[j]);
+            }
+            distinctTokens.add(token);
+            distinctTokenItems.add(tokenItemArray);
+            i = end;
+        }
+        this.tokens = distinctTokens.toArray(new String[distinctTokens.size()]);
+        this.tokenItems = distinctTokenItems.toArray(new int[distinctTokenItems.size()][]);
+
+        // Sort (bigram, token) pairs packed in longs to list every token under its bigrams.
+        int pairCount = 0;
+        for (String token : tokens) {
+            pairCount += token.length();
+        }
+        final long[] pairs = new long[pairCount];
+        pairCount = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            char previous = START;
+            for (int j = 0; j < tokens[i].length(); j++) {
+                pairs[pairCount++] = ((long) bigram(previous, tokens[i].charAt(j)) << 32) | i;
+                previous = tokens[i].charAt(j);
+            }
+        }
+        Arrays.sort(pairs);
+
+        int bigramCount = 0;
+        for (int i = 0; i < pairs.length; i++) {
+            if (i == 0 || (pairs[i] >>> 32) != (pairs[i - 1] >>> 32)) {
+                bigramCount++;
+            }
+        }
+        final int capacity = Integer.highestOneBit(Math.max(1, bigramCount) * 2) * 2;
+        this.bigramKeys = new int[capacity];
+        this.bigramTokens = new int[capacity][];
+        for (int i = 0; i < pairs.length; ) {
+            final int key = (int) (pairs[i] >>> 32);
+            int end = i + 1;
+            while (end < pairs.length && (int) (pairs[end] >>> 32) == key) {
+                end++;
+            }
+            final int[] postings = new int[end - i];
+            int postingCount = 0;
+            for (int j = i; j < end; j++) {
+                final int token = (int) pairs[j];
+                if (postingCount == 0 || postings[postingCount - 1] != token) {
+                    postings[postingCount++] = token;
+                }
+            }
+
+            int slot = slot(key);
+            while (bigramKeys[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            bigramKeys[slot] = key;
+            bigramTokens[slot] = Arrays.copyOf(postings, postingCount);
+            i = end;
+        }
+
+        final int tokenCount = tokens.length;
+        this.bigramCounts = new ThreadLocal<int[]>() {
+            @Override
+            protected int[] initialValue() {
+                return new int[tokenCount];
+            }
+        };
+    }
+
+    /**
+     * @return List<T>  The indexed {@link Mentionable}s.
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Finds the best matches for <code>query</code>, ordered by score.
+     *
+     * @param query String  The query typed by the user.
+     * @param limit int     The maximum number of results.
+     * @return List<T>      Up to <code>limit</code> matching {@link Mentionable}s.
+     */
+    @Override
+    public List<T> search(final String query, final int limit) {
+        final List<Match<T>> matches = match(query, limit);
+        final List<T> results = new ArrayList<>(matches.size());
+        for (Match<T> match : matches) {
+            results.add(match.getItem());
+        }
+        return results;
+    }
+
+    /**
+     * Finds the best matches for <code>query</code> with their scores. Matches with fewer edits
+     * come first; matches with the same number of edits are ordered by token.
+     *
+     * @param query String  The query typed by the user.
+     * @param limit int     The maximum number of results.
+     * @return List<Match<T>>   Up to <code>limit</code> matches.
+     */
+    public List<Match<T>> match(final String query, final int limit) {
+        if (StringUtils.isBlank(query) || limit <= 0 || tokens.length == 0) {
+            return Collections.emptyList();
+        }
+        final String folded = query.trim().toLowerCase(locale);
+        final int maxDistance = maxDistance(folded.length());
+        final TopMatches top = new TopMatches(limit);
+        final int[] row = new int[folded.length() + maxDistance + 1];
+        final int[] previousRow = new int[row.length];
+
+        // Count the bigrams each token shares with the query.
+        final int[] counts = bigramCounts.get();
+        int[] candidates = new int[64];
+        int candidateCount = 0;
+        char previous = START;
+        for (int i = 0; i < folded.length(); i++) {
+            final int[] postings = postings(bigram(previous, folded.charAt(i)));
+            previous = folded.charAt(i);
+            if (postings == null) {
+                continue;
+            }
+            for (int token : postings) {
+                if (counts[token]++ == 0) {
+                    if (candidateCount == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                    }
+                    candidates[candidateCount++] = token;
+                }
+            }
+        }
+
+        // Each edit destroys at most two of the query's bigrams.
+        final int minShared = Math.max(1, folded.length() - 2 * maxDistance);
+        for (int i = 0; i < candidateCount; i++) {
+            final int token = candidates[i];
+            if (counts[token] >= minShared) {
+                final int distance = prefixDistance(folded, tokens[token], maxDistance, row,
+                        previousRow);
+                if (distance <= maxDistance) {
+                    for (int item : tokenItems[token]) {
+                        top.offer(item, token, distance);
+                    }
+                }
+            }
+            counts[token] = 0;
+        }
+
+        final List<Match<T>> matches = new ArrayList<>(top.size);
+        for (int i = 0; i < top.size; i++) {
+            final int distance = top.distances[i];
+            matches.add(new Match<>(items.get(top.items[i]), tokens[top.tokens[i]], distance,
+                    1f - (float) distance / (folded.length() + 1)));
+        }
+        return matches;
+    }
+
+    /**
+     * @param queryLength   int     The length of a query.
+     * @return int  The maximum number of edits allowed for a query of that length.
+     */
+    static int maxDistance(final int queryLength) {
+        if (queryLength < 3) {
+            return 0;
+        } else if (queryLength <= 5) {
+            return 1;
+        }
+        return 2;
+    }
+
+    /**
+     * Computes the smallest edit distance between <code>query</code> and a prefix of
+     * <code>token</code>, only looking at the band of cells within <code>maxDistance</code> of
+     * the diagonal.
+     *
+     * @param query         String  The case folded query.
+     * @param token         String  The case folded token.
+     * @param maxDistance   int     The maximum number of edits of interest.
+     * @param row           int[]   Scratch space of at least query length + maxDistance + 1.
+     * @param previousRow   int[]   Scratch space of the same length.
+     * @return int  The distance, or a value greater than <code>maxDistance</code> if it is too big.
+     */
+    static int prefixDistance(final String query, final String token, final int maxDistance,
+                              int[] row, int[] previousRow) {
+        final int queryLength = query.length();
+        final int columns = Math.min(token.length(), queryLength + maxDistance);
+        final int tooFar = maxDistance + 1;
+
+        for (int j = 0; j <= columns; j++) {
+            previousRow[j] = j;
+        }
+        for (int i = 1; i <= queryLength; i++) {
+            final int from = Math.max(1, i - maxDistance);
+            final int to = Math.min(columns, i + maxDistance);
+            row[from - 1] = from == 1 ? i : tooFar;
+            int rowMin = row[from - 1];
+            for (int j = from; j <= to; j++) {
+                final int cost = query.charAt(i - 1) == token.charAt(j - 1) ? 0 : 1;
+                int value = previousRow[j - 1] + cost;
+                if (j - 1 >= i - maxDistance && row[j - 1] + 1 < value) {
+                    value = row[j - 1] + 1;
+                }
+                if (j <= i - 1 + maxDistance && previousRow[j] + 1 < value) {
+                    value = previousRow[j] + 1;
+                }
+                row[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (to < columns) {
+                row[to + 1] = tooFar;
+            }
+            if (rowMin > maxDistance) {
+                return tooFar;
+            }
+            final int[] swap = previousRow;
+            previousRow = row;
+            row = swap;
+        }
+
+        int best = tooFar;
+        for (int j = Math.max(0, queryLength - maxDistance); j <= columns; j++) {
+            best = Math.min(best, previousRow[j]);
+        }
+        return best;
+    }
+
+    private int[] postings(final int key) {
+        int slot = slot(key);
+        while (bigramKeys[slot] != 0) {
+            if (bigramKeys[slot] == key) {
+                return bigramTokens[slot];
+            }
+            slot = (slot + 1) & (bigramKeys.length - 1);
+        }
+        return null;
+    }
+
+    private int slot(final int key) {
+        return (key * 0x9E3779B9 >>> 7) & (bigramKeys.length - 1);
+    }
+
+    private static int bigram(final char first, final char second) {
+        return (first << 16) | second | 0x80000000;
+    }
+
+    /**
+     * The best matches found so far, sorted by distance and token, one per {@link Mentionable}.
+     */
+    private static class TopMatches {
+
+        final int[] items;
+
+        final int[] tokens;
+
+        final int[] distances;
+
+        int size;
+
+        TopMatches(final int limit) {
+            items = new int[limit];
+            tokens = new int[limit];
+            distances = new int[limit];
+        }
+
+        void offer(final int item, final int token, final int distance) {
+            int position = -1;
+            for (int i = 0; i < size; i++) {
+                if (items[i] == item) {
+                    if (!isBetter(distance, token, distances[i], tokens[i])) {
+                        return;
+                    }
+                    position = i;
+                    break;
+                }
+            }
+
+            if (position == -1) {
+                if (size < items.length) {
+                    position = size++;
+                } else if (isBetter(distance, token, distances[size - 1], tokens[size - 1])) {
+                    position = size - 1;
+                } else {
+                    return;
+                }
+            }
+
+            // Move the entry up to keep the order.
+            while (position > 0 && isBetter(distance, token, distances[position - 1],
+                    tokens[position - 1])) {
+                items[position] = items[position - 1];
+                tokens[position] = tokens[position - 1];
+                distances[position] = distances[position - 1];
+                position--;
+            }
+            items[position] = item;
+            tokens[position] = token;
+            distances[position] = distance;
+        }
+
+        private static boolean isBetter(final int distance, final int token,
+                                        final int otherDistance, final int otherToken) {
+            return distance < otherDistance || (distance == otherDistance && token < otherToken);
+        }
+    }
+}
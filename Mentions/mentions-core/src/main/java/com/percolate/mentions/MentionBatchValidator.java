@@ -0,0 +1,194 @@
+package com.percolate.mentions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Validates a stream of {@link MentionRecord}s in parallel with a {@link MentionValidator}, for
+ * example to check millions of stored comments after a migration. Records are read from an
+ * {@link Iterator} in chunks which are validated on an {@link ExecutorService}. Only a few chunks
+ * are in flight at a time, so the records do not need to fit in memory, and results are reported
+ * in the order of the records.
+ */
+@SuppressWarnings("WeakerAccess")
+public class MentionBatchValidator {
+
+    /**
+     * Receives the result of every record, in the order of the records, on the thread calling
+     * {@link #validate(Iterator, ResultListener)}.
+     *
+     * @param <T>   The type of {@link Mentionable}.
+     */
+    public interface ResultListener<T extends Mentionable> {
+
+        void onRecordValidated(final MentionValidator.Result<T> result);
+    }
+
+    /**
+     * Totals over all the validated records.
+     */
+    public static class Summary {
+
+        private int recordCount;
+
+        private int invalidRecordCount;
+
+        private int validCount;
+
+        private int lengthMismatchCount;
+
+        private int shiftedCount;
+
+        private int lostCount;
+
+        void add(final MentionValidator.Result<?> result) {
+            recordCount++;
+            if (!result.isValid()) {
+                invalidRecordCount++;
+            }
+            validCount += result.getValidCount();
+            lengthMismatchCount += result.getLengthMismatches().size();
+            shiftedCount += result.getShifted().size();
+            lostCount += result.getLost().size();
+        }
+
+        public int getRecordCount() {
+            return recordCount;
+        }
+
+        /**
+         * @return int  The number of records with mismatched, shifted or lost mentions.
+         */
+        public int getInvalidRecordCount() {
+            return invalidRecordCount;
+        }
+
+        public int getValidCount() {
+            return validCount;
+        }
+
+        public int getLengthMismatchCount() {
+            return lengthMismatchCount;
+        }
+
+        public int getShiftedCount() {
+            return shiftedCount;
+        }
+
+        public int getLostCount() {
+            return lostCount;
+        }
+    }
+
+    private final MentionValidator validator;
+
+    private final ExecutorService executor;
+
+    /**
+     * The number of records validated by one task.
+     */
+    private final int chunkSize;
+
+    /**
+     * The maximum number of chunks submitted and not reported yet.
+     */
+    private final int maxPendingChunks;
+
+    /**
+     * @param validator         MentionValidator    Validates each record.
+     * @param executor          ExecutorService     Runs the validation of the chunks.
+     * @param chunkSize         int                 The number of records validated by one task.
+     * @param maxPendingChunks  int                 The maximum number of chunks read ahead,
+     *                                              usually a small multiple of the number of
+     *                                              threads of <code>executor</code>.
+     */
+    public MentionBatchValidator(final MentionValidator validator, final ExecutorService executor,
+                                 final int chunkSize, final int maxPendingChunks) {
+        if (validator == null || executor == null) {
+            throw new IllegalArgumentException("Validator and executor must not be null.");
+        } else if (chunkSize <= 0 || maxPendingChunks <= 0) {
+            throw new IllegalArgumentException("Chunk size and pending chunks must be greater " +
+                                               "than 0.");
+        }
+        this.validator = validator;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxPendingChunks = maxPendingChunks;
+    }
+
+    /**
+     * Validates all the <code>records</code> and blocks until they are done.
+     *
+     * @param records   Iterator<MentionRecord<T>>  The records to validate.
+     * @param listener  ResultListener<T>           Receives the result of every record, may be
+     *                                              null if only the {@link Summary} is needed.
+     * @return Summary  The totals over all the records.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
+    public <T extends Mentionable> Summary validate(
+            final Iterator<? extends MentionRecord<T>> records, final ResultListener<T> listener)
+            throws InterruptedException {
+        if (records == null) {
+            throw new IllegalArgumentException("Records must not be null.");
+        }
+        final Summary summary = new Summary();
+        final ArrayDeque<Future<List<MentionValidator.Result<T>>>> pending = new ArrayDeque<>();
+        try {
+            while (records.hasNext()) {
+                final List<MentionRecord<T>> chunk = new ArrayList<>(chunkSize);
+                while (chunk.size() < chunkSize && records.hasNext()) {
+                    chunk.add(records.next());
+                }
+                if (pending.size() == maxPendingChunks) {
+                    report(pending.poll(), summary, listener);
+                }
+                pending.add(executor.submit(new Callable<List<MentionValidator.Result<T>>>() {
+                    @Override
+                    public List<MentionValidator.Result<T>> call() {
+                        final List<MentionValidator.Result<T>> results =
+                                new ArrayList<>(chunk.size());
+                        for (int i = 0; i < chunk.size(); i++) {
+                            results.add(validator.validate(chunk.get(i)));
+                        }
+                        return results;
+                    }
+                }));
+            }
+            while (!pending.isEmpty()) {
+                report(pending.poll(), summary, listener);
+            }
+        } finally {
+            // Nothing waits for the remaining chunks after a failure.
+            for (Future<?> future : pending) {
+                future.cancel(true);
+            }
+        }
+        return summary;
+    }
+
+    private static <T extends Mentionable> void report(
+            final Future<List<MentionValidator.Result<T>>> future, final Summary summary,
+            final ResultListener<T> listener) throws InterruptedException {
+        final List<MentionValidator.Result<T>> results;
+        try {
+            results = future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Validating a chunk of records failed.", e.getCause());
+        }
+        for (int i = 0; i < results.size(); i++) {
+            summary.add(results.get(i));
+            if (listener != null) {
+                listener.onRecordValidated(results.get(i));
+            }
+        }
+    }
+}
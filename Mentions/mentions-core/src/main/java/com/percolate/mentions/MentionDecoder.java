@@ -0,0 +1,271 @@
+package com.percolate.mentions;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the records written by {@link MentionEncoder} one at a time, so a feed of comments can be
+ * decoded while it is downloaded. Names read from the string table are shared by all the
+ * mentions referring to them.
+ * <p/>
+ * A decoder buffers its input and is not thread-safe.
+ *
+ * @param <T>   The type of {@link Mentionable} to decode.
+ */
+@SuppressWarnings("WeakerAccess")
+public class MentionDecoder<T extends Mentionable> implements Closeable {
+
+    /**
+     * Creates the {@link Mentionable}s of the decoded records.
+     *
+     * @param <T>   The type of {@link Mentionable} to create.
+     */
+    public interface Factory<T extends Mentionable> {
+
+        /**
+         * @return T    A new {@link Mentionable}, its name, offset and length are set by the
+         *              decoder.
+         */
+        T createMention();
+    }
+
+    private final InputStream in;
+
+    private final Factory<T> factory;
+
+    /**
+     * The names read so far, when the string table is used.
+     */
+    private final List<String> names;
+
+    private byte[] buffer;
+
+    private int position;
+
+    private int limit;
+
+    private boolean headerRead;
+
+    private boolean stringTable;
+
+    /**
+     * @param in        InputStream     The encoded records.
+     * @param factory   Factory<T>      Creates the decoded mentions.
+     */
+    public MentionDecoder(final InputStream in, final Factory<T> factory) {
+        if (in == null || factory == null) {
+            throw new IllegalArgumentException("Input stream and factory must not be null.");
+        }
+        this.in = in;
+        this.factory = factory;
+        this.names = new ArrayList<>();
+        this.buffer = new byte[8192];
+    }
+
+    /**
+     * Decodes from <code>buffer</code>, starting at its position.
+     *
+     * @param buffer    ByteBuffer  The encoded records.
+     * @param factory   Factory<T>  Creates the decoded mentions.
+     */
+    public MentionDecoder(final ByteBuffer buffer, final Factory<T> factory) {
+        this(new ByteBufferInputStream(buffer), factory);
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return MentionRecord<T>     The next text and its mentions, or null at the end of the
+     *                              stream.
+     * @throws IOException if reading failed or the stream is not a valid encoding.
+     */
+    public MentionRecord<T> read() throws IOException {
+        if (!headerRead) {
+            if (!fill(1)) {
+                return null;
+            }
+            readHeader();
+        }
+        if (!fill(1)) {
+            return null;
+        }
+
+        final String text = readString();
+        final int count = readVarint();
+        if (count < 0) {
+            throw new IOException("Malformed mention count " + count + ".");
+        }
+        // Each mention takes at least a byte, so a corrupt count can not allocate more than the
+        // buffered bytes, the list grows as the mentions are actually read.
+        final List<T> mentions = count == 0 ? Collections.<T>emptyList()
+                : new ArrayList<T>(Math.min(count, limit - position));
+        int previousEnd = 0;
+        for (int i = 0; i < count; i++) {
+            final int offset = previousEnd + unzigzag(readVarint());
+            final int nameRef = readVarint();
+            final String name;
+            if (nameRef == 0) {
+                name = readString();
+                if (stringTable) {
+                    names.add(name);
+                }
+            } else if (stringTable && nameRef <= names.size()) {
+                name = names.get(nameRef - 1);
+            } else {
+                throw new IOException("Malformed mention name reference " + nameRef + ".");
+            }
+            final int length = name.length() + unzigzag(readVarint());
+
+            final T mention = factory.createMention();
+            mention.setMentionName(name);
+            mention.setMentionOffset(offset);
+            mention.setMentionLength(length);
+            mentions.add(mention);
+            previousEnd = offset + length;
+        }
+        return new Record<>(text, mentions);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readHeader() throws IOException {
+        require(4);
+        if (buffer[position] != MentionEncoder.MAGIC_0
+                || buffer[position + 1] != MentionEncoder.MAGIC_1) {
+            throw new IOException("Not an encoding of mentions.");
+        } else if (buffer[position + 2] != MentionEncoder.VERSION) {
+            throw new IOException("Unsupported version " + buffer[position + 2] + ".");
+        }
+        stringTable = (buffer[position + 3] & MentionEncoder.FLAG_STRING_TABLE) != 0;
+        position += 4;
+        headerRead = true;
+    }
+
+    private String readString() throws IOException {
+        final int length = readVarint();
+        if (length < 0) {
+            throw new IOException("Malformed string length " + length + ".");
+        }
+        require(length);
+        final String value = new String(buffer, position, length, MentionEncoder.UTF_8);
+        position += length;
+        return value;
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            require(1);
+            final byte b = buffer[position++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    private static int unzigzag(final int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private void require(final int bytes) throws IOException {
+        if (!fill(bytes)) {
+            throw new EOFException("Unexpected end of the encoded mentions.");
+        }
+    }
+
+    /**
+     * Makes sure <code>bytes</code> bytes are buffered.
+     *
+     * @return false if the stream ended before.
+     */
+    private boolean fill(final int bytes) throws IOException {
+        if (limit - position >= bytes) {
+            return true;
+        }
+        // Move the remaining bytes to the start, growing the buffer for long texts.
+        final int remaining = limit - position;
+        if (bytes > buffer.length) {
+            final byte[] grown = new byte[Math.max(bytes, buffer.length * 2)];
+            System.arraycopy(buffer, position, grown, 0, remaining);
+            buffer = grown;
+        } else {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        position = 0;
+        limit = remaining;
+        while (limit < bytes) {
+            final int read = in.read(buffer, limit, buffer.length - limit);
+            if (read == -1) {
+                return false;
+            }
+            limit += read;
+        }
+        return true;
+    }
+
+    /**
+     * A decoded record.
+     */
+    private static class Record<T extends Mentionable> implements MentionRecord<T> {
+
+        private final String text;
+
+        private final List<T> mentions;
+
+        Record(final String text, final List<T> mentions) {
+            this.text = text;
+            this.mentions = mentions;
+        }
+
+        @Override
+        public CharSequence getText() {
+            return text;
+        }
+
+        @Override
+        public List<T> getMentions() {
+            return mentions;
+        }
+    }
+
+    /**
+     * Reads from a {@link ByteBuffer}.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(final ByteBuffer buffer) {
+            if (buffer == null) {
+                throw new IllegalArgumentException("Buffer must not be null.");
+            }
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.percolate.mentions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A text with {@link Mentionable}s and a cursor, edited without an Android view. It follows the
+ * same rules as the <code>EditText</code> integration: mentions are removed when text
+ * inside them is edited, a query is an '@' symbol followed by up to <code>maxCharacters</code>
+ * characters before the cursor, and inserting a mention replaces that query with the mention's
+ * name.
+ * <p/>
+ * This can be used to process comments on a server, or to test mention handling on the JVM.
+ * A document is not thread-safe.
+ */
+public class MentionDocument {
+
+    /**
+     * Returned when there is no valid query.
+     */
+    private static final String NO_QUERY = "";
+
+    private final StringBuilder text;
+
+    /**
+     * The mentions in the <code>text</code>, sorted by offset.
+     */
+    private final MentionRangeIndex mentions;
+
+    /**
+     * Receives the mentions removed by an edit.
+     */
+    private final List<Mentionable> removedMentions;
+
+    private int cursor;
+
+    /* Default limit of 13 characters to evaluate after the '@' symbol. */
+    private int maxCharacters = 13;
+
+    /**
+     * Location of the '@' symbol of the last valid query, or -1.
+     */
+    private int queryOffset = -1;
+
+    /**
+     * Creates an empty document.
+     */
+    public MentionDocument() {
+        this("");
+    }
+
+    /**
+     * Creates a document containing <code>text</code>, with the cursor at its end.
+     *
+     * @param text  CharSequence    The initial text.
+     */
+    public MentionDocument(final CharSequence text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text cannot be null.");
+        }
+        this.text = new StringBuilder(text);
+        this.mentions = new MentionRangeIndex();
+        this.removedMentions = new ArrayList<>();
+        this.cursor = text.length();
+    }
+
+    /**
+     * @param maxCharacters int     The maximum number of characters to considered after the
+     *                      '@' symbol as a query. The default is 13 characters.
+     */
+    public void setMaxCharacters(final int maxCharacters) {
+        if (maxCharacters <= 0) {
+            throw new IllegalArgumentException("Maximum number of characters must be greater " +
+                                               "than 0.");
+        }
+        this.maxCharacters = maxCharacters;
+    }
+
+    /**
+     * @return String   The text of the document.
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    /**
+     * @return int  The number of characters in the document.
+     */
+    public int length() {
+        return text.length();
+    }
+
+    /**
+     * @return int  The location of the cursor.
+     */
+    public int getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Moves the cursor.
+     *
+     * @param cursor    int     The new location of the cursor, between 0 and {@link #length()}.
+     */
+    public void setCursor(final int cursor) {
+        checkRange(cursor, cursor);
+        this.cursor = cursor;
+    }
+
+    /**
+     * Replaces the characters from <code>start</code> to <code>end</code> with
+     * <code>replacement</code> and moves the cursor to the end of it. Mentions overlapping the
+     * replaced characters are removed, the ones after them are moved.
+     *
+     * @param start         int             The start of the replaced characters.
+     * @param end           int             The end (exclusive) of the replaced characters.
+     * @param replacement   CharSequence    The new characters.
+     */
+    public void replace(final int start, final int end, final CharSequence replacement) {
+        checkRange(start, end);
+        if (replacement == null) {
+            throw new IllegalArgumentException("Replacement text cannot be null.");
+        }
+
+        text.replace(start, end, replacement.toString());
+        if (!mentions.isEmpty()) {
+            mentions.applyEdit(start, end - start, replacement.length(), removedMentions);
+            removedMentions.clear();
+        }
+        cursor = start + replacement.length();
+    }
+
+    /**
+     * Types <code>insertion</code> at the cursor.
+     *
+     * @param insertion CharSequence    The typed characters.
+     */
+    public void insert(final CharSequence insertion) {
+        replace(cursor, cursor, insertion);
+    }
+
+    /**
+     * Deletes the characters from <code>start</code> to <code>end</code>.
+     *
+     * @param start int     The start of the deleted characters.
+     * @param end   int     The end (exclusive) of the deleted characters.
+     */
+    public void delete(final int start, final int end) {
+        replace(start, end, "");
+    }
+
+    /**
+     * Returns the query typed before the cursor, using the same rules as the queries passed to
+     * the {@link QueryListener}.
+     *
+     * @return String   The query, or an empty string if the cursor is not after a valid query.
+     */
+    public String getQuery() {
+        final int queryStart = MentionScanner.findQueryStart(text, cursor, maxCharacters);
+        if (queryStart == -1) {
+            queryOffset = -1;
+            return NO_QUERY;
+        }
+        queryOffset = queryStart - 1;
+        return text.substring(queryStart, cursor);
+    }
+
+    /**
+     * @return int  The location of the '@' symbol of the query last returned by
+     *              {@link #getQuery()}, or -1 if no valid query was found.
+     */
+    public int getQueryOffset() {
+        return queryOffset;
+    }
+
+    /**
+     * Replaces the '@' symbol before the cursor and the query after it with the name of
+     * <code>mention</code> followed by a space, and tracks it.
+     *
+     * @param mention   Mentionable     The mention to insert.
+     * @return true if the mention was inserted, false if there is no '@' symbol before the cursor.
+     */
+    public boolean insertMention(final Mentionable mention) {
+        if (mention == null) {
+            throw new IllegalArgumentException("A null mentionable cannot be inserted into the " +
+                    "document.");
+        } else if (StringUtils.isBlank(mention.getMentionName())) {
+            throw new IllegalArgumentException("The mentions name must be set before inserting " +
+                    "into the document.");
+        }
+
+        final int start = MentionScanner.findMentionStart(text, cursor);
+        if (start == -1) {
+            return false;
+        }
+        replace(start, cursor, mention.getMentionName() + " ");
+        mention.setMentionLength(mention.getMentionName().length());
+        mentions.add(mention, start);
+        return true;
+    }
+
+    /**
+     * Tracks {@link Mentionable}s that are already in the text at their offsets.
+     *
+     * @param mentions  List<Mentionable>   The mentions.
+     */
+    public void addMentions(final List<? extends Mentionable> mentions) {
+        if (mentions == null || mentions.isEmpty()) {
+            throw new IllegalArgumentException("Appended Mentions cannot be null nor empty.");
+        } else if (StringUtils.isBlank(text) || !MentionScanner.textHasMentions(text, mentions)) {
+            throw new IllegalArgumentException("Appended Mentions must be in the text.");
+        }
+        this.mentions.addAll(mentions);
+    }
+
+    /**
+     * @return List<Mentionable>    The mentions in the document sorted by offset, with their
+     *                              offsets brought up-to-date.
+     */
+    public List<Mentionable> getMentions() {
+        return mentions.materialize();
+    }
+
+    /**
+     * Removes all the text and mentions.
+     */
+    public void clear() {
+        text.setLength(0);
+        mentions.clear();
+        cursor = 0;
+        queryOffset = -1;
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+
+    private void checkRange(final int start, final int end) {
+        if (start < 0 || end < start || end > text.length()) {
+            throw new IllegalArgumentException("[" + start + ", " + end + "] is not a range of " +
+                    "the document of length " + text.length() + ".");
+        }
+    }
+}
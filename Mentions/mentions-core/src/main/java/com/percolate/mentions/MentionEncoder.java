@@ -0,0 +1,263 @@
+package com.percolate.mentions;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes texts and their {@link Mentionable}s in a compact binary form, read back by
+ * {@link MentionDecoder}. The stream starts with a header, followed by one record per text:
+ * <pre>
+ * header:  'M' 'N' version flags
+ * record:  varint textBytes, UTF-8 text,
+ *          varint mentionCount,
+ *          per mention: zigzag(offset - end of previous mention),
+ *                       varint nameRef, [varint nameBytes, UTF-8 name if nameRef is 0],
+ *                       zigzag(length - name length)
+ * </pre>
+ * Mentions are written sorted by offset, so offsets are small deltas and lengths are usually 0.
+ * With the string table, each distinct mention name is only written the first time it is seen
+ * in the stream, and later mentions refer to it by its index + 1.
+ * <p/>
+ * An encoder buffers its output and is not thread-safe. Call {@link #flush()} or
+ * {@link #close()} once all the records are written.
+ */
+@SuppressWarnings("WeakerAccess")
+public class MentionEncoder implements Closeable, Flushable {
+
+    static final byte MAGIC_0 = 'M';
+
+    static final byte MAGIC_1 = 'N';
+
+    static final byte VERSION = 1;
+
+    static final int FLAG_STRING_TABLE = 1;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Comparator<Mentionable> OFFSET_ORDER = new Comparator<Mentionable>() {
+        @Override
+        public int compare(final Mentionable lhs, final Mentionable rhs) {
+            return lhs.getMentionOffset() < rhs.getMentionOffset() ? -1
+                    : lhs.getMentionOffset() == rhs.getMentionOffset() ? 0 : 1;
+        }
+    };
+
+    private final OutputStream out;
+
+    private final boolean stringTable;
+
+    /**
+     * Index of every name written so far, when the string table is used.
+     */
+    private final Map<String, Integer> names;
+
+    private final byte[] buffer;
+
+    private int position;
+
+    private boolean headerWritten;
+
+    /**
+     * @param out           OutputStream    Receives the encoded records.
+     * @param stringTable   boolean         True to write each distinct mention name once.
+     */
+    public MentionEncoder(final OutputStream out, final boolean stringTable) {
+        if (out == null) {
+            throw new IllegalArgumentException("Output stream must not be null.");
+        }
+        this.out = out;
+        this.stringTable = stringTable;
+        this.names = new HashMap<>();
+        this.buffer = new byte[8192];
+    }
+
+    /**
+     * Encodes into <code>buffer</code>, starting at its position. A
+     * {@link java.nio.BufferOverflowException} is thrown if the records do not fit.
+     *
+     * @param buffer        ByteBuffer  Receives the encoded records.
+     * @param stringTable   boolean     True to write each distinct mention name once.
+     */
+    public MentionEncoder(final ByteBuffer buffer, final boolean stringTable) {
+        this(new ByteBufferOutputStream(buffer), stringTable);
+    }
+
+    /**
+     * Writes a record.
+     *
+     * @param record    MentionRecord<?>    The text and its mentions.
+     * @throws IOException if writing to the stream failed.
+     */
+    public void write(final MentionRecord<?> record) throws IOException {
+        if (record == null) {
+            throw new IllegalArgumentException("Record must not be null.");
+        }
+        write(record.getText(), record.getMentions());
+    }
+
+    /**
+     * Writes a text and its mentions.
+     *
+     * @param text      CharSequence                    The text.
+     * @param mentions  List<? extends Mentionable>     The mentions in the text, may be null.
+     * @throws IOException if writing to the stream failed.
+     */
+    public void write(final CharSequence text, final List<? extends Mentionable> mentions)
+            throws IOException {
+        if (text == null) {
+            throw new IllegalArgumentException("Text must not be null.");
+        }
+        if (!headerWritten) {
+            ensureCapacity(4);
+            buffer[position++] = MAGIC_0;
+            buffer[position++] = MAGIC_1;
+            buffer[position++] = VERSION;
+            buffer[position++] = (byte) (stringTable ? FLAG_STRING_TABLE : 0);
+            headerWritten = true;
+        }
+
+        writeString(text.toString());
+
+        final List<? extends Mentionable> sorted = sortedByOffset(mentions);
+        writeVarint(sorted.size());
+        int previousEnd = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            final Mentionable mention = sorted.get(i);
+            final String name = mention.getMentionName() != null ? mention.getMentionName() : "";
+            writeVarint(zigzag(mention.getMentionOffset() - previousEnd));
+            writeName(name);
+            writeVarint(zigzag(mention.getMentionLength() - name.length()));
+            previousEnd = mention.getMentionOffset() + mention.getMentionLength();
+        }
+    }
+
+    /**
+     * Writes the buffered records to the stream and flushes it.
+     *
+     * @throws IOException if writing to the stream failed.
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    /**
+     * Flushes and closes the stream.
+     *
+     * @throws IOException if writing to the stream failed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+
+    private static List<? extends Mentionable> sortedByOffset(
+            final List<? extends Mentionable> mentions) {
+        if (mentions == null) {
+            return Collections.emptyList();
+        }
+        for (int i = 1; i < mentions.size(); i++) {
+            if (mentions.get(i - 1).getMentionOffset() > mentions.get(i).getMentionOffset()) {
+                final List<Mentionable> sorted = new ArrayList<Mentionable>(mentions);
+                Collections.sort(sorted, OFFSET_ORDER);
+                return sorted;
+            }
+        }
+        return mentions;
+    }
+
+    private void writeName(final String name) throws IOException {
+        if (stringTable) {
+            final Integer index = names.get(name);
+            if (index != null) {
+                writeVarint(index + 1);
+                return;
+            }
+            names.put(name, names.size());
+        }
+        writeVarint(0);
+        writeString(name);
+    }
+
+    private void writeString(final String value) throws IOException {
+        final byte[] bytes = value.getBytes(UTF_8);
+        writeVarint(bytes.length);
+        if (bytes.length > buffer.length) {
+            drain();
+            out.write(bytes);
+        } else {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+    }
+
+    private void writeVarint(int value) throws IOException {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Maps signed values to unsigned ones so small negative values stay short: 0, -1, 1, -2...
+     */
+    static int zigzag(final int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private void ensureCapacity(final int bytes) throws IOException {
+        if (position + bytes > buffer.length) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * Writes to a {@link ByteBuffer}.
+     */
+    private static class ByteBufferOutputStream extends OutputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferOutputStream(final ByteBuffer buffer) {
+            if (buffer == null) {
+                throw new IllegalArgumentException("Buffer must not be null.");
+            }
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(final int b) {
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) {
+            buffer.put(bytes, offset, length);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.percolate.mentions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds the known handles, e.g. "@brent" or "#general", in plain text such as a message coming
+ * from an email or SMS bridge, and creates a {@link Mentionable} for each of them. Handles are
+ * matched ignoring case, with the same rules as a query: a handle must start at the start of the
+ * text or after a whitespace, which leaves emails alone, and must not be followed by a letter or
+ * digit. Where handles overlap, the leftmost and then the longest one wins.
+ * <p/>
+ * The handles are compiled into an Aho-Corasick automaton whose failure transitions are resolved
+ * ahead of time, so the text is scanned once, one table lookup per character, whatever the
+ * number of handles. The table has an entry per state and distinct character of the handles,
+ * about 4 bytes for each character of each handle times the number of distinct characters.
+ * <p/>
+ * The resolver is immutable and may be used from any thread. It is also a
+ * {@link MentionResolver}, e.g. to resolve the handles of pasted text.
+ *
+ * @param <T>   The type of {@link Mentionable} created.
+ */
+@SuppressWarnings("WeakerAccess")
+public class MentionHandleResolver<T extends Mentionable> implements MentionResolver<T> {
+
+    private final MentionDecoder.Factory<T> factory;
+
+    /**
+     * The display names of the handles.
+     */
+    private final String[] names;
+
+    /**
+     * The class of each char, 0 for the chars which are not in any handle. Upper and lower case
+     * chars share a class.
+     */
+    private final char[] classes;
+
+    /**
+     * The number of char classes, the width of a row of <code>transitions</code>.
+     */
+    private final int alphabetSize;
+
+    /**
+     * The next state for each state and char class, including the failure transitions.
+     */
+    private final int[] transitions;
+
+    /**
+     * The length of the handle prefix each state stands for.
+     */
+    private final int[] depths;
+
+    /**
+     * The failure state of each state, the state of its longest proper suffix.
+     */
+    private final int[] failures;
+
+    /**
+     * The index in <code>names</code> of the handle ending at each state, or -1.
+     */
+    private final int[] nameIndexes;
+
+    /**
+     * The closest state along the failure states, starting with the state itself, at which a
+     * handle ends, or -1.
+     */
+    private final int[] outputs;
+
+    /**
+     * @param handles   Map<String, String>         The display name of each handle. A handle
+     *                                              starts with its trigger symbol, e.g. "@brent".
+     * @param factory   MentionDecoder.Factory<T>   Creates the mentions.
+     */
+    public MentionHandleResolver(final Map<String, String> handles,
+                                 final MentionDecoder.Factory<T> factory) {
+        if (handles == null || factory == null) {
+            throw new IllegalArgumentException("Handles and factory must not be null.");
+        }
+        this.factory = factory;
+        this.names = new String[handles.size()];
+
+        // Number the chars of the handles, folded to lower case.
+        final String[] patterns = new String[handles.size()];
+        final char[] foldedClasses = new char[Character.MAX_VALUE + 1];
+        int classCount = 1;
+        int maxStates = 1;
+        int index = 0;
+        for (Map.Entry<String, String> entry : handles.entrySet()) {
+            final String handle = entry.getKey();
+            if (handle == null || handle.length() < 2 || Character.isLetterOrDigit(handle.charAt(0))
+                    || Character.isWhitespace(handle.charAt(0))) {
+                throw new IllegalArgumentException("Handle " + handle
+                        + " must be a trigger symbol followed by a name.");
+            } else if (StringUtils.isBlank(entry.getValue())) {
+                throw new IllegalArgumentException("Handle " + handle + " has no name.");
+            }
+            final String pattern = handle.toLowerCase(Locale.ROOT);
+            for (int i = 0; i < pattern.length(); i++) {
+                if (foldedClasses[pattern.charAt(i)] == 0) {
+                    if (classCount == Character.MAX_VALUE) {
+                        throw new IllegalArgumentException("Too many distinct characters.");
+                    }
+                    foldedClasses[pattern.charAt(i)] = (char) classCount++;
+                }
+            }
+            patterns[index] = pattern;
+            names[index] = entry.getValue();
+            maxStates += pattern.length();
+            index++;
+        }
+        this.alphabetSize = classCount;
+        this.classes = new char[Character.MAX_VALUE + 1];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            classes[c] = foldedClasses[Character.toLowerCase((char) c)];
+        }
+
+        // The trie of the handles, -1 where there is no edge yet.
+        final int[] trie = new int[maxStates * alphabetSize];
+        Arrays.fill(trie, -1);
+        final int[] trieDepths = new int[maxStates];
+        final int[] trieNames = new int[maxStates];
+        Arrays.fill(trieNames, -1);
+        int stateCount = 1;
+        for (int i = 0; i < patterns.length; i++) {
+            final String pattern = patterns[i];
+            int state = 0;
+            for (int j = 0; j < pattern.length(); j++) {
+                final int edge = state * alphabetSize + classes[pattern.charAt(j)];
+                if (trie[edge] == -1) {
+                    trie[edge] = stateCount;
+                    trieDepths[stateCount] = j + 1;
+                    stateCount++;
+                }
+                state = trie[edge];
+            }
+            if (trieNames[state] != -1) {
+                throw new IllegalArgumentException("Handle " + pattern + " is used twice.");
+            }
+            trieNames[state] = i;
+        }
+
+        this.transitions = Arrays.copyOf(trie, stateCount * alphabetSize);
+        this.depths = Arrays.copyOf(trieDepths, stateCount);
+        this.nameIndexes = Arrays.copyOf(trieNames, stateCount);
+        this.failures = new int[stateCount];
+        this.outputs = new int[stateCount];
+        outputs[0] = -1;
+
+        // Resolve the missing edges breadth first, so the row of a failure state is complete.
+        final int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            final int state = queue[head++];
+            final int row = state * alphabetSize;
+            final int failureRow = failures[state] * alphabetSize;
+            for (int c = 0; c < alphabetSize; c++) {
+                final int next = transitions[row + c];
+                if (next == -1) {
+                    transitions[row + c] = state == 0 ? 0 : transitions[failureRow + c];
+                } else {
+                    failures[next] = state == 0 ? 0 : transitions[failureRow + c];
+                    outputs[next] = nameIndexes[next] != -1 ? next : outputs[failures[next]];
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the longest handle after <code>trigger</code> at <code>start</code>.
+     *
+     * @return T    A new mention with its name set and its length set to the number of chars of
+     *              the handle without the trigger, or null.
+     */
+    @Override
+    public T resolve(final char trigger, final CharSequence text, final int start,
+                     final int end) {
+        int state = transitions[classes[trigger]];
+        if (depths[state] != 1) {
+            return null;
+        }
+        int match = -1;
+        for (int i = start; ; i++) {
+            if (nameIndexes[state] != -1 && endsWord(text, i, end)) {
+                match = state;
+            }
+            if (i == end) {
+                break;
+            }
+            final int next = transitions[state * alphabetSize + classes[text.charAt(i)]];
+            if (depths[next] != depths[state] + 1) {
+                // A failure transition, no handle continues with this char.
+                break;
+            }
+            state = next;
+        }
+        return match != -1 ? createMention(match, 0, depths[match] - 1) : null;
+    }
+
+    /**
+     * Finds the handles in <code>text</code>.
+     *
+     * @see #findMentions(CharSequence, int, int, List)
+     */
+    public List<T> findMentions(final CharSequence text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text must not be null.");
+        }
+        final List<T> mentions = new ArrayList<>();
+        findMentions(text, 0, text.length(), mentions);
+        return mentions;
+    }
+
+    /**
+     * Scans <code>text</code> once from <code>start</code> to <code>end</code> and adds a
+     * mention for each handle found, in the order of the text. Besides the mentions, only a
+     * few small arrays are allocated.
+     *
+     * @param text      CharSequence        The text to scan.
+     * @param start     int                 The start of the part to scan.
+     * @param end       int                 The end (exclusive) of the part to scan.
+     * @param mentions  List<? super T>     Receives new mentions with their name set, and their
+     *                                      offset and length set to the handle, trigger
+     *                                      included, in <code>text</code>.
+     */
+    public void findMentions(final CharSequence text, final int start, final int end,
+                             final List<? super T> mentions) {
+        if (text == null || mentions == null) {
+            throw new IllegalArgumentException("Text and mentions must not be null.");
+        } else if (start < 0 || start > end || end > text.length()) {
+            throw new IllegalArgumentException("Range " + start + "-" + end
+                    + " is outside of the text.");
+        }
+
+        // The end of the last mention added.
+        int added = start;
+        // The longest match found so far for each start, in the order of their starts. A start
+        // is settled once the automaton is past any handle starting there.
+        int[] candidateStarts = new int[4];
+        int[] candidateStates = new int[4];
+        int candidateCount = 0;
+
+        int state = 0;
+        for (int i = start; i < end; i++) {
+            if (state == 0) {
+                // Only a trigger symbol leaves the root, skip to the next one.
+                while (i < end && transitions[classes[text.charAt(i)]] == 0) {
+                    i++;
+                }
+                if (i == end) {
+                    break;
+                }
+            }
+            state = transitions[state * alphabetSize + classes[text.charAt(i)]];
+            if (candidateCount != 0 && depths[state] < i + 1 - candidateStarts[0]) {
+                added = addSettled(candidateStarts, candidateStates, candidateCount,
+                        i + 1 - depths[state], added, mentions);
+                candidateCount = compact(candidateStarts, candidateStates, candidateCount,
+                        i + 1 - depths[state]);
+            }
+            for (int match = outputs[state]; match != -1; match = outputs[failures[match]]) {
+                final int matchStart = i + 1 - depths[match];
+                if (matchStart < added || !startsWord(text, matchStart)
+                        || !endsWord(text, i + 1, end)) {
+                    continue;
+                }
+                int position = candidateCount;
+                while (position > 0 && candidateStarts[position - 1] > matchStart) {
+                    position--;
+                }
+                if (position > 0 && candidateStarts[position - 1] == matchStart) {
+                    // Ends later than the previous match with the same start.
+                    candidateStates[position - 1] = match;
+                    continue;
+                }
+                if (candidateCount == candidateStarts.length) {
+                    candidateStarts = Arrays.copyOf(candidateStarts, candidateCount * 2);
+                    candidateStates = Arrays.copyOf(candidateStates, candidateCount * 2);
+                }
+                System.arraycopy(candidateStarts, position, candidateStarts, position + 1,
+                        candidateCount - position);
+                System.arraycopy(candidateStates, position, candidateStates, position + 1,
+                        candidateCount - position);
+                candidateStarts[position] = matchStart;
+                candidateStates[position] = match;
+                candidateCount++;
+            }
+        }
+        addSettled(candidateStarts, candidateStates, candidateCount, end, added, mentions);
+    }
+
+    /**
+     * Adds the candidates starting before <code>settled</code> which do not overlap a mention
+     * added before them.
+     *
+     * @return int  The end of the last mention added.
+     */
+    private int addSettled(final int[] starts, final int[] states, final int count,
+                           final int settled, final int added, final List<? super T> mentions) {
+        int lastEnd = added;
+        for (int i = 0; i < count && starts[i] < settled; i++) {
+            if (starts[i] >= lastEnd) {
+                mentions.add(createMention(states[i], starts[i], depths[states[i]]));
+                lastEnd = starts[i] + depths[states[i]];
+            }
+        }
+        return lastEnd;
+    }
+
+    /**
+     * Removes the candidates starting before <code>settled</code>.
+     *
+     * @return int  The number of candidates left.
+     */
+    private static int compact(final int[] starts, final int[] states, final int count,
+                               final int settled) {
+        int removed = 0;
+        while (removed < count && starts[removed] < settled) {
+            removed++;
+        }
+        System.arraycopy(starts, removed, starts, 0, count - removed);
+        System.arraycopy(states, removed, states, 0, count - removed);
+        return count - removed;
+    }
+
+    private T createMention(final int state, final int offset, final int length) {
+        final T mention = factory.createMention();
+        mention.setMentionName(names[nameIndexes[state]]);
+        mention.setMentionOffset(offset);
+        mention.setMentionLength(length);
+        return mention;
+    }
+
+    /**
+     * @return true if a handle may start at <code>index</code>, the start of the text or after a
+     *         whitespace, as for queries.
+     */
+    private static boolean startsWord(final CharSequence text, final int index) {
+        return index == 0 || Character.isWhitespace(Character.codePointBefore(text, index));
+    }
+
+    /**
+     * @return true if a handle may end at <code>index</code>, i.e. no letter or digit follows.
+     */
+    private static boolean endsWord(final CharSequence text, final int index, final int end) {
+        return index == end || !Character.isLetterOrDigit(Character.codePointAt(text, index));
+    }
+}
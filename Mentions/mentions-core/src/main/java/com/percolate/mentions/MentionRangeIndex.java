@@ -0,0 +1,350 @@
+package com.percolate.mentions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps track of the {@link Mentionable}s in a text, ordered by their offsets. The ranges are kept
+ * in parallel primitive arrays next to an array of the {@link Mentionable}s, which serve as ids:
+ * searching and shifting the mentions never reads the {@link Mentionable}s, and offsets are only
+ * written to them by {@link #materialize()}. The offsets at the time of the last structural change
+ * are kept in <code>baseOffsets</code> and all shifts caused by edits since then are stored as
+ * deltas in a Fenwick tree. An edit at position p therefore only costs O(log n) bookkeeping plus
+ * the work for the mentions that overlap p.
+ * <p/>
+ * The arrays grow geometrically, so a tracked mention costs about 16 bytes besides the
+ * {@link Mentionable} itself, and adding one does not allocate most of the time.
+ * <p/>
+ * The index assumes that mentions do not overlap, which holds for any text produced by inserting
+ * mentions at the cursor.
+ */
+class MentionRangeIndex {
+
+    /**
+     * Orders {@link Mentionable}s by their offsets.
+     */
+    private static final Comparator<Mentionable> OFFSET_ORDER = new Comparator<Mentionable>() {
+        @Override
+        public int compare(final Mentionable lhs, final Mentionable rhs) {
+            return lhs.getMentionOffset() < rhs.getMentionOffset() ? -1
+                    : (lhs.getMentionOffset() == rhs.getMentionOffset() ? 0 : 1);
+        }
+    };
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * All tracked {@link Mentionable}s, sorted by offset, up to <code>size</code>.
+     */
+    private Mentionable[] mentions;
+
+    /**
+     * Offset of each mention at the time the Fenwick tree was last reset.
+     */
+    private int[] baseOffsets;
+
+    /**
+     * Length of each mention, read once when it is added.
+     */
+    private int[] lengths;
+
+    /**
+     * 1-based Fenwick tree holding the offset deltas. The delta of the mention at index i is the
+     * prefix sum up to i + 1.
+     */
+    private int[] deltas;
+
+    /**
+     * The number of tracked mentions.
+     */
+    private int size;
+
+    /**
+     * True if the Fenwick tree holds deltas which are not in <code>baseOffsets</code> yet.
+     */
+    private boolean shifted;
+
+    /**
+     * True if the offsets changed since they were last written to the {@link Mentionable}s.
+     */
+    private boolean dirty;
+
+    MentionRangeIndex() {
+        this.mentions = new Mentionable[0];
+        this.baseOffsets = new int[0];
+        this.lengths = new int[0];
+        this.deltas = new int[1];
+    }
+
+    /**
+     * @return int  The number of tracked mentions.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return true if no mentions are tracked.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index int     The position of the mention in offset order.
+     * @return Mentionable  The mention at <code>index</code>. Its offset may be stale, use
+     *                      {@link #offsetAt(int)} to read the current one.
+     */
+    Mentionable get(final int index) {
+        checkIndex(index);
+        return mentions[index];
+    }
+
+    /**
+     * @param index int     The position of the mention in offset order.
+     * @return int          The current offset of the mention at <code>index</code>.
+     */
+    int offsetAt(final int index) {
+        checkIndex(index);
+        int delta = 0;
+        for (int i = index + 1; i > 0; i -= i & -i) {
+            delta += deltas[i];
+        }
+        return baseOffsets[index] + delta;
+    }
+
+    /**
+     * @param index int     The position of the mention in offset order.
+     * @return int          The length of the mention at <code>index</code> when it was added.
+     */
+    int lengthAt(final int index) {
+        checkIndex(index);
+        return lengths[index];
+    }
+
+    /**
+     * @param index int     The position of the mention in offset order.
+     * @return int          The current end (exclusive) of the mention at <code>index</code>.
+     */
+    int endAt(final int index) {
+        return offsetAt(index) + lengths[index];
+    }
+
+    /**
+     * Binary search for the first mention starting at or after <code>position</code>.
+     *
+     * @param position  int     A position in the text.
+     * @return int              The index of the first mention whose offset is greater than or
+     *                          equal to <code>position</code>, or {@link #size()} if there is none.
+     */
+    int lowerBound(final int position) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (offsetAt(mid) < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Adds a mention at the given offset, keeping the offset order. The offset is written to the
+     * {@link Mentionable} right away.
+     *
+     * @param mention   Mentionable     The mention to track.
+     * @param offset    int             The offset of the mention in the text.
+     */
+    void add(final Mentionable mention, final int offset) {
+        rebase();
+        mention.setMentionOffset(offset);
+        final int index = lowerBound(offset);
+        ensureCapacity(size + 1);
+        System.arraycopy(mentions, index, mentions, index + 1, size - index);
+        System.arraycopy(baseOffsets, index, baseOffsets, index + 1, size - index);
+        System.arraycopy(lengths, index, lengths, index + 1, size - index);
+        mentions[index] = mention;
+        baseOffsets[index] = offset;
+        lengths[index] = mention.getMentionLength();
+        size++;
+    }
+
+    /**
+     * Adds all the mentions at the offsets they already carry.
+     *
+     * @param newMentions   List<? extends Mentionable>     The mentions to track.
+     */
+    void addAll(final List<? extends Mentionable> newMentions) {
+        if (newMentions.isEmpty()) {
+            return;
+        }
+        rebase();
+        final List<Mentionable> sorted = new ArrayList<Mentionable>(newMentions);
+        Collections.sort(sorted, OFFSET_ORDER);
+        ensureCapacity(size + sorted.size());
+
+        // Merge from the end, so the tracked mentions are moved in place.
+        int tracked = size - 1;
+        int added = sorted.size() - 1;
+        for (int i = size + sorted.size() - 1; added >= 0; i--) {
+            final Mentionable mention = sorted.get(added);
+            if (tracked >= 0 && baseOffsets[tracked] > mention.getMentionOffset()) {
+                mentions[i] = mentions[tracked];
+                baseOffsets[i] = baseOffsets[tracked];
+                lengths[i] = lengths[tracked];
+                tracked--;
+            } else {
+                mentions[i] = mention;
+                baseOffsets[i] = mention.getMentionOffset();
+                lengths[i] = mention.getMentionLength();
+                added--;
+            }
+        }
+        size += sorted.size();
+    }
+
+    /**
+     * Stops tracking the mentions in the index range <code>[from, to)</code>.
+     *
+     * @param from  int     First index to remove.
+     * @param to    int     Index after the last one to remove.
+     */
+    void removeRange(final int from, final int to) {
+        if (from < to) {
+            rebase();
+            System.arraycopy(mentions, to, mentions, from, size - to);
+            System.arraycopy(baseOffsets, to, baseOffsets, from, size - to);
+            System.arraycopy(lengths, to, lengths, from, size - to);
+            Arrays.fill(mentions, size - (to - from), size, null);
+            size -= to - from;
+        }
+    }
+
+    /**
+     * Stops tracking all mentions.
+     */
+    void clear() {
+        Arrays.fill(mentions, 0, size, null);
+        Arrays.fill(deltas, 0);
+        size = 0;
+        shifted = false;
+        dirty = false;
+    }
+
+    /**
+     * Updates the index after <code>before</code> characters at <code>start</code> were replaced
+     * by <code>count</code> new characters. Mentions touched by the replaced text, or with new text
+     * typed inside them, are removed. Mentions after the edit are shifted.
+     *
+     * @param start     int                 Initial position of the new text.
+     * @param before    int                 Length of old text.
+     * @param count     int                 The number of characters in the new text.
+     * @param removed   List<Mentionable>   Receives the mentions that were removed, with their
+     *                                      last offset written to them, may be null.
+     */
+    void applyEdit(final int start, final int before, final int count,
+                   final List<Mentionable> removed) {
+        if (size == 0) {
+            return;
+        }
+
+        // Only the mention right before the first one starting at 'start' can contain 'start'.
+        int first = lowerBound(start);
+        if (first > 0 && endAt(first - 1) > start) {
+            first--;
+        }
+
+        // That mention and all the ones starting inside the replaced text are damaged.
+        final int replacedEnd = start + before;
+        int last = first;
+        while (last < size && offsetAt(last) < replacedEnd) {
+            last++;
+        }
+
+        if (first < last) {
+            if (removed != null) {
+                for (int i = first; i < last; i++) {
+                    mentions[i].setMentionOffset(offsetAt(i));
+                    removed.add(mentions[i]);
+                }
+            }
+            removeRange(first, last);
+        }
+
+        final int diff = count - before;
+        if (diff != 0 && first < size) {
+            for (int i = first + 1; i <= size; i += i & -i) {
+                deltas[i] += diff;
+            }
+            shifted = true;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the current offsets into the {@link Mentionable}s and returns them in offset order.
+     *
+     * @return List<Mentionable>    An unmodifiable copy of the list of tracked mentions.
+     */
+    List<Mentionable> materialize() {
+        if (dirty) {
+            rebase();
+            for (int i = 0; i < size; i++) {
+                mentions[i].setMentionOffset(baseOffsets[i]);
+            }
+            dirty = false;
+        }
+        return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(mentions, size)));
+    }
+
+    /**
+     * Adds the deltas to <code>baseOffsets</code> and resets them, in linear time. The
+     * {@link Mentionable}s are not updated.
+     */
+    private void rebase() {
+        if (!shifted) {
+            return;
+        }
+        // Turn the tree back into the delta added at each index, then sum them up.
+        for (int i = size; i > 0; i--) {
+            final int parent = i + (i & -i);
+            if (parent <= size) {
+                deltas[parent] -= deltas[i];
+            }
+        }
+        int delta = 0;
+        for (int i = 0; i < size; i++) {
+            delta += deltas[i + 1];
+            baseOffsets[i] += delta;
+        }
+        Arrays.fill(deltas, 0);
+        shifted = false;
+    }
+
+    /**
+     * Grows the arrays to hold at least <code>capacity</code> mentions. Must only be called
+     * right after {@link #rebase()}, as the deltas are not copied.
+     */
+    private void ensureCapacity(final int capacity) {
+        if (capacity > mentions.length) {
+            final int newCapacity = Math.max(capacity,
+                    Math.max(INITIAL_CAPACITY, mentions.length + (mentions.length >> 1)));
+            mentions = Arrays.copyOf(mentions, newCapacity);
+            baseOffsets = Arrays.copyOf(baseOffsets, newCapacity);
+            lengths = Arrays.copyOf(lengths, newCapacity);
+            deltas = new int[newCapacity + 1];
+        }
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size + ".");
+        }
+    }
+}
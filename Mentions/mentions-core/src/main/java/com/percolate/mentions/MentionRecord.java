@@ -0,0 +1,22 @@
+package com.percolate.mentions;
+
+import java.util.List;
+
+/**
+ * A stored text and the {@link Mentionable}s it contains, for example a comment, to be checked by
+ * a {@link MentionValidator}.
+ *
+ * @param <T>   The type of {@link Mentionable} in the text.
+ */
+public interface MentionRecord<T extends Mentionable> {
+
+    /**
+     * @return CharSequence     The text containing the mentions.
+     */
+    CharSequence getText();
+
+    /**
+     * @return List<T>  The mentions, with the offsets and lengths they were stored with.
+     */
+    List<T> getMentions();
+}
@@ -0,0 +1,26 @@
+package com.percolate.mentions;
+
+/**
+ * Resolves the handles typed after a trigger symbol in a plain text, e.g. "@brent" in a pasted
+ * text, to {@link Mentionable}s. The text is scanned with the same rules as a query: a trigger
+ * symbol starts a handle only at the start of the text or after a whitespace.
+ *
+ * @param <T>   The type of {@link Mentionable} resolved.
+ */
+public interface MentionResolver<T extends Mentionable> {
+
+    /**
+     * Resolves the handle starting at <code>start</code>, right after a trigger symbol.
+     *
+     * @param trigger   char            The trigger symbol before <code>start</code>.
+     * @param text      CharSequence    The text being scanned.
+     * @param start     int             The start of the handle.
+     * @param end       int             The end of the part of <code>text</code> that may be
+     *                                  read.
+     * @return T    A new mention for the handle with its name set and its length set to the
+     *              number of chars of the handle, or null if there is no known handle at
+     *              <code>start</code>. The trigger and the handle are replaced by the name.
+     */
+    T resolve(final char trigger, final CharSequence text, final int start, final int end);
+
+}
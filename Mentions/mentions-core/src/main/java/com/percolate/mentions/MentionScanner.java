@@ -0,0 +1,281 @@
+package com.percolate.mentions;
+
+import java.util.List;
+
+/**
+ * Scans the text being typed for the query and the mentions. The scans done on every keystroke
+ * only look at the characters before the cursor and do not allocate. Characters are read as code
+ * points, so a query may start with a letter outside of the Basic Multilingual Plane and an emoji
+ * counts as one character of a query.
+ * <p/>
+ * A query starts with a trigger symbol, '@' by default. When several triggers are used, e.g.
+ * "@#+", a single scan finds the closest trigger of any kind and the character before the query
+ * tells which one is active.
+ */
+final class MentionScanner {
+
+    /**
+     * The trigger symbols used when none are given.
+     */
+    static final String DEFAULT_TRIGGERS = "@";
+
+    private MentionScanner() {
+    }
+
+    /**
+     * Scans backwards from the cursor for the '@' symbol of the query being typed.
+     *
+     * @see #findQueryStart(CharSequence, int, int, String)
+     */
+    static int findQueryStart(final CharSequence text, final int cursorPosition,
+                              final int maxCharacters) {
+        return findQueryStart(text, cursorPosition, maxCharacters, DEFAULT_TRIGGERS);
+    }
+
+    /**
+     * Scans backwards from the cursor for the trigger symbol of the query being typed. At most
+     * <code>maxCharacters</code> + 1 code points are looked at, since a symbol further away can
+     * not start a valid query. The scan stops at the first of any of the <code>triggers</code>, so
+     * the cost does not depend on the number of triggers. Nothing is allocated.
+     *
+     * @param text              CharSequence    The text being typed.
+     * @param cursorPosition    int             The location of the cursor in <code>text</code>.
+     * @param maxCharacters     int             The maximum number of code points of a query.
+     * @param triggers          String          The trigger symbols, e.g. "@#".
+     * @return int  The location of the first character of a valid query, or -1 if the text before
+     *              the cursor does not end with a valid query. Its trigger is the character before.
+     */
+    static int findQueryStart(final CharSequence text, final int cursorPosition,
+                              final int maxCharacters, final String triggers) {
+        if (text == null || cursorPosition <= 0 || cursorPosition > text.length()) {
+            return -1;
+        }
+
+        // The number of code points between the character looked at and the cursor.
+        int searchLength = 0;
+        for (int i = cursorPosition - 1; i >= 0 && searchLength <= maxCharacters; i--) {
+            final char c = text.charAt(i);
+            if (isTrigger(c, triggers)) {
+                // check search text is within <code>maxCharacters</code> and begins with a
+                // alpha numeric char.
+                if (searchIsWithinMaxChars(searchLength, maxCharacters)
+                        && searchBeginsWithAlphaNumericChar(text, i + 1)) {
+
+                    // check if search text is first in the view or has a space beforehand if
+                    // there are more characters in the view.
+                    if (i == 0 || spaceBeforeAtSymbol(text, i)) {
+                        return i + 1;
+                    }
+                }
+                return -1;
+            }
+            // The low surrogate of a pair is counted along with its high surrogate.
+            if (!Character.isLowSurrogate(c) || i == 0
+                    || !Character.isHighSurrogate(text.charAt(i - 1))) {
+                searchLength++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * If there is text before the '@' symbol, then check if it a white space. This is to prevent
+     * performing a mention when the user is typing an email.
+     *
+     * @param text              CharSequence    This is all the text that has been typed.
+     * @param atSymbolPosition  int             The location of the '@' symbol in the text.
+     * @return true or false
+     */
+    private static boolean spaceBeforeAtSymbol(final CharSequence text,
+                                               final int atSymbolPosition) {
+        if (atSymbolPosition > 0) {
+            final int charBeforeAtSymbol = Character.codePointBefore(text, atSymbolPosition);
+            if (Character.isWhitespace(charBeforeAtSymbol)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if the number of characters after the '@' symbol is within <code>maxCharacters</code>.
+     *
+     * @param searchLength  int     The number of code points after the '@' symbol entered by the
+     *                      user.
+     * @param maxCharacters int     The maximum number of characters that should be used
+     *                      as a search query. The default is 13 characters, but this
+     *                      value is configurable.
+     * @return true or false
+     */
+    private static boolean searchIsWithinMaxChars(final int searchLength, final int maxCharacters) {
+        return (searchLength >= 1 && searchLength <= maxCharacters);
+    }
+
+    /**
+     * Checks if the starting code point in the search text is a letter or digit, including the
+     * ones made of a surrogate pair.
+     *
+     * @param text          CharSequence    This is all the text that has been typed.
+     * @param searchStart   int             The location of the text after the '@' symbol.
+     * @return true or false
+     */
+    private static boolean searchBeginsWithAlphaNumericChar(final CharSequence text,
+                                                            final int searchStart) {
+        return Character.isLetterOrDigit(Character.codePointAt(text, searchStart));
+    }
+
+    /**
+     * Return true if <code>cursorPosition</code> is on a word that starts with an '@' sign.
+     *
+     * @see #wordStartsWithTrigger(CharSequence, int, String)
+     */
+    static boolean wordStartsWithAtSign(final CharSequence text, final int cursorPosition) {
+        return wordStartsWithTrigger(text, cursorPosition, DEFAULT_TRIGGERS);
+    }
+
+    /**
+     * Return true if <code>cursorPosition</code> is on a word that starts with one of the
+     * <code>triggers</code>. The word is found by scanning backwards from the cursor to the
+     * previous space or the start of the text.
+     *
+     * @param text              CharSequence    The text being typed.
+     * @param cursorPosition    int             The location of the cursor in <code>text</code>.
+     * @param triggers          String          The trigger symbols, e.g. "@#".
+     * @return true or false
+     */
+    static boolean wordStartsWithTrigger(final CharSequence text, final int cursorPosition,
+                                         final String triggers) {
+        if (text == null || cursorPosition < 0 || cursorPosition > text.length()) {
+            return false;
+        }
+
+        int wordStart = cursorPosition;
+        while (wordStart > 0 && text.charAt(wordStart - 1) != ' ') {
+            wordStart--;
+        }
+        return wordStart < cursorPosition && isTrigger(text.charAt(wordStart), triggers);
+    }
+
+    /**
+     * Finds the '@' symbol to replace when a mention is inserted at the cursor.
+     *
+     * @see #findMentionStart(CharSequence, int, String)
+     */
+    static int findMentionStart(final CharSequence text, final int cursorPosition) {
+        return findMentionStart(text, cursorPosition, DEFAULT_TRIGGERS);
+    }
+
+    /**
+     * Finds the trigger symbol to replace when a mention is inserted at the cursor.
+     *
+     * @param text              CharSequence    The text being typed.
+     * @param cursorPosition    int             The location of the cursor in <code>text</code>.
+     * @param triggers          String          The trigger symbols, e.g. "@#".
+     * @return int  The location of the last trigger symbol before the cursor, or -1.
+     */
+    static int findMentionStart(final CharSequence text, final int cursorPosition,
+                                final String triggers) {
+        if (text == null || cursorPosition > text.length()) {
+            return -1;
+        }
+
+        for (int i = cursorPosition - 1; i >= 0; i--) {
+            if (isTrigger(text.charAt(i), triggers)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return true if <code>c</code> is one of the <code>triggers</code>.
+     */
+    private static boolean isTrigger(final char c, final String triggers) {
+        // Usually a single trigger, a couple at most.
+        for (int i = 0; i < triggers.length(); i++) {
+            if (triggers.charAt(i) == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies <code>text</code> from <code>start</code> to <code>end</code> to <code>out</code> in
+     * a single pass, replacing each trigger symbol and the handle after it with the name of the
+     * mention <code>resolver</code> resolves it to. A trigger only starts a handle after a
+     * whitespace, or at <code>start</code> if <code>wordStart</code> is true.
+     *
+     * @param text            CharSequence        The text to scan.
+     * @param start           int                 The start of the part to scan.
+     * @param end             int                 The end (exclusive) of the part to scan.
+     * @param wordStart       boolean             Whether a handle may start at
+     *                                            <code>start</code>, i.e. it is the start of the
+     *                                            text or follows a whitespace.
+     * @param triggers        String              The trigger symbols, e.g. "@#".
+     * @param resolver        MentionResolver<T>  Resolves the handles.
+     * @param out             StringBuilder       Receives the text, with the resolved handles
+     *                                            replaced by the names.
+     * @param mentions        List<T>             Receives the resolved mentions, with their
+     *                                            offset and length in <code>out</code>.
+     * @param mentionTriggers StringBuilder       Receives the trigger symbol of each mention.
+     */
+    static <T extends Mentionable> void resolveMentions(
+            final CharSequence text, final int start, final int end, final boolean wordStart,
+            final String triggers, final MentionResolver<? extends T> resolver,
+            final StringBuilder out, final List<T> mentions, final StringBuilder mentionTriggers) {
+        int copied = start;
+        int i = start;
+        while (i < end - 1) {
+            final char c = text.charAt(i);
+            if (isTrigger(c, triggers) && (i == start ? wordStart
+                    : Character.isWhitespace(Character.codePointBefore(text, i)))) {
+                final T mention = resolver.resolve(c, text, i + 1, end);
+                final int handleLength = mention != null ? mention.getMentionLength() : 0;
+                if (handleLength > 0 && handleLength <= end - i - 1
+                        && StringUtils.isNotBlank(mention.getMentionName())) {
+                    out.append(text, copied, i);
+                    mention.setMentionOffset(out.length());
+                    mention.setMentionLength(mention.getMentionName().length());
+                    out.append(mention.getMentionName());
+                    mentions.add(mention);
+                    mentionTriggers.append(c);
+                    i += 1 + handleLength;
+                    copied = i;
+                    continue;
+                }
+            }
+            i++;
+        }
+        out.append(text, copied, end);
+    }
+
+    /**
+     * Checks whether <code>text</code> has all the {@link Mentionable}s at their offsets and
+     * length.
+     *
+     * @param text      CharSequence                The text containing the mentions.
+     * @param mentions  List<? extends Mentionable> The mentions.
+     * @return true or false
+     */
+    static boolean textHasMentions(final CharSequence text,
+                                   final List<? extends Mentionable> mentions) {
+        if (text != null && mentions != null && !mentions.isEmpty()) {
+            final String textString = text.toString();
+            for (Mentionable mention : mentions) {
+                final int mentionStart = mention.getMentionOffset();
+                final int mentionEnd = mention.getMentionLength();
+                if (mentionEnd <= textString.length()) {
+                    final String displayText = StringUtils.substring(textString, mentionStart,
+                            mentionStart + mentionEnd);
+                    if (StringUtils.isBlank(displayText) || !StringUtils.equals(displayText,
+                            mention.getMentionName())) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,281 @@
+package com.percolate.mentions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An immutable prefix index over a list of {@link Mentionable}s, used to find suggestions for a
+ * query. Every {@link Mentionable} is indexed under several tokens (by default each word of its
+ * mention name and the full name), which are case folded once when the index is built. Searching
+ * is a binary search for the first token starting with the query followed by a walk over the
+ * matching tokens until <code>limit</code> {@link Mentionable}s are found, so nothing is case
+ * folded per {@link Mentionable} while the user types.
+ * <p/>
+ * The index is immutable and may be searched from any thread, which makes it the built-in
+ * {@link SuggestionProvider} for a static list of {@link Mentionable}s.
+ *
+ * @param <T>   The type of {@link Mentionable} to index.
+ */
+@SuppressWarnings("WeakerAccess")
+public class MentionSuggestionIndex<T extends Mentionable> implements SuggestionProvider<T> {
+
+    /**
+     * Provides the tokens a {@link Mentionable} can be found by, for example its first name,
+     * last name and handle.
+     *
+     * @param <T>   The type of {@link Mentionable} to index.
+     */
+    public interface Tokenizer<T> {
+
+        /**
+         * @param item  T   The {@link Mentionable} to index.
+         * @return List<String>     The tokens to index <code>item</code> under.
+         */
+        List<String> getTokens(final T item);
+    }
+
+    /**
+     * Indexes a {@link Mentionable} under each word of its mention name and, if it has more than
+     * one word, under its full mention name.
+     */
+    public static final Tokenizer<Mentionable> NAME_TOKENIZER = new Tokenizer<Mentionable>() {
+        @Override
+        public List<String> getTokens(final Mentionable item) {
+            final String name = item.getMentionName();
+            if (StringUtils.isBlank(name)) {
+                return Collections.emptyList();
+            }
+            final List<String> tokens = new ArrayList<>();
+            final String[] words = name.trim().split("\\s+");
+            Collections.addAll(tokens, words);
+            if (words.length > 1) {
+                tokens.add(name.trim());
+            }
+            return tokens;
+        }
+    };
+
+    /**
+     * The indexed {@link Mentionable}s.
+     */
+    private final List<T> items;
+
+    /**
+     * Case folded tokens, sorted.
+     */
+    private final String[] tokens;
+
+    /**
+     * Index into <code>items</code> of the {@link Mentionable} each token belongs to.
+     */
+    private final int[] tokenItems;
+
+    /**
+     * Locale used for case folding.
+     */
+    private final Locale locale;
+
+    /**
+     * Builds an index of <code>items</code> by their mention names.
+     *
+     * @param items     List<? extends T>   The {@link Mentionable}s to index.
+     */
+    public MentionSuggestionIndex(final List<? extends T> items) {
+        this(items, NAME_TOKENIZER, Locale.getDefault());
+    }
+
+    /**
+     * Builds an index of <code>items</code> by the tokens provided by <code>tokenizer</code>.
+     *
+     * @param items     List<? extends T>       The {@link Mentionable}s to index.
+     * @param tokenizer Tokenizer<? super T>    Provides the tokens of each {@link Mentionable}.
+     * @param locale    Locale                  The locale used to case fold tokens and queries.
+     */
+    public MentionSuggestionIndex(final List<? extends T> items,
+                                  final Tokenizer<? super T> tokenizer, final Locale locale) {
+        if (items == null || tokenizer == null || locale == null) {
+            throw new IllegalArgumentException("Items, tokenizer and locale must not be null.");
+        }
+        this.items = Collections.unmodifiableList(new ArrayList<T>(items));
+        this.locale = locale;
+
+        final List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < this.items.size(); i++) {
+            for (String token : tokenizer.getTokens(this.items.get(i))) {
+                if (StringUtils.isNotBlank(token)) {
+                    entries.add(new Entry(token.toLowerCase(locale), i));
+                }
+            }
+        }
+        Collections.sort(entries);
+
+        this.tokens = new String[entries.size()];
+        this.tokenItems = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            tokens[i] = entries.get(i).token;
+            tokenItems[i] = entries.get(i).item;
+        }
+    }
+
+    /**
+     * @return List<T>  The indexed {@link Mentionable}s.
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Finds the {@link Mentionable}s with a token starting with <code>query</code>, ignoring case.
+     * Results are ordered by the matching token.
+     *
+     * @param query String  The query typed by the user.
+     * @param limit int     The maximum number of results.
+     * @return List<T>      Up to <code>limit</code> matching {@link Mentionable}s.
+     */
+    @Override
+    public List<T> search(final String query, final int limit) {
+        if (StringUtils.isBlank(query) || limit <= 0) {
+            return Collections.emptyList();
+        }
+        final String foldedQuery = fold(query);
+        final int from = lowerBound(foldedQuery, 0, tokens.length);
+        return collect(foldedQuery, from, tokens.length, limit);
+    }
+
+    /**
+     * Returns a {@link QueryListener} that searches this index for every query and passes the
+     * results to <code>resultListener</code>, so the index can be set on
+     * <code>Mentions.Builder#queryListener(QueryListener)</code> directly.
+     *
+     * @param limit             int                             The maximum number of results.
+     * @param resultListener    SuggestionsResultListener<T>    Receives the results.
+     * @return QueryListener    A listener searching this index.
+     */
+    public QueryListener asQueryListener(final int limit,
+                                         final SuggestionsResultListener<T> resultListener) {
+        return new QueryListener() {
+            @Override
+            public void onQueryReceived(final String query) {
+                resultListener.onSuggestionsResult(query, search(query, limit));
+            }
+        };
+    }
+
+    /**
+     * @param query String  A query typed by the user.
+     * @return String       The query case folded like the tokens.
+     */
+    String fold(final String query) {
+        return query.trim().toLowerCase(locale);
+    }
+
+    /**
+     * Binary search for the first token greater than or equal to <code>foldedQuery</code>.
+     *
+     * @param foldedQuery   String  A case folded query.
+     * @param from          int     First token index to search.
+     * @param to            int     Token index after the last one to search.
+     * @return int          The index of the first token not less than the query.
+     */
+    int lowerBound(final String foldedQuery, final int from, final int to) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (tokens[mid].compareTo(foldedQuery) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Binary search for the end of the tokens starting with <code>foldedQuery</code>.
+     *
+     * @param foldedQuery   String  A case folded query.
+     * @param from          int     Index of the first token starting with the query.
+     * @param to            int     Token index after the last one to search.
+     * @return int          The index after the last token starting with the query.
+     */
+    int upperBound(final String foldedQuery, final int from, final int to) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (tokens[mid].startsWith(foldedQuery)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return int  The number of indexed tokens.
+     */
+    int tokenCount() {
+        return tokens.length;
+    }
+
+    /**
+     * Collects distinct {@link Mentionable}s from the tokens starting with
+     * <code>foldedQuery</code>, beginning at token <code>from</code>.
+     *
+     * @param foldedQuery   String  A case folded query.
+     * @param from          int     Index of the first token to look at.
+     * @param to            int     Token index after the last one to look at.
+     * @param limit         int     The maximum number of results.
+     * @return List<T>      Up to <code>limit</code> matching {@link Mentionable}s.
+     */
+    List<T> collect(final String foldedQuery, final int from, final int to, final int limit) {
+        final int[] found = new int[Math.min(limit, items.size())];
+        int foundCount = 0;
+        for (int i = from; i < to && foundCount < found.length
+                && tokens[i].startsWith(foldedQuery); i++) {
+            if (!contains(found, foundCount, tokenItems[i])) {
+                found[foundCount++] = tokenItems[i];
+            }
+        }
+
+        final List<T> results = new ArrayList<>(foundCount);
+        for (int i = 0; i < foundCount; i++) {
+            results.add(items.get(found[i]));
+        }
+        return results;
+    }
+
+    private static boolean contains(final int[] values, final int count, final int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A token and the index of the {@link Mentionable} it belongs to, used while building.
+     */
+    private static class Entry implements Comparable<Entry> {
+
+        final String token;
+
+        final int item;
+
+        Entry(final String token, final int item) {
+            this.token = token;
+            this.item = item;
+        }
+
+        @Override
+        public int compareTo(final Entry other) {
+            final int result = token.compareTo(other.token);
+            return result != 0 ? result : (item < other.item ? -1 : (item == other.item ? 0 : 1));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.percolate.mentions;
+
+import java.util.List;
+
+/**
+ * Searches a {@link MentionSuggestionIndex} while the user types a query. When a query extends
+ * the previous one and was typed after the same '@' symbol, for example "@jo" then "@jos", only
+ * the tokens that matched the previous query are searched. The search falls back to the whole
+ * index when the user deletes characters or starts a query elsewhere.
+ *
+ * @param <T>   The type of {@link Mentionable} searched for.
+ */
+@SuppressWarnings("WeakerAccess")
+public class MentionSuggestionSession<T extends Mentionable> {
+
+    /**
+     * The index to search.
+     */
+    private final MentionSuggestionIndex<T> index;
+
+    /**
+     * Location of the '@' symbol of the previous query, or -1.
+     */
+    private int queryOffset = -1;
+
+    /**
+     * The previous query, case folded, or null.
+     */
+    private String foldedQuery;
+
+    /**
+     * Index of the first token matching the previous query.
+     */
+    private int rangeStart;
+
+    /**
+     * Index after the last token matching the previous query.
+     */
+    private int rangeEnd;
+
+    /**
+     * @param index MentionSuggestionIndex<T>   The index to search.
+     */
+    public MentionSuggestionSession(final MentionSuggestionIndex<T> index) {
+        if (index == null) {
+            throw new IllegalArgumentException("Index must not be null.");
+        }
+        this.index = index;
+    }
+
+    /**
+     * Finds the {@link Mentionable}s with a token starting with <code>query</code>, ignoring case.
+     *
+     * @param queryOffset   int     The location of the '@' symbol the query was typed after,
+     *                              see <code>Mentions#getQueryOffset()</code>.
+     * @param query         String  The query typed by the user.
+     * @param limit         int     The maximum number of results.
+     * @return List<T>      Up to <code>limit</code> matching {@link Mentionable}s.
+     */
+    public List<T> search(final int queryOffset, final String query, final int limit) {
+        if (StringUtils.isBlank(query)) {
+            reset();
+            return index.search(query, limit);
+        }
+
+        final String folded = index.fold(query);
+        int from = 0;
+        int to = index.tokenCount();
+        if (isRefinement(queryOffset, folded)) {
+            from = rangeStart;
+            to = rangeEnd;
+        }
+        from = index.lowerBound(folded, from, to);
+        to = index.upperBound(folded, from, to);
+
+        this.queryOffset = queryOffset;
+        this.foldedQuery = folded;
+        this.rangeStart = from;
+        this.rangeEnd = to;
+        return index.collect(folded, from, to, limit);
+    }
+
+    /**
+     * Forgets the previous query, so that the next search looks at the whole index.
+     */
+    public void reset() {
+        queryOffset = -1;
+        foldedQuery = null;
+    }
+
+    /**
+     * @return int  The number of tokens matching the previous query.
+     */
+    int getCandidateCount() {
+        return foldedQuery == null ? 0 : rangeEnd - rangeStart;
+    }
+
+    private boolean isRefinement(final int queryOffset, final String folded) {
+        return foldedQuery != null && queryOffset >= 0 && queryOffset == this.queryOffset
+                && folded.startsWith(foldedQuery);
+    }
+}
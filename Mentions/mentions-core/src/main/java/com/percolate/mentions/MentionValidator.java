@@ -0,0 +1,286 @@
+package com.percolate.mentions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checks that the {@link Mentionable}s of a {@link MentionRecord} are still in its text at their
+ * offsets, for example after comments were edited or migrated. A mention whose name is at its
+ * offset but whose length does not match the name has a length mismatch. A mention whose name is
+ * not at its offset anymore is looked for in the text: the closest occurrence of its name that
+ * does not overlap another mention makes it shifted, otherwise it is lost. When repairing, the
+ * length of mismatched mentions and the offset and length of shifted mentions are updated.
+ * <p/>
+ * A validator has no state and may be used from several threads, as long as each
+ * {@link MentionRecord} is only validated by one thread at a time.
+ */
+@SuppressWarnings("WeakerAccess")
+public class MentionValidator {
+
+    /**
+     * A mention that was found at another offset than the stored one.
+     *
+     * @param <T>   The type of {@link Mentionable}.
+     */
+    public static class Shift<T extends Mentionable> {
+
+        private final T mention;
+
+        private final int previousOffset;
+
+        private final int offset;
+
+        Shift(final T mention, final int previousOffset, final int offset) {
+            this.mention = mention;
+            this.previousOffset = previousOffset;
+            this.offset = offset;
+        }
+
+        public T getMention() {
+            return mention;
+        }
+
+        /**
+         * @return int  The offset the mention was stored with.
+         */
+        public int getPreviousOffset() {
+            return previousOffset;
+        }
+
+        /**
+         * @return int  The offset the mention was found at.
+         */
+        public int getOffset() {
+            return offset;
+        }
+    }
+
+    /**
+     * The outcome of validating one {@link MentionRecord}.
+     *
+     * @param <T>   The type of {@link Mentionable}.
+     */
+    public static class Result<T extends Mentionable> {
+
+        private final MentionRecord<T> record;
+
+        private final int validCount;
+
+        private final List<T> lengthMismatches;
+
+        private final List<Shift<T>> shifted;
+
+        private final List<T> lost;
+
+        Result(final MentionRecord<T> record, final int validCount,
+               final List<T> lengthMismatches, final List<Shift<T>> shifted, final List<T> lost) {
+            this.record = record;
+            this.validCount = validCount;
+            this.lengthMismatches = lengthMismatches;
+            this.shifted = shifted;
+            this.lost = lost;
+        }
+
+        public MentionRecord<T> getRecord() {
+            return record;
+        }
+
+        /**
+         * @return int  The number of mentions found at their stored offset.
+         */
+        public int getValidCount() {
+            return validCount;
+        }
+
+        /**
+         * @return List<T>  The mentions found at their stored offset with another length than
+         *                  the length of their name.
+         */
+        public List<T> getLengthMismatches() {
+            return lengthMismatches;
+        }
+
+        /**
+         * @return List<Shift<T>>   The mentions found at another offset.
+         */
+        public List<Shift<T>> getShifted() {
+            return shifted;
+        }
+
+        /**
+         * @return List<T>  The mentions whose name is not in the text anymore.
+         */
+        public List<T> getLost() {
+            return lost;
+        }
+
+        /**
+         * @return true if all the mentions were found at their stored offset and length.
+         */
+        public boolean isValid() {
+            return lengthMismatches.isEmpty() && shifted.isEmpty() && lost.isEmpty();
+        }
+    }
+
+    /**
+     * True if the offsets of shifted mentions are updated.
+     */
+    private final boolean repair;
+
+    /**
+     * @param repair    boolean     True to update the offset and length of mismatched and shifted
+     *                              mentions, false to only report them.
+     */
+    public MentionValidator(final boolean repair) {
+        this.repair = repair;
+    }
+
+    /**
+     * Validates the mentions of <code>record</code>.
+     *
+     * @param record    MentionRecord<T>    The text and its mentions.
+     * @return Result<T>    The valid, mismatched, shifted and lost mentions.
+     */
+    public <T extends Mentionable> Result<T> validate(final MentionRecord<T> record) {
+        if (record == null || record.getText() == null) {
+            throw new IllegalArgumentException("Record and its text must not be null.");
+        }
+        final String text = record.getText().toString();
+        final List<T> mentions = record.getMentions() != null ? record.getMentions()
+                : Collections.<T>emptyList();
+
+        // Mentions at their offset claim their range first, so a shifted mention can not be
+        // matched to the name of another one. Claimed ranges are merged and keyed by start.
+        final boolean[] found = new boolean[mentions.size()];
+        final TreeMap<Integer, Integer> claimed = new TreeMap<>();
+        int validCount = 0;
+        List<T> lengthMismatches = Collections.emptyList();
+        for (int i = 0; i < mentions.size(); i++) {
+            final T mention = mentions.get(i);
+            final String name = mention.getMentionName();
+            if (!isAt(text, name, mention.getMentionOffset())) {
+                continue;
+            }
+            found[i] = true;
+            claim(claimed, mention.getMentionOffset(), mention.getMentionOffset() + name.length());
+            if (mention.getMentionLength() == name.length()) {
+                validCount++;
+            } else {
+                if (lengthMismatches.isEmpty()) {
+                    lengthMismatches = new ArrayList<>();
+                }
+                lengthMismatches.add(mention);
+                if (repair) {
+                    mention.setMentionLength(name.length());
+                }
+            }
+        }
+
+        List<Shift<T>> shifted = Collections.emptyList();
+        List<T> lost = Collections.emptyList();
+        for (int i = 0; i < mentions.size(); i++) {
+            if (found[i]) {
+                continue;
+            }
+            final T mention = mentions.get(i);
+            final String name = mention.getMentionName();
+            final int offset = StringUtils.isBlank(name) ? -1
+                    : findClosest(text, name, mention.getMentionOffset(), claimed);
+            if (offset == -1) {
+                if (lost.isEmpty()) {
+                    lost = new ArrayList<>();
+                }
+                lost.add(mention);
+            } else {
+                if (shifted.isEmpty()) {
+                    shifted = new ArrayList<>();
+                }
+                shifted.add(new Shift<>(mention, mention.getMentionOffset(), offset));
+                claim(claimed, offset, offset + name.length());
+                if (repair) {
+                    mention.setMentionOffset(offset);
+                    mention.setMentionLength(name.length());
+                }
+            }
+        }
+        return new Result<>(record, validCount, lengthMismatches, shifted, lost);
+    }
+
+    /**
+     * @return true if <code>name</code> is in <code>text</code> at <code>offset</code>.
+     */
+    private static boolean isAt(final String text, final String name, final int offset) {
+        return StringUtils.isNotBlank(name) && offset >= 0
+                && text.regionMatches(offset, name, 0, name.length());
+    }
+
+    /**
+     * Finds the occurrence of <code>name</code> closest to <code>offset</code> that does not
+     * overlap a <code>claimed</code> range.
+     *
+     * @return int  The offset of the occurrence, or -1.
+     */
+    private static int findClosest(final String text, final String name, final int offset,
+                                   final TreeMap<Integer, Integer> claimed) {
+        final int from = Math.max(0, Math.min(offset, text.length()));
+        int after = text.indexOf(name, from);
+        while (after != -1) {
+            final Map.Entry<Integer, Integer> range = findClaimed(claimed, after,
+                    after + name.length());
+            if (range == null) {
+                break;
+            }
+            // Any occurrence starting before the end of the range overlaps it too.
+            after = text.indexOf(name, range.getValue());
+        }
+        int before = from == 0 ? -1 : text.lastIndexOf(name, from - 1);
+        while (before != -1) {
+            final Map.Entry<Integer, Integer> range = findClaimed(claimed, before,
+                    before + name.length());
+            if (range == null) {
+                break;
+            }
+            // Any occurrence ending after the start of the range overlaps it too.
+            before = text.lastIndexOf(name, range.getKey() - name.length());
+        }
+
+        if (after == -1) {
+            return before;
+        } else if (before == -1) {
+            return after;
+        }
+        return from - before <= after - from ? before : after;
+    }
+
+    /**
+     * @return Map.Entry<Integer, Integer>  The claimed range overlapping
+     *                                      <code>[start, end)</code>, or null.
+     */
+    private static Map.Entry<Integer, Integer> findClaimed(
+            final TreeMap<Integer, Integer> claimed, final int start, final int end) {
+        // Claimed ranges do not overlap, so only the last one starting before 'end' can.
+        final Map.Entry<Integer, Integer> range = claimed.lowerEntry(end);
+        return range != null && range.getValue() > start ? range : null;
+    }
+
+    /**
+     * Adds <code>[start, end)</code> to the claimed ranges, merging it with the ranges it
+     * overlaps or touches.
+     */
+    private static void claim(final TreeMap<Integer, Integer> claimed, final int start,
+                              final int end) {
+        int mergedStart = start;
+        int mergedEnd = end;
+        Map.Entry<Integer, Integer> range = claimed.floorEntry(end);
+        while (range != null && range.getValue() >= start) {
+            mergedStart = Math.min(mergedStart, range.getKey());
+            mergedEnd = Math.max(mergedEnd, range.getValue());
+            claimed.remove(range.getKey());
+            range = claimed.lowerEntry(range.getKey());
+        }
+        claimed.put(mergedStart, mergedEnd);
+    }
+}
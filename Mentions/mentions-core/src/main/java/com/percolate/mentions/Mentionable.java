@@ -1,7 +1,5 @@
 package com.percolate.mentions;
 
-import android.widget.EditText;
-
 /**
  * An interface that all models need to inherit. It contains methods for setting the offset,
  * length and mention name. It is used to keep track all the mentions internally in the library.
@@ -16,7 +14,7 @@ public interface Mentionable {
     /**
      * Set mentions' start location.
      *
-     * @param offset    int     The starting locating of the mention in the {@link EditText}.
+     * @param offset    int     The starting locating of the mention in the <code>EditText</code>.
      */
     void setMentionOffset(final int offset);
 
@@ -28,7 +26,7 @@ public interface Mentionable {
     /**
      * Set mentions' length.
      *
-     * @param length    int     The length of the mention in the {@link EditText}.
+     * @param length    int     The length of the mention in the <code>EditText</code>.
      */
     void setMentionLength(final int length);
 
@@ -0,0 +1,341 @@
+package com.percolate.mentions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps a draft in a file by appending the edits made to it, so saving a change costs the size of
+ * the edit instead of the size of the document. The file starts with a {@link MentionsState}
+ * snapshot followed by the edits and inserted mentions; {@link #read()} replays them. Once
+ * <code>maxRecords</code> records were appended, {@link #needsCompaction()} returns true and the
+ * current state should be written with {@link #compact(MentionsState)}, which replaces the file
+ * atomically.
+ * <p/>
+ * Records are flushed as they are appended. If the process dies while a record is written, the
+ * incomplete record is ignored when the journal is read. A journal is not thread-safe.
+ */
+@SuppressWarnings("WeakerAccess")
+public class MentionsJournal implements Closeable {
+
+    static final byte MAGIC_0 = 'M';
+
+    static final byte MAGIC_1 = 'J';
+
+    static final byte VERSION = 1;
+
+    private static final byte RECORD_EDIT = 1;
+
+    private static final byte RECORD_MENTION = 2;
+
+    private final File file;
+
+    /**
+     * The number of records after which the journal should be compacted.
+     */
+    private final int maxRecords;
+
+    /**
+     * Appends to <code>file</code>, or null until the journal is compacted.
+     */
+    private DataOutputStream out;
+
+    /**
+     * The number of records appended since the last compaction.
+     */
+    private int recordCount;
+
+    /**
+     * @param file          File    The journal file, it does not need to exist.
+     * @param maxRecords    int     The number of records after which the journal should be
+     *                              compacted.
+     */
+    public MentionsJournal(final File file, final int maxRecords) {
+        if (file == null) {
+            throw new IllegalArgumentException("File must not be null.");
+        } else if (maxRecords <= 0) {
+            throw new IllegalArgumentException("Maximum number of records must be greater than 0.");
+        }
+        this.file = file;
+        this.maxRecords = maxRecords;
+    }
+
+    /**
+     * Reads the snapshot and replays the records appended after it. Mentions are moved and
+     * removed by the edits with the same rules as when the text was typed.
+     *
+     * @return MentionsState    The state of the draft, or null if there is no journal file.
+     * @throws IOException if reading failed or the file is not a journal.
+     */
+    public MentionsState read() throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            if (in.readByte() != MAGIC_0 || in.readByte() != MAGIC_1) {
+                throw new IOException("Not a mentions journal.");
+            }
+            final byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + ".");
+            }
+            final MentionsState snapshot = MentionsState.read(in);
+            return replay(snapshot, in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Records that <code>before</code> characters at <code>start</code> were replaced by
+     * <code>inserted</code>.
+     *
+     * @param start     int             Initial position of the new text.
+     * @param before    int             Length of old text.
+     * @param inserted  CharSequence    The new text.
+     * @throws IOException if writing failed.
+     */
+    public void appendEdit(final int start, final int before, final CharSequence inserted)
+            throws IOException {
+        if (inserted == null) {
+            throw new IllegalArgumentException("Inserted text must not be null.");
+        }
+        final DataOutputStream out = checkOpen();
+        out.writeByte(RECORD_EDIT);
+        out.writeInt(start);
+        out.writeInt(before);
+        MentionsState.writeString(out, inserted.toString());
+        flushRecord();
+    }
+
+    /**
+     * Records that a mention was inserted at <code>offset</code>, after its text was.
+     *
+     * @param mention   Mentionable     The mention.
+     * @param offset    int             The offset of the mention.
+     * @param trigger   char            The trigger symbol the mention was typed after.
+     * @throws IOException if writing failed.
+     */
+    public void appendMention(final Mentionable mention, final int offset, final char trigger)
+            throws IOException {
+        if (mention == null) {
+            throw new IllegalArgumentException("Mention must not be null.");
+        }
+        final DataOutputStream out = checkOpen();
+        out.writeByte(RECORD_MENTION);
+        out.writeInt(offset);
+        out.writeInt(mention.getMentionLength());
+        out.writeChar(trigger);
+        MentionsState.writeString(out, mention.getMentionName() != null
+                ? mention.getMentionName() : "");
+        flushRecord();
+    }
+
+    /**
+     * @return int  The number of records after which the journal should be compacted.
+     */
+    public int getMaxRecords() {
+        return maxRecords;
+    }
+
+    /**
+     * @return true if records may be appended, i.e. the journal was compacted and not closed.
+     */
+    public boolean isOpen() {
+        return out != null;
+    }
+
+    /**
+     * @return true once <code>maxRecords</code> records were appended since the last compaction.
+     */
+    public boolean needsCompaction() {
+        return recordCount >= maxRecords;
+    }
+
+    /**
+     * Replaces the journal with a snapshot of <code>state</code>. The snapshot is written to a
+     * temporary file which is then renamed, so a crash leaves either the old or the new journal.
+     * This must be called once before appending, e.g. with the state returned by
+     * {@link #read()}.
+     *
+     * @param state     MentionsState   The current state of the draft.
+     * @throws IOException if writing failed.
+     */
+    public void compact(final MentionsState state) throws IOException {
+        if (state == null) {
+            throw new IllegalArgumentException("State must not be null.");
+        }
+        close();
+
+        final File temporary = new File(file.getPath() + ".tmp");
+        final FileOutputStream stream = new FileOutputStream(temporary);
+        try {
+            final DataOutputStream snapshot = new DataOutputStream(
+                    new BufferedOutputStream(stream));
+            snapshot.writeByte(MAGIC_0);
+            snapshot.writeByte(MAGIC_1);
+            snapshot.writeByte(VERSION);
+            state.write(snapshot);
+            snapshot.flush();
+            stream.getFD().sync();
+        } finally {
+            stream.close();
+        }
+        if (!temporary.renameTo(file)) {
+            throw new IOException("Could not replace " + file + ".");
+        }
+
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        recordCount = 0;
+    }
+
+    /**
+     * Deletes the journal, e.g. once the draft was sent.
+     *
+     * @throws IOException if the file could not be deleted.
+     */
+    public void delete() throws IOException {
+        close();
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not delete " + file + ".");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            final DataOutputStream closed = out;
+            out = null;
+            closed.close();
+        }
+    }
+
+    private DataOutputStream checkOpen() {
+        if (out == null) {
+            throw new IllegalStateException("The journal must be compacted before appending.");
+        }
+        return out;
+    }
+
+    private void flushRecord() throws IOException {
+        out.flush();
+        recordCount++;
+    }
+
+    /**
+     * Applies the records of <code>in</code> to <code>snapshot</code>, up to the end of the file
+     * or to an incomplete record.
+     */
+    private static MentionsState replay(final MentionsState snapshot, final DataInputStream in)
+            throws IOException {
+        final StringBuilder text = new StringBuilder(snapshot.getText());
+        int cursor = snapshot.getCursor();
+        final List<JournalMention> snapshotMentions = new ArrayList<>();
+        for (int i = 0; i < snapshot.getMentionCount(); i++) {
+            snapshotMentions.add(new JournalMention(snapshot.getMentionName(i),
+                    snapshot.getMentionOffset(i), snapshot.getMentionLength(i),
+                    snapshot.getMentionTrigger(i)));
+        }
+        final MentionRangeIndex mentions = new MentionRangeIndex();
+        mentions.addAll(snapshotMentions);
+
+        try {
+            while (true) {
+                final int type = in.read();
+                if (type == -1) {
+                    break;
+                } else if (type == RECORD_EDIT) {
+                    final int start = in.readInt();
+                    final int before = in.readInt();
+                    final String inserted = MentionsState.readString(in);
+                    if (start < 0 || before < 0 || start + before > text.length()) {
+                        throw new IOException("Malformed edit at " + start + ".");
+                    }
+                    text.replace(start, start + before, inserted);
+                    mentions.applyEdit(start, before, inserted.length(), null);
+                    cursor = start + inserted.length();
+                } else if (type == RECORD_MENTION) {
+                    final int offset = in.readInt();
+                    final int length = in.readInt();
+                    final char trigger = in.readChar();
+                    final String name = MentionsState.readString(in);
+                    mentions.add(new JournalMention(name, offset, length, trigger), offset);
+                } else {
+                    throw new IOException("Unknown record type " + type + ".");
+                }
+            }
+        } catch (EOFException e) {
+            // The process died while the last record was written, it is dropped.
+        }
+
+        final List<Mentionable> replayed = mentions.materialize();
+        final char[] triggers = new char[replayed.size()];
+        for (int i = 0; i < replayed.size(); i++) {
+            triggers[i] = ((JournalMention) replayed.get(i)).trigger;
+        }
+        return new MentionsState(text, cursor, replayed, triggers);
+    }
+
+    /**
+     * A mention read from the journal.
+     */
+    private static class JournalMention implements Mentionable {
+
+        private final char trigger;
+
+        private String name;
+
+        private int offset;
+
+        private int length;
+
+        JournalMention(final String name, final int offset, final int length,
+                       final char trigger) {
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+            this.trigger = trigger;
+        }
+
+        @Override
+        public int getMentionOffset() {
+            return offset;
+        }
+
+        @Override
+        public void setMentionOffset(final int offset) {
+            this.offset = offset;
+        }
+
+        @Override
+        public int getMentionLength() {
+            return length;
+        }
+
+        @Override
+        public void setMentionLength(final int length) {
+            this.length = length;
+        }
+
+        @Override
+        public String getMentionName() {
+            return name;
+        }
+
+        @Override
+        public void setMentionName(final String mentionName) {
+            this.name = mentionName;
+        }
+    }
+}
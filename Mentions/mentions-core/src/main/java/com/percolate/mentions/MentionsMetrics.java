@@ -0,0 +1,85 @@
+package com.percolate.mentions;
+
+/**
+ * Receives measurements of the mention pipeline, e.g. to report how long checking for a query
+ * takes on real devices. All the methods are called on the thread editing the text, so an
+ * implementation should only record the values and return.
+ * <p/>
+ * {@link #NONE} is used by default: when it is set, nothing is measured at all.
+ */
+public interface MentionsMetrics {
+
+    /**
+     * Looking for a query before the cursor.
+     */
+    int OPERATION_MENTION_CHECK = 0;
+
+    /**
+     * Updating the offsets of the mentions after the text changed.
+     */
+    int OPERATION_UPDATE_MENTIONS = 1;
+
+    /**
+     * Highlighting the mentions.
+     */
+    int OPERATION_HIGHLIGHT = 2;
+
+    /**
+     * The number of operations.
+     */
+    int OPERATION_COUNT = 3;
+
+    /**
+     * Measures nothing.
+     */
+    MentionsMetrics NONE = new MentionsMetrics() {
+        @Override
+        public void onOperation(final int operation, final long durationNanos) {
+        }
+
+        @Override
+        public void onMentionCount(final int count) {
+        }
+
+        @Override
+        public void onSpanOperations(final int count) {
+        }
+
+        @Override
+        public void onMentionLost(final String mentionName) {
+        }
+
+        @Override
+        public void onQueryDispatched() {
+        }
+    };
+
+    /**
+     * @param operation     int     One of the <code>OPERATION_</code> constants.
+     * @param durationNanos long    How long the operation took.
+     */
+    void onOperation(final int operation, final long durationNanos);
+
+    /**
+     * @param count int     The number of mentions in the text after it was updated or highlighted.
+     */
+    void onMentionCount(final int count);
+
+    /**
+     * @param count int     The number of highlight spans added, moved or removed by an edit or a
+     *                      highlight, only reported when it is not 0.
+     */
+    void onSpanOperations(final int count);
+
+    /**
+     * Called when a mention is dropped because its name is no longer at its offset.
+     *
+     * @param mentionName   String  The name of the mention.
+     */
+    void onMentionLost(final String mentionName);
+
+    /**
+     * Called when a query is delivered to a {@link QueryListener}.
+     */
+    void onQueryDispatched();
+}
@@ -0,0 +1,234 @@
+package com.percolate.mentions;
+
+/**
+ * A {@link MentionsMetrics} keeping the measurements in memory, e.g. for tests or to send them in
+ * batches. Latencies are kept in a {@link Histogram} per operation. A recorder may be read from
+ * another thread than the one recording.
+ */
+@SuppressWarnings("WeakerAccess")
+public class MentionsMetricsRecorder implements MentionsMetrics {
+
+    private final Histogram[] latencies;
+
+    private long startNanos;
+
+    private long lastMentionCount;
+
+    private long maxMentionCount;
+
+    private long spanOperations;
+
+    private long lostMentions;
+
+    private long queriesDispatched;
+
+    public MentionsMetricsRecorder() {
+        latencies = new Histogram[OPERATION_COUNT];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new Histogram();
+        }
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void onOperation(final int operation, final long durationNanos) {
+        latencies[operation].record(durationNanos);
+    }
+
+    @Override
+    public synchronized void onMentionCount(final int count) {
+        lastMentionCount = count;
+        maxMentionCount = Math.max(maxMentionCount, count);
+    }
+
+    @Override
+    public synchronized void onSpanOperations(final int count) {
+        spanOperations += count;
+    }
+
+    @Override
+    public synchronized void onMentionLost(final String mentionName) {
+        lostMentions++;
+    }
+
+    @Override
+    public synchronized void onQueryDispatched() {
+        queriesDispatched++;
+    }
+
+    /**
+     * @param operation int     One of the <code>OPERATION_</code> constants.
+     * @return Histogram    The latencies of the operation, in nanoseconds.
+     */
+    public Histogram getLatencies(final int operation) {
+        return latencies[operation];
+    }
+
+    public synchronized long getLastMentionCount() {
+        return lastMentionCount;
+    }
+
+    public synchronized long getMaxMentionCount() {
+        return maxMentionCount;
+    }
+
+    public synchronized long getSpanOperations() {
+        return spanOperations;
+    }
+
+    public synchronized long getLostMentions() {
+        return lostMentions;
+    }
+
+    public synchronized long getQueriesDispatched() {
+        return queriesDispatched;
+    }
+
+    /**
+     * @return double   The number of queries dispatched per second since the recorder was created
+     *                  or reset.
+     */
+    public synchronized double getQueryDispatchRate() {
+        final long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+        return queriesDispatched * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Clears all the measurements.
+     */
+    public synchronized void reset() {
+        for (Histogram histogram : latencies) {
+            histogram.reset();
+        }
+        startNanos = System.nanoTime();
+        lastMentionCount = 0;
+        maxMentionCount = 0;
+        spanOperations = 0;
+        lostMentions = 0;
+        queriesDispatched = 0;
+    }
+
+    /**
+     * Counts values in buckets whose width grows with the values, like HdrHistogram: values below
+     * {@link #SUB_BUCKET_COUNT} are counted exactly, larger ones within 1/16th of their value.
+     * Recording takes constant time and the histogram has a fixed size of 960 counts, whatever
+     * the range of the values.
+     */
+    public static class Histogram {
+
+        /**
+         * The number of buckets per power of two, only the upper half of which is used above
+         * the first power.
+         */
+        static final int SUB_BUCKET_COUNT = 32;
+
+        private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+
+        private static final int SUB_BUCKET_BITS = 5;
+
+        private final long[] counts = new long[SUB_BUCKET_COUNT
+                + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT];
+
+        private long totalCount;
+
+        private long min = Long.MAX_VALUE;
+
+        private long max;
+
+        private long sum;
+
+        /**
+         * @param value long    A value, negative values are recorded as 0.
+         */
+        public synchronized void record(final long value) {
+            final long recorded = Math.max(0, value);
+            counts[bucketIndex(recorded)]++;
+            totalCount++;
+            sum += recorded;
+            min = Math.min(min, recorded);
+            max = Math.max(max, recorded);
+        }
+
+        public synchronized long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * @return long     The smallest recorded value, or 0 if none was.
+         */
+        public synchronized long getMin() {
+            return totalCount > 0 ? min : 0;
+        }
+
+        public synchronized long getMax() {
+            return max;
+        }
+
+        /**
+         * @return double   The mean of the recorded values, or 0 if none was.
+         */
+        public synchronized double getMean() {
+            return totalCount > 0 ? (double) sum / totalCount : 0;
+        }
+
+        /**
+         * @param percentile    double  A percentile between 0 and 100.
+         * @return long     The largest value of the bucket holding the percentile, at most the
+         *                  largest recorded value, or 0 if no value was recorded.
+         */
+        public synchronized long getValueAtPercentile(final double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+            } else if (totalCount == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(max, highestValueOf(i));
+                }
+            }
+            return max;
+        }
+
+        public synchronized void reset() {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = 0;
+            }
+            totalCount = 0;
+            min = Long.MAX_VALUE;
+            max = 0;
+            sum = 0;
+        }
+
+        /**
+         * Values below {@link #SUB_BUCKET_COUNT} have their own bucket. Larger values are bucketed
+         * by their highest bit and the 4 bits below it.
+         */
+        static int bucketIndex(final long value) {
+            if (value < SUB_BUCKET_COUNT) {
+                return (int) value;
+            }
+            final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value)
+                    - (SUB_BUCKET_BITS - 1);
+            final int top = (int) (value >>> shift);
+            return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT
+                    + top - SUB_BUCKET_HALF_COUNT;
+        }
+
+        /**
+         * @return long     The largest value counted in the bucket at <code>index</code>.
+         */
+        static long highestValueOf(final int index) {
+            if (index < SUB_BUCKET_COUNT) {
+                return index;
+            }
+            final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+            final long top = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT
+                    + SUB_BUCKET_HALF_COUNT;
+            return ((top + 1) << shift) - 1;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.percolate.mentions;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable snapshot of a text being composed: the text, the cursor and the
+ * {@link Mentionable}s in it with the trigger symbol each one was typed after. A state can be
+ * written in a plain binary form and read back, e.g. to keep a draft, and the
+ * {@link Mentionable}s are recreated with a {@link MentionDecoder.Factory} when it is restored.
+ * <p/>
+ * Since a state only holds strings and primitive arrays which are never modified, it may be read
+ * from any thread. The states published by <code>Mentions#getSnapshot()</code> carry a version
+ * increasing with every change, the version is not part of the binary form.
+ */
+@SuppressWarnings("WeakerAccess")
+public class MentionsState {
+
+    static final byte MAGIC_0 = 'M';
+
+    static final byte MAGIC_1 = 'S';
+
+    static final byte VERSION = 1;
+
+    private final String text;
+
+    private final int cursor;
+
+    private final String[] names;
+
+    private final int[] offsets;
+
+    private final int[] lengths;
+
+    private final char[] triggers;
+
+    private final long version;
+
+    /**
+     * Snapshots <code>mentions</code> typed after '@'.
+     *
+     * @param text      CharSequence                    The text.
+     * @param cursor    int                             The location of the cursor in the text.
+     * @param mentions  List<? extends Mentionable>     The mentions in the text, may be null.
+     */
+    public MentionsState(final CharSequence text, final int cursor,
+                         final List<? extends Mentionable> mentions) {
+        this(text, cursor, mentions, null);
+    }
+
+    /**
+     * @param triggers  char[]  The trigger symbol of each mention, or null if all of them were
+     *                          typed after '@'.
+     */
+    MentionsState(final CharSequence text, final int cursor,
+                  final List<? extends Mentionable> mentions, final char[] triggers) {
+        this(text, cursor, mentions, triggers, 0);
+    }
+
+    /**
+     * @param version   long    The version of the state.
+     */
+    MentionsState(final CharSequence text, final int cursor,
+                  final List<? extends Mentionable> mentions, final char[] triggers,
+                  final long version) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text must not be null.");
+        } else if (cursor < 0 || cursor > text.length()) {
+            throw new IllegalArgumentException("Cursor " + cursor + " is outside of the text.");
+        }
+        final int count = mentions != null ? mentions.size() : 0;
+        if (triggers != null && triggers.length != count) {
+            throw new IllegalArgumentException("Each mention must have a trigger.");
+        }
+        this.text = text.toString();
+        this.cursor = cursor;
+        this.names = new String[count];
+        this.offsets = new int[count];
+        this.lengths = new int[count];
+        this.triggers = triggers != null ? triggers.clone() : new char[count];
+        this.version = version;
+        for (int i = 0; i < count; i++) {
+            final Mentionable mention = mentions.get(i);
+            names[i] = mention.getMentionName() != null ? mention.getMentionName() : "";
+            offsets[i] = mention.getMentionOffset();
+            lengths[i] = mention.getMentionLength();
+        }
+        if (triggers == null) {
+            Arrays.fill(this.triggers, '@');
+        }
+    }
+
+    /**
+     * Creates a state from its fields, which are not copied.
+     */
+    MentionsState(final String text, final int cursor, final String[] names, final int[] offsets,
+                  final int[] lengths, final char[] triggers) {
+        this(text, cursor, names, offsets, lengths, triggers, 0);
+    }
+
+    /**
+     * Creates a state from its fields, which are not copied.
+     *
+     * @param version   long    The version of the state.
+     */
+    MentionsState(final String text, final int cursor, final String[] names, final int[] offsets,
+                  final int[] lengths, final char[] triggers, final long version) {
+        this.text = text;
+        this.cursor = cursor;
+        this.names = names;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.triggers = triggers;
+        this.version = version;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int getCursor() {
+        return cursor;
+    }
+
+    /**
+     * @return long     The version of a published state, 0 for the other states.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getMentionCount() {
+        return names.length;
+    }
+
+    public String getMentionName(final int index) {
+        return names[index];
+    }
+
+    public int getMentionOffset(final int index) {
+        return offsets[index];
+    }
+
+    public int getMentionLength(final int index) {
+        return lengths[index];
+    }
+
+    /**
+     * @param index int     The index of a mention.
+     * @return char     The trigger symbol the mention was typed after.
+     */
+    public char getMentionTrigger(final int index) {
+        return triggers[index];
+    }
+
+    /**
+     * Recreates the {@link Mentionable}s of the state.
+     *
+     * @param factory   MentionDecoder.Factory<T>   Creates the mentions.
+     * @return List<T>  New mentions, in the order of the state.
+     */
+    public <T extends Mentionable> List<T> createMentions(
+            final MentionDecoder.Factory<T> factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException("Factory must not be null.");
+        }
+        final List<T> mentions = new ArrayList<>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            final T mention = factory.createMention();
+            mention.setMentionName(names[i]);
+            mention.setMentionOffset(offsets[i]);
+            mention.setMentionLength(lengths[i]);
+            mentions.add(mention);
+        }
+        return mentions;
+    }
+
+    /**
+     * Writes the state in its binary form.
+     *
+     * @param out   OutputStream    Receives the state, it is flushed but not closed.
+     * @throws IOException if writing to the stream failed.
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeByte(MAGIC_0);
+        data.writeByte(MAGIC_1);
+        data.writeByte(VERSION);
+        write(data);
+        data.flush();
+    }
+
+    /**
+     * Reads a state written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in    InputStream     The binary form of the state, it is not closed.
+     * @return MentionsState    The state.
+     * @throws IOException if reading failed or the stream is not a valid state.
+     */
+    public static MentionsState readFrom(final InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(in);
+        if (data.readByte() != MAGIC_0 || data.readByte() != MAGIC_1) {
+            throw new IOException("Not a mentions state.");
+        }
+        final byte version = data.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + ".");
+        }
+        return read(data);
+    }
+
+    /**
+     * Writes the state without a header.
+     */
+    void write(final DataOutput out) throws IOException {
+        writeString(out, text);
+        out.writeInt(cursor);
+        out.writeInt(names.length);
+        for (int i = 0; i < names.length; i++) {
+            writeString(out, names[i]);
+            out.writeInt(offsets[i]);
+            out.writeInt(lengths[i]);
+            out.writeChar(triggers[i]);
+        }
+    }
+
+    /**
+     * Reads a state written by {@link #write(DataOutput)}.
+     */
+    static MentionsState read(final DataInput in) throws IOException {
+        final String text = readString(in);
+        final int cursor = in.readInt();
+        final int count = in.readInt();
+        if (cursor < 0 || cursor > text.length() || count < 0) {
+            throw new IOException("Malformed mentions state.");
+        }
+        final String[] names = new String[count];
+        final int[] offsets = new int[count];
+        final int[] lengths = new int[count];
+        final char[] triggers = new char[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = readString(in);
+            offsets[i] = in.readInt();
+            lengths[i] = in.readInt();
+            triggers[i] = in.readChar();
+        }
+        return new MentionsState(text, cursor, names, offsets, lengths, triggers);
+    }
+
+    /**
+     * Writes <code>value</code> as its UTF-8 length and bytes, which unlike
+     * {@link DataOutput#writeUTF(String)} is not limited to 64 KB.
+     */
+    static void writeString(final DataOutput out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(MentionEncoder.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(final DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Malformed string length " + length + ".");
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, MentionEncoder.UTF_8);
+    }
+}
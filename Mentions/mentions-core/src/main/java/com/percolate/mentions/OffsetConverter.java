@@ -0,0 +1,259 @@
+package com.percolate.mentions;
+
+import java.util.List;
+
+/**
+ * Converts offsets in a text between UTF-16 chars, which the library and Android use, and the
+ * units a backend may count in: code points or UTF-8 bytes. A surrogate pair is one code point
+ * and four UTF-8 bytes, an unpaired surrogate is one code point and one byte, like
+ * {@link String#getBytes} encodes it.
+ * <p/>
+ * The converter keeps the number of code points and bytes before every block of
+ * {@link #BLOCK_SIZE} chars. The table is built incrementally, only as far as the offsets
+ * converted so far, so converting an offset costs at most a block once the table reaches it.
+ * The converter reads the text it was created with, which may be edited: call
+ * {@link #onTextChanged(int)} after an edit and only the blocks after the edit are counted again.
+ * A converter is not thread-safe.
+ */
+@SuppressWarnings("WeakerAccess")
+public class OffsetConverter {
+
+    /**
+     * Offsets in UTF-16 chars, as in {@link String#length()}.
+     */
+    public static final int UTF_16 = 0;
+
+    /**
+     * Offsets in Unicode code points.
+     */
+    public static final int CODE_POINTS = 1;
+
+    /**
+     * Offsets in bytes of the UTF-8 encoding.
+     */
+    public static final int UTF_8 = 2;
+
+    /**
+     * The number of chars per entry of the table, a power of 2.
+     */
+    static final int BLOCK_SIZE = 64;
+
+    private static final int BLOCK_SHIFT = 6;
+
+    private final CharSequence text;
+
+    /**
+     * The number of code points before each block.
+     */
+    private int[] codePoints;
+
+    /**
+     * The number of UTF-8 bytes before each block.
+     */
+    private int[] bytes;
+
+    /**
+     * The number of blocks whose entry is up-to-date, at least 1.
+     */
+    private int blockCount;
+
+    /**
+     * @param text  CharSequence    The text, e.g. the <code>Editable</code> of an
+     *                              <code>EditText</code>.
+     */
+    public OffsetConverter(final CharSequence text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text must not be null.");
+        }
+        this.text = text;
+        this.codePoints = new int[16];
+        this.bytes = new int[16];
+        this.blockCount = 1;
+    }
+
+    /**
+     * Forgets the counts after <code>start</code>, call it after the text was edited from
+     * <code>start</code> on.
+     *
+     * @param start int     Initial position of the edit, in UTF-16 chars.
+     */
+    public void onTextChanged(final int start) {
+        // The entry of a block also depends on its first char, which may end a surrogate pair.
+        blockCount = Math.max(1, Math.min(blockCount, ((start - 1) >> BLOCK_SHIFT) + 1));
+    }
+
+    /**
+     * @param unit  int     {@link #UTF_16}, {@link #CODE_POINTS} or {@link #UTF_8}.
+     * @return int  The length of the text in <code>unit</code>.
+     */
+    public int length(final int unit) {
+        return fromUtf16(text.length(), unit);
+    }
+
+    /**
+     * @param offset    int     An offset in <code>from</code>.
+     * @param from      int     The unit of <code>offset</code>.
+     * @param to        int     The unit to convert to.
+     * @return int  The offset in <code>to</code>.
+     */
+    public int convert(final int offset, final int from, final int to) {
+        return from == to ? offset : fromUtf16(toUtf16(offset, from), to);
+    }
+
+    /**
+     * @param offset    int     An offset in UTF-16 chars, between 0 and the length of the text.
+     * @param unit      int     The unit to convert to.
+     * @return int  The number of <code>unit</code>s before <code>offset</code>.
+     */
+    public int fromUtf16(final int offset, final int unit) {
+        checkUnit(unit);
+        if (offset < 0 || offset > text.length()) {
+            throw new IllegalArgumentException("Offset " + offset + " is outside of the text.");
+        } else if (unit == UTF_16) {
+            return offset;
+        }
+        final int block = offset >> BLOCK_SHIFT;
+        extendTo(block);
+        int count = unit == CODE_POINTS ? codePoints[block] : bytes[block];
+        for (int i = block << BLOCK_SHIFT; i < offset; i++) {
+            count += size(i, unit);
+        }
+        return count;
+    }
+
+    /**
+     * Converts an offset to UTF-16 chars. An offset within the encoding of a character, e.g. in
+     * the middle of its UTF-8 bytes, is moved to the start of the character.
+     *
+     * @param offset    int     An offset in <code>unit</code>, between 0 and the length of the
+     *                          text.
+     * @param unit      int     The unit of <code>offset</code>.
+     * @return int  The offset in UTF-16 chars.
+     */
+    public int toUtf16(final int offset, final int unit) {
+        checkUnit(unit);
+        if (offset < 0 || unit == UTF_16 && offset > text.length()) {
+            throw new IllegalArgumentException("Offset " + offset + " is outside of the text.");
+        } else if (unit == UTF_16) {
+            return offset;
+        }
+
+        // Count blocks until one starts after offset, or up to the end of the text.
+        final int lastBlock = text.length() >> BLOCK_SHIFT;
+        while (blockCount <= lastBlock && counts(unit)[blockCount - 1] <= offset) {
+            extendTo(blockCount);
+        }
+
+        // The last block starting at or before offset.
+        final int[] counts = counts(unit);
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (counts[middle] <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        int count = counts[low];
+        for (int i = low << BLOCK_SHIFT; i < text.length(); i++) {
+            final int next = count + size(i, unit);
+            if (next > offset) {
+                return i;
+            }
+            count = next;
+        }
+        if (count < offset) {
+            throw new IllegalArgumentException("Offset " + offset + " is outside of the text.");
+        }
+        return text.length();
+    }
+
+    /**
+     * Converts the offsets and lengths of <code>mentions</code> in <code>text</code> in place, e.g.
+     * before sending them to a backend counting in code points or after receiving them.
+     *
+     * @param text      CharSequence                    The text containing the mentions.
+     * @param mentions  List<? extends Mentionable>     The mentions, in any order.
+     * @param from      int                             The unit of their offsets and lengths.
+     * @param to        int                             The unit to convert to.
+     */
+    public static void convertMentions(final CharSequence text,
+                                       final List<? extends Mentionable> mentions,
+                                       final int from, final int to) {
+        if (mentions == null || from == to) {
+            return;
+        }
+        final OffsetConverter converter = new OffsetConverter(text);
+        for (Mentionable mention : mentions) {
+            final int start = converter.convert(mention.getMentionOffset(), from, to);
+            final int end = converter.convert(mention.getMentionOffset()
+                    + mention.getMentionLength(), from, to);
+            mention.setMentionOffset(start);
+            mention.setMentionLength(end - start);
+        }
+    }
+
+    /**
+     * @return int[]    The table of <code>unit</code>, which is replaced when it grows.
+     */
+    private int[] counts(final int unit) {
+        return unit == CODE_POINTS ? codePoints : bytes;
+    }
+
+    /**
+     * Counts the blocks up to <code>block</code>, if they are not counted yet.
+     */
+    private void extendTo(final int block) {
+        if (block < blockCount) {
+            return;
+        }
+        if (block >= codePoints.length) {
+            final int capacity = Math.max(block + 1, codePoints.length * 2);
+            final int[] grownCodePoints = new int[capacity];
+            final int[] grownBytes = new int[capacity];
+            System.arraycopy(codePoints, 0, grownCodePoints, 0, blockCount);
+            System.arraycopy(bytes, 0, grownBytes, 0, blockCount);
+            codePoints = grownCodePoints;
+            bytes = grownBytes;
+        }
+        for (int b = blockCount; b <= block; b++) {
+            int codePointCount = codePoints[b - 1];
+            int byteCount = bytes[b - 1];
+            final int end = b << BLOCK_SHIFT;
+            for (int i = (b - 1) << BLOCK_SHIFT; i < end; i++) {
+                codePointCount += size(i, CODE_POINTS);
+                byteCount += size(i, UTF_8);
+            }
+            codePoints[b] = codePointCount;
+            bytes[b] = byteCount;
+        }
+        blockCount = block + 1;
+    }
+
+    /**
+     * @return int  The number of <code>unit</code>s the char at <code>index</code> adds. The low
+     *              surrogate of a pair adds nothing, its high surrogate counts for the pair.
+     */
+    private int size(final int index, final int unit) {
+        final char c = text.charAt(index);
+        if (Character.isHighSurrogate(c) && index + 1 < text.length()
+                && Character.isLowSurrogate(text.charAt(index + 1))) {
+            return unit == CODE_POINTS ? 1 : 4;
+        } else if (Character.isLowSurrogate(c) && index > 0
+                && Character.isHighSurrogate(text.charAt(index - 1))) {
+            return 0;
+        } else if (unit == CODE_POINTS || c < 0x80 || Character.isSurrogate(c)) {
+            return 1;
+        }
+        return c < 0x800 ? 2 : 3;
+    }
+
+    private static void checkUnit(final int unit) {
+        if (unit != UTF_16 && unit != CODE_POINTS && unit != UTF_8) {
+            throw new IllegalArgumentException("Unknown offset unit " + unit + ".");
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.percolate.mentions;
+
+/**
+ * Listener which informs you that a query you received is no longer current, so that any search
+ * still running for it may be cancelled.
+ */
+public interface QueryCancelListener {
+
+    /**
+     * Informs that the results for <code>query</code> are no longer needed, because the user
+     * typed a different query or stopped typing a query.
+     *
+     * @param query String  A query previously passed to {@link QueryListener#onQueryReceived}.
+     */
+    void onQueryCancelled(final String query);
+}
@@ -0,0 +1,319 @@
+package com.percolate.mentions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A {@link SuggestionProvider} that caches the results of another one, keyed by the normalized
+ * query. The cache is bounded by the number of entries and by the total number of cached
+ * results, evicting the least recently used entries first, and entries expire after a time to
+ * live.
+ * <p/>
+ * Optionally, a query missing from the cache may be answered from a cached shorter query whose
+ * results were complete, i.e. fewer than the limit were found: "mar" is answered by filtering the
+ * results for "ma" with {@link #matches(Mentionable, String)}. This is only correct if the
+ * wrapped provider matches by the same rule and never finds a result for a query that it did not
+ * find for a shorter one, so it is off by default. It is wrong e.g. for a
+ * {@link FuzzyMentionMatcher}, which drops typo matches as the query grows, or for a
+ * {@link MentionSuggestionIndex} with its own {@link MentionSuggestionIndex.Tokenizer}.
+ * <p/>
+ * When set on <code>Mentions.Builder#suggestionProvider</code>, cached results are delivered right
+ * away without going through the background executor.
+ *
+ * @param <T>   The type of {@link Mentionable} searched for.
+ */
+@SuppressWarnings("WeakerAccess")
+public class SuggestionCache<T extends Mentionable> implements CachingProvider<T> {
+
+    /**
+     * The provider to search when the cache can not answer a query.
+     */
+    private final SuggestionProvider<T> provider;
+
+    /**
+     * The maximum number of cached queries.
+     */
+    private final int maxEntries;
+
+    /**
+     * The maximum number of cached results, counted over all the queries.
+     */
+    private final int maxTotalResults;
+
+    /**
+     * Time in milliseconds after which a cached query expires.
+     */
+    private final long ttlMillis;
+
+    /**
+     * True if a query may be answered by filtering the results of a shorter query.
+     */
+    private final boolean reusePrefixes;
+
+    /**
+     * Cached entries by normalized query, in least recently used order.
+     */
+    private final LinkedHashMap<String, Entry<T>> entries;
+
+    /**
+     * Number of results in <code>entries</code>.
+     */
+    private int totalResults;
+
+    private int hitCount;
+
+    private int prefixHitCount;
+
+    private int missCount;
+
+    /**
+     * @param provider          SuggestionProvider<T>   The provider to cache the results of.
+     * @param maxEntries        int     The maximum number of cached queries.
+     * @param maxTotalResults   int     The maximum number of cached results over all queries.
+     * @param ttlMillis         long    Time in milliseconds after which a cached query expires.
+     */
+    public SuggestionCache(final SuggestionProvider<T> provider, final int maxEntries,
+                           final int maxTotalResults, final long ttlMillis) {
+        this(provider, maxEntries, maxTotalResults, ttlMillis, false);
+    }
+
+    /**
+     * @param reusePrefixes boolean     Whether to answer a query by filtering the complete results
+     *                                  of a shorter one with {@link #matches(Mentionable,
+     *                                  String)}. Only set it if the provider matches the same
+     *                                  way and longer queries never find more.
+     */
+    public SuggestionCache(final SuggestionProvider<T> provider, final int maxEntries,
+                           final int maxTotalResults, final long ttlMillis,
+                           final boolean reusePrefixes) {
+        if (provider == null) {
+            throw new IllegalArgumentException("Provider must not be null.");
+        } else if (maxEntries <= 0 || maxTotalResults <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Cache bounds and time to live must be greater " +
+                                               "than 0.");
+        }
+        this.provider = provider;
+        this.maxEntries = maxEntries;
+        this.maxTotalResults = maxTotalResults;
+        this.ttlMillis = ttlMillis;
+        this.reusePrefixes = reusePrefixes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached results for <code>query</code>, or searches the wrapped provider and
+     * caches its results.
+     */
+    @Override
+    public List<T> search(final String query, final int limit) {
+        final List<T> cached = getCached(query, limit);
+        if (cached != null) {
+            return cached;
+        }
+        return searchProvider(query, limit);
+    }
+
+    /**
+     * Searches the wrapped provider and caches its results, without looking the query up first.
+     * Together with {@link #getCached(String, int)}, it lets a caller answer cached queries on the
+     * main thread and only search the others in the background, as the suggestion dispatcher of
+     * <code>Mentions</code> does. May block.
+     *
+     * @param query String  A query typed by the user.
+     * @param limit int     The maximum number of results.
+     * @return List<T>      The results of the wrapped provider.
+     */
+    @Override
+    public List<T> searchProvider(final String query, final int limit) {
+        final List<T> results = provider.search(query, limit);
+        if (results != null) {
+            put(query, limit, results);
+        }
+        return results;
+    }
+
+    /**
+     * Looks up <code>query</code> without searching the wrapped provider, so it never blocks on a
+     * search and may be called on the main thread.
+     *
+     * @param query String  A query typed by the user.
+     * @param limit int     The maximum number of results.
+     * @return List<T>      The cached results, or null if the cache can not answer the query.
+     */
+    @Override
+    public synchronized List<T> getCached(final String query, final int limit) {
+        final String key = normalize(query);
+        final long now = currentTimeMillis();
+
+        final Entry<T> entry = getFresh(key, now);
+        if (entry != null && (entry.isComplete() || entry.limit >= limit)) {
+            hitCount++;
+            return Collections.unmodifiableList(
+                    entry.results.subList(0, Math.min(limit, entry.results.size())));
+        }
+
+        // A complete result set for a shorter query contains all the results for this one.
+        for (int length = reusePrefixes ? key.length() - 1 : 0; length > 0; length--) {
+            final Entry<T> prefixEntry = getFresh(key.substring(0, length), now);
+            if (prefixEntry != null && prefixEntry.isComplete()) {
+                final List<T> results = new ArrayList<>();
+                for (T item : prefixEntry.results) {
+                    if (results.size() >= limit) {
+                        break;
+                    } else if (matches(item, key)) {
+                        results.add(item);
+                    }
+                }
+                prefixHitCount++;
+                return Collections.unmodifiableList(results);
+            }
+        }
+
+        missCount++;
+        return null;
+    }
+
+    /**
+     * Caches the results of searching for <code>query</code>.
+     *
+     * @param query     String      The query searched for.
+     * @param limit     int         The limit the search was done with. Fewer results than the
+     *                              limit means all the matching {@link Mentionable}s were found.
+     * @param results   List<T>     The results of the search.
+     */
+    public synchronized void put(final String query, final int limit, final List<T> results) {
+        final String key = normalize(query);
+        final Entry<T> entry = new Entry<>(new ArrayList<>(results), limit,
+                currentTimeMillis() + ttlMillis);
+        final Entry<T> previous = entries.put(key, entry);
+        if (previous != null) {
+            totalResults -= previous.results.size();
+        }
+        totalResults += entry.results.size();
+        trim();
+    }
+
+    /**
+     * Removes all the cached results.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalResults = 0;
+    }
+
+    /**
+     * @return int  The number of queries answered by their own cached results.
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return int  The number of queries answered by filtering the results of a shorter query.
+     */
+    public synchronized int getPrefixHitCount() {
+        return prefixHitCount;
+    }
+
+    /**
+     * @return int  The number of queries the cache could not answer.
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return int  The number of cached queries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Whether <code>item</code> matches a normalized query, used when filtering the results of a
+     * shorter query if prefixes are reused. By default a {@link Mentionable} matches if a word of its mention name, or
+     * its full mention name, starts with the query. Override this to match the way the wrapped
+     * provider matches.
+     *
+     * @param item              T       A result of a shorter query.
+     * @param normalizedQuery   String  The trimmed, lower case query.
+     * @return true if <code>item</code> is a result for the query.
+     */
+    protected boolean matches(final T item, final String normalizedQuery) {
+        final String name = item.getMentionName();
+        if (name == null) {
+            return false;
+        }
+        final String foldedName = name.trim().toLowerCase(Locale.getDefault());
+        if (foldedName.startsWith(normalizedQuery)) {
+            return true;
+        }
+        for (int i = 1; i < foldedName.length(); i++) {
+            if (Character.isWhitespace(foldedName.charAt(i - 1))
+                    && foldedName.startsWith(normalizedQuery, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return long     The current time in milliseconds, used to expire entries.
+     */
+    protected long currentTimeMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    private String normalize(final String query) {
+        return query == null ? "" : query.trim().toLowerCase(Locale.getDefault());
+    }
+
+    private Entry<T> getFresh(final String key, final long now) {
+        final Entry<T> entry = entries.get(key);
+        if (entry != null && entry.expiresAt <= now) {
+            entries.remove(key);
+            totalResults -= entry.results.size();
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache is within its bounds.
+     */
+    private void trim() {
+        final Iterator<Map.Entry<String, Entry<T>>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalResults > maxTotalResults)
+                && iterator.hasNext()) {
+            totalResults -= iterator.next().getValue().results.size();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * The results cached for a query.
+     */
+    private static class Entry<T> {
+
+        final List<T> results;
+
+        final int limit;
+
+        final long expiresAt;
+
+        Entry(final List<T> results, final int limit, final long expiresAt) {
+            this.results = results;
+            this.limit = limit;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isComplete() {
+            return results.size() < limit;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.percolate.mentions;
+
+import java.util.List;
+
+/**
+ * Provides the {@link Mentionable}s matching a query. When set on
+ * <code>Mentions.Builder#suggestionProvider</code>, searches run on a background thread and the
+ * results are delivered on the main thread, so implementations may block.
+ *
+ * @param <T>   The type of {@link Mentionable} searched for.
+ */
+public interface SuggestionProvider<T extends Mentionable> {
+
+    /**
+     * Searches for the {@link Mentionable}s matching <code>query</code>.
+     *
+     * @param query String  A valid query typed by the user after the '@' symbol.
+     * @param limit int     The maximum number of results.
+     * @return List<T>      Up to <code>limit</code> matching {@link Mentionable}s.
+     */
+    List<T> search(final String query, final int limit);
+
+}
@@ -0,0 +1,20 @@
+package com.percolate.mentions;
+
+import java.util.List;
+
+/**
+ * Listener to receive the {@link Mentionable}s found for a query.
+ *
+ * @param <T>   The type of {@link Mentionable} searched for.
+ */
+public interface SuggestionsResultListener<T extends Mentionable> {
+
+    /**
+     * Returns the suggestions found for a query, in the order they should be displayed.
+     *
+     * @param query         String      The query that was searched for.
+     * @param suggestions   List<T>     The {@link Mentionable}s matching the query, may be empty.
+     */
+    void onSuggestionsResult(final String query, final List<T> suggestions);
+
+}
@@ -0,0 +1,68 @@
+package com.percolate.mentions
+
+import com.percolate.mentions.MentionTestUtils.createMockMention
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.*
+
+/**
+ * Tests typo tolerant matching with [FuzzyMentionMatcher].
+ */
+class FuzzyMentionMatcherTest {
+
+    private val brent = createMockMention(0, "Brent Watson")
+    private val brenda = createMockMention(0, "Brenda Walsh")
+    private val doug = createMockMention(0, "Doug Tabuchi")
+
+    private val matcher = FuzzyMentionMatcher(Arrays.asList(brent, brenda, doug))
+
+    /**
+     * Queries with a typo still find the mention, with a lower score than an exact match.
+     */
+    @Test
+    fun testTypoTolerantMatching() {
+        val matches = matcher.match("tabuchy", 10)
+        assertEquals(1, matches.size)
+        assertEquals(doug, matches[0].item)
+        assertEquals(1, matches[0].distance)
+        assertTrue(matches[0].score < 1f)
+
+        assertEquals(Arrays.asList(brent), matcher.search("brnt", 10))
+    }
+
+    /**
+     * Exact prefix matches are ranked before matches needing edits.
+     */
+    @Test
+    fun testRanking() {
+        val matches = matcher.match("wals", 10)
+        assertEquals(Arrays.asList(brenda, brent), matches.map { it.item })
+        assertEquals(0, matches[0].distance)
+        assertEquals(1, matches[1].distance)
+        assertEquals(1f, matches[0].score, 0f)
+    }
+
+    /**
+     * Short queries must match exactly and the limit is respected.
+     */
+    @Test
+    fun testShortQueriesAndLimit() {
+        assertEquals(Arrays.asList(brenda, brent), matcher.search("br", 10))
+        assertTrue(matcher.search("bx", 10).isEmpty())
+        assertEquals(Arrays.asList(brenda), matcher.search("br", 1))
+    }
+
+    /**
+     * The banded edit distance against a token prefix agrees with the full computation.
+     */
+    @Test
+    fun testPrefixDistance() {
+        val row = IntArray(16)
+        val previousRow = IntArray(16)
+        assertEquals(0, FuzzyMentionMatcher.prefixDistance("wat", "watson", 1, row, previousRow))
+        assertEquals(1, FuzzyMentionMatcher.prefixDistance("wtson", "watson", 1, row, previousRow))
+        assertEquals(2, FuzzyMentionMatcher.prefixDistance("wastno", "watson", 2, row, previousRow))
+        assertTrue(FuzzyMentionMatcher.prefixDistance("doug", "watson", 1, row, previousRow) > 1)
+    }
+}
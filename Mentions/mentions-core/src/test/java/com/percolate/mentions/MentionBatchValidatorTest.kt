@@ -0,0 +1,84 @@
+package com.percolate.mentions
+
+import com.percolate.mentions.MentionTestUtils.createMockMention
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import java.util.*
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * Tests validating records in parallel with [MentionBatchValidator].
+ */
+class MentionBatchValidatorTest {
+
+    /**
+     * A record stored in memory.
+     */
+    private class Record(private val text: String, private val mentions: List<Mentionable>)
+        : MentionRecord<Mentionable> {
+
+        override fun getText(): CharSequence = text
+
+        override fun getMentions(): List<Mentionable> = mentions
+    }
+
+    /**
+     * Executor running the chunks.
+     */
+    private lateinit var executor: ExecutorService
+
+    @Before
+    fun setUp() {
+        executor = Executors.newFixedThreadPool(4)
+    }
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+    }
+
+    /**
+     * Results are reported in the order of the records and summed up.
+     */
+    @Test
+    fun testResultsAreReportedInOrder() {
+        val records = ArrayList<Record>()
+        for (i in 0 until 1000) {
+            // Every third record has a mention which moved by one character.
+            val offset = if (i % 3 == 0) "Hi ".length + 1 else "Hi ".length
+            records.add(Record("Hi Brent Watson #$i",
+                    listOf(createMockMention(offset, "Brent Watson"))))
+        }
+
+        val reported = ArrayList<MentionRecord<Mentionable>>()
+        val summary = MentionBatchValidator(MentionValidator(true), executor, 10, 8).validate(
+                records.iterator(), MentionBatchValidator.ResultListener<Mentionable> {
+                    result -> reported.add(result.record)
+                })
+
+        assertEquals(records, reported)
+        assertEquals(1000, summary.recordCount)
+        assertEquals(334, summary.invalidRecordCount)
+        assertEquals(334, summary.shiftedCount)
+        assertEquals(666, summary.validCount)
+        assertEquals(0, summary.lostCount)
+        assertEquals("Hi ".length, records[0].getMentions()[0].mentionOffset)
+    }
+
+    /**
+     * A failure while validating is thrown to the caller.
+     */
+    @Test(expected = IllegalArgumentException::class)
+    fun testFailureIsThrown() {
+        val records = listOf(Record("Hi Brent", emptyList()), object : MentionRecord<Mentionable> {
+            override fun getText(): CharSequence? = null
+
+            override fun getMentions(): List<Mentionable> = emptyList()
+        })
+        MentionBatchValidator(MentionValidator(true), executor, 1, 1)
+                .validate(records.iterator(), null)
+    }
+}
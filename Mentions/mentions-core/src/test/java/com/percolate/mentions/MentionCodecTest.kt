@@ -0,0 +1,134 @@
+package com.percolate.mentions
+
+import com.percolate.mentions.MentionTestUtils.createMockMention
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.EOFException
+import java.io.IOException
+import java.nio.ByteBuffer
+
+/**
+ * Round trips texts and mentions through [MentionEncoder] and [MentionDecoder].
+ */
+class MentionCodecTest {
+
+    /**
+     * Creates [Mention]s for the decoder.
+     */
+    private val factory = MentionDecoder.Factory<Mention> { Mention() }
+
+    /**
+     * Texts, mentions out of order and names shared between records are decoded as written.
+     */
+    @Test
+    fun testRoundTrip() {
+        for (stringTable in listOf(true, false)) {
+            val out = ByteArrayOutputStream()
+            val encoder = MentionEncoder(out, stringTable)
+            encoder.write("Hi Brent Watson and Doug Tabuchi", listOf(
+                    createMockMention("Hi Brent Watson and ".length, "Doug Tabuchi"),
+                    createMockMention("Hi ".length, "Brent Watson")))
+            encoder.write("", null)
+            encoder.write("Thanks Doug Tabuchi \uD83D\uDC4D", listOf(
+                    createMockMention("Thanks ".length, "Doug Tabuchi")))
+            encoder.close()
+
+            val decoder = MentionDecoder(ByteArrayInputStream(out.toByteArray()), factory)
+            val first = decoder.read()!!
+            assertEquals("Hi Brent Watson and Doug Tabuchi", first.text)
+            assertEquals(listOf("Brent Watson", "Doug Tabuchi"),
+                    first.mentions.map { it.mentionName })
+            assertEquals(listOf(3, 20), first.mentions.map { it.mentionOffset })
+            assertEquals(listOf(12, 12), first.mentions.map { it.mentionLength })
+
+            assertTrue(decoder.read()!!.mentions.isEmpty())
+
+            val third = decoder.read()!!
+            assertEquals("Thanks Doug Tabuchi \uD83D\uDC4D", third.text)
+            assertEquals("Thanks ".length, third.mentions[0].mentionOffset)
+            if (stringTable) {
+                assertSame(first.mentions[1].mentionName, third.mentions[0].mentionName)
+            }
+            assertNull(decoder.read())
+        }
+    }
+
+    /**
+     * Texts longer than the buffers are encoded and decoded through a [ByteBuffer].
+     */
+    @Test
+    fun testLongTextInByteBuffer() {
+        val text = "Hi Brent Watson ".repeat(2000)
+        val buffer = ByteBuffer.allocate(64 * 1024)
+        val encoder = MentionEncoder(buffer, true)
+        encoder.write(text, listOf(createMockMention(text.length - "Brent Watson ".length,
+                "Brent Watson")))
+        encoder.flush()
+        buffer.flip()
+
+        val record = MentionDecoder(buffer, factory).read()!!
+        assertEquals(text, record.text)
+        assertEquals(text.length - "Brent Watson ".length, record.mentions[0].mentionOffset)
+    }
+
+    /**
+     * The string table writes repeated names once.
+     */
+    @Test
+    fun testStringTableIsSmaller() {
+        val withTable = ByteArrayOutputStream()
+        val withoutTable = ByteArrayOutputStream()
+        val encoders = listOf(MentionEncoder(withTable, true), MentionEncoder(withoutTable, false))
+        for (encoder in encoders) {
+            for (i in 0 until 10) {
+                encoder.write("Brent Watson", listOf(createMockMention(0, "Brent Watson")))
+            }
+            encoder.close()
+        }
+        assertTrue(withTable.size() < withoutTable.size() - 9 * "Brent Watson".length)
+    }
+
+    /**
+     * A truncated stream fails instead of returning a partial record.
+     */
+    @Test(expected = EOFException::class)
+    fun testTruncatedStream() {
+        val out = ByteArrayOutputStream()
+        val encoder = MentionEncoder(out, true)
+        encoder.write("Hi Brent Watson", listOf(createMockMention("Hi ".length, "Brent Watson")))
+        encoder.close()
+
+        val bytes = out.toByteArray().copyOf(out.size() - 3)
+        MentionDecoder(ByteArrayInputStream(bytes), factory).read()
+    }
+
+    /**
+     * A negative or huge mention count fails with an [IOException], without allocating for it.
+     */
+    @Test
+    fun testCorruptMentionCount() {
+        for (count in listOf(byteArrayOf(-1, -1, -1, -1, 0x0F), byteArrayOf(-1, -1, -1, -1, 0x07))) {
+            val bytes = byteArrayOf(MentionEncoder.MAGIC_0, MentionEncoder.MAGIC_1,
+                    MentionEncoder.VERSION, 0, 2, 'H'.toByte(), 'i'.toByte()) + count
+            try {
+                MentionDecoder(ByteArrayInputStream(bytes), factory).read()
+                fail("A corrupt count was read.")
+            } catch (expected: IOException) {
+            }
+        }
+    }
+
+    /**
+     * Data that was not written by [MentionEncoder] is rejected.
+     */
+    @Test(expected = IOException::class)
+    fun testInvalidHeader() {
+        MentionDecoder(ByteArrayInputStream("{\"comment\": \"Hi\"}".toByteArray()), factory).read()
+    }
+}
@@ -0,0 +1,95 @@
+package com.percolate.mentions
+
+import com.percolate.mentions.MentionTestUtils.createMockMention
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Tests typing, querying and inserting mentions in a [MentionDocument].
+ */
+class MentionDocumentTest {
+
+    /**
+     * [MentionDocument].
+     */
+    private lateinit var document: MentionDocument
+
+    @Before
+    fun setUp() {
+        document = MentionDocument()
+    }
+
+    /**
+     * Typing "@Bre" produces the query "Bre" and inserting a mention replaces it.
+     */
+    @Test
+    fun testTypeQueryAndInsertMention() {
+        document.insert("Hi @Bre")
+        assertEquals("Bre", document.query)
+        assertEquals("Hi ".length, document.queryOffset)
+
+        val mention = Mention().apply { mentionName = "Brent Watson" }
+        assertTrue(document.insertMention(mention))
+        assertEquals("Hi Brent Watson ", document.text)
+        assertEquals("Hi Brent Watson ".length, document.cursor)
+        assertEquals("", document.query)
+        assertEquals(-1, document.queryOffset)
+
+        val mentions = document.mentions
+        assertEquals(1, mentions.size)
+        assertEquals("Hi ".length, mentions[0].mentionOffset)
+        assertEquals("Brent Watson".length, mentions[0].mentionLength)
+    }
+
+    /**
+     * A mention can only be inserted after an '@' symbol.
+     */
+    @Test
+    fun testInsertMentionWithoutQuery() {
+        document.insert("Hi Brent")
+        assertFalse(document.insertMention(createMockMention(0, "Brent Watson")))
+        assertEquals("Hi Brent", document.text)
+        assertTrue(document.mentions.isEmpty())
+    }
+
+    /**
+     * Typing before a mention moves it and editing inside it removes it.
+     */
+    @Test
+    fun testEditsMoveAndRemoveMentions() {
+        document = MentionDocument("Hello Brent Watson and Doug Tabuchi")
+        val brent = createMockMention("Hello ".length, "Brent Watson")
+        val doug = createMockMention("Hello Brent Watson and ".length, "Doug Tabuchi")
+        document.addMentions(listOf(brent, doug))
+
+        document.setCursor(0)
+        document.insert("Oh ")
+        assertEquals("Oh Hello ".length, document.mentions[0].mentionOffset)
+
+        document.delete("Oh Hello Bre".length, "Oh Hello Bren".length)
+        assertEquals(listOf(doug), document.mentions)
+        assertEquals("Oh Hello Bret Watson and ".length, doug.mentionOffset)
+    }
+
+    /**
+     * Mentions must be in the text when they are added.
+     */
+    @Test(expected = IllegalArgumentException::class)
+    fun testAddMentionsNotInText() {
+        document.insert("Hello Brent Watsen")
+        document.addMentions(listOf(createMockMention("Hello ".length,
+                "Brent Watson")))
+    }
+
+    /**
+     * Edits outside of the text are rejected.
+     */
+    @Test(expected = IllegalArgumentException::class)
+    fun testReplaceOutsideOfText() {
+        document.insert("Hello")
+        document.replace(3, 10, "p")
+    }
+}
@@ -0,0 +1,115 @@
+package com.percolate.mentions
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import java.util.*
+
+/**
+ * Tests finding known handles in plain text with [MentionHandleResolver].
+ */
+class MentionHandleResolverTest {
+
+    private val resolver = MentionHandleResolver(mapOf("@brent" to "Brent Watson",
+            "@brent.w" to "Brent W", "@al" to "Al", "#general" to "general"),
+            MentionDecoder.Factory<Mention> { Mention() })
+
+    /**
+     * Handles are found ignoring case after a whitespace, and only when the word ends with them.
+     */
+    @Test
+    fun testFindMentions() {
+        val mentions = resolver.findMentions("@Brent see a@brent, @brentw and #general @al!")
+
+        assertEquals(listOf("Brent Watson", "general", "Al"), mentions.map { it.mentionName })
+        assertEquals(0, mentions[0].mentionOffset)
+        assertEquals("@brent".length, mentions[0].mentionLength)
+        assertEquals("@Brent see a@brent, @brentw and ".length, mentions[1].mentionOffset)
+        assertEquals("#general".length, mentions[1].mentionLength)
+    }
+
+    /**
+     * The longest handle wins, even when a shorter one already ended.
+     */
+    @Test
+    fun testLongestHandle() {
+        val mentions = resolver.findMentions("cc @brent.w @brent.")
+        assertEquals(listOf("Brent W", "Brent Watson"), mentions.map { it.mentionName })
+        assertEquals("cc @brent.w ".length, mentions[1].mentionOffset)
+    }
+
+    /**
+     * The scan gives the same mentions as trying every handle at every word start.
+     */
+    @Test
+    fun testRandomTexts() {
+        val random = Random(1)
+        for (i in 0 until 2000) {
+            val handles = HashMap<String, String>()
+            for (j in 0 until 1 + random.nextInt(5)) {
+                val handle = "@" + randomText(random, "ab x@", 1 + random.nextInt(4))
+                if (handle.isNotBlank() && handles.keys.none { it.equals(handle, true) }) {
+                    handles.put(handle, "N$handle")
+                }
+            }
+            val text = randomText(random, "aAb @x", random.nextInt(30))
+            val mentions = MentionHandleResolver(handles, MentionDecoder.Factory<Mention> {
+                Mention()
+            }).findMentions(text)
+            assertEquals("$handles in '$text'", findEveryHandle(handles, text),
+                    mentions.map { "${it.mentionName} ${it.mentionOffset} ${it.mentionLength}" })
+        }
+    }
+
+    /**
+     * Resolving a handle after a trigger gives its length without the trigger.
+     */
+    @Test
+    fun testResolve() {
+        val mention = resolver.resolve('@', "x @brent.w", 3, 10)!!
+        assertEquals("Brent W", mention.mentionName)
+        assertEquals("brent.w".length, mention.mentionLength)
+        assertNull(resolver.resolve('@', "x @brents", 3, 9))
+        assertNull(resolver.resolve('+', "x +brent", 3, 8))
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun testHandleWithoutTrigger() {
+        MentionHandleResolver(mapOf("brent" to "Brent Watson"),
+                MentionDecoder.Factory<Mention> { Mention() })
+    }
+
+    private fun randomText(random: Random, chars: String, length: Int): String {
+        val text = StringBuilder()
+        for (i in 0 until length) {
+            text.append(chars[random.nextInt(chars.length)])
+        }
+        return text.toString()
+    }
+
+    /**
+     * Takes the longest handle at every word start, left to right.
+     */
+    private fun findEveryHandle(handles: Map<String, String>, text: String): List<String> {
+        val found = ArrayList<String>()
+        var i = 0
+        while (i < text.length) {
+            val handle = if (i == 0 || text[i - 1].isWhitespace()) {
+                handles.keys.filter {
+                    val end = i + it.length
+                    text.regionMatches(i, it, 0, it.length, true)
+                            && (end == text.length || !text[end].isLetterOrDigit())
+                }.maxBy { it.length }
+            } else {
+                null
+            }
+            if (handle != null) {
+                found.add("${handles[handle]} $i ${handle.length}")
+                i += handle.length
+            } else {
+                i++
+            }
+        }
+        return found
+    }
+}
@@ -0,0 +1,145 @@
+package com.percolate.mentions
+
+import com.percolate.mentions.MentionTestUtils.createMockMention
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.*
+
+/**
+ * Tests the offset bookkeeping done by [MentionRangeIndex].
+ */
+class MentionRangeIndexTest {
+
+    /**
+     * [MentionRangeIndex].
+     */
+    private lateinit var index: MentionRangeIndex
+
+    /**
+     * "Hi Brent Watson and Doug Tabuchi"
+     */
+    private lateinit var brent: Mentionable
+    private lateinit var doug: Mentionable
+
+    @Before
+    fun setUp() {
+        index = MentionRangeIndex()
+        brent = createMockMention("Hi ".length, "Brent Watson")
+        doug = createMockMention("Hi Brent Watson and ".length, "Doug Tabuchi")
+        index.addAll(Arrays.asList(doug, brent))
+    }
+
+    /**
+     * Mentions added out of order are kept sorted by offset.
+     */
+    @Test
+    fun testMentionsAreSorted() {
+        assertEquals(brent, index.get(0))
+        assertEquals(doug, index.get(1))
+        assertEquals("Hi ".length, index.offsetAt(0))
+    }
+
+    /**
+     * Edits before the mentions are only written to the [Mentionable]s when materialized.
+     */
+    @Test
+    fun testOffsetsAreMaterializedLazily() {
+        index.applyEdit(0, 0, 5, null)
+        index.applyEdit(0, 0, 5, null)
+        assertEquals("Mentionable should not be updated yet.", "Hi ".length, brent.mentionOffset)
+        assertEquals("Hi ".length + 10, index.offsetAt(0))
+
+        index.materialize()
+        assertEquals("Hi ".length + 10, brent.mentionOffset)
+        assertEquals("Hi Brent Watson and ".length + 10, doug.mentionOffset)
+    }
+
+    /**
+     * Edits between two mentions only shift the second one.
+     */
+    @Test
+    fun testEditBetweenMentions() {
+        index.applyEdit("Hi Brent Watson a".length, 2, 0, null)
+        val mentions = index.materialize()
+        assertEquals(2, mentions.size)
+        assertEquals("Hi ".length, brent.mentionOffset)
+        assertEquals("Hi Brent Watson ".length, doug.mentionOffset)
+    }
+
+    /**
+     * Typing right after a mention keeps it while typing inside it removes it.
+     */
+    @Test
+    fun testEditInsideAndAfterMention() {
+        val removed = ArrayList<Mentionable>()
+        index.applyEdit("Hi Brent Watson".length, 0, 1, removed)
+        assertTrue("Typing after a mention removed it.", removed.isEmpty())
+
+        index.applyEdit("Hi Bre".length, 0, 1, removed)
+        assertEquals(Arrays.asList(brent), removed)
+        assertEquals(1, index.size())
+        assertEquals("Hi Brent Watson and ".length + 2, index.offsetAt(0))
+    }
+
+    /**
+     * Deleting a range spanning both mentions removes both.
+     */
+    @Test
+    fun testDeletionAcrossMentions() {
+        val removed = ArrayList<Mentionable>()
+        index.applyEdit("Hi Brent".length, " Watson and Doug".length, 0, removed)
+        assertEquals(2, removed.size)
+        assertTrue(index.isEmpty)
+    }
+
+    /**
+     * Adding a mention after edits shifts the others in the index without writing their offsets.
+     */
+    @Test
+    fun testAddAfterEdit() {
+        index.applyEdit(0, 0, 3, null)
+        val al = createMockMention(0, "Al")
+        index.add(al, 0)
+
+        assertEquals(listOf(al, brent, doug), (0 until index.size()).map { index.get(it) })
+        assertEquals("Oh Hi ".length, index.offsetAt(1))
+        assertEquals("Hi ".length, brent.mentionOffset)
+        assertEquals("Oh Hi Brent Watson".length, index.endAt(1))
+        index.materialize()
+        assertEquals("Oh Hi ".length, brent.mentionOffset)
+    }
+
+    /**
+     * Thousands of mentions added one by one, out of order, stay sorted and shift together.
+     */
+    @Test
+    fun testManyMentions() {
+        index.clear()
+        val mentions = (0 until 5000).map { createMockMention(it * 10, "Al") }
+        for (i in mentions.indices.reversed()) {
+            index.add(mentions[i], i * 10)
+            if (i % 100 == 0) {
+                index.applyEdit(0, 0, 1, null)
+            }
+        }
+        val materialized = index.materialize()
+        assertEquals(mentions, materialized)
+        //A mention is shifted by the edits made once it was added.
+        assertEquals(1, mentions[0].mentionOffset)
+        assertEquals(4999 * 10 + 50, mentions[4999].mentionOffset)
+    }
+
+    /**
+     * Removed mentions get their last offset.
+     */
+    @Test
+    fun testRemovedMentionsAreMaterialized() {
+        index.applyEdit(0, 0, 3, null)
+        val removed = ArrayList<Mentionable>()
+        index.applyEdit("Oh Hi Bre".length, 1, 0, removed)
+        assertEquals(listOf(brent), removed)
+        assertEquals("Oh Hi ".length, brent.mentionOffset)
+    }
+}
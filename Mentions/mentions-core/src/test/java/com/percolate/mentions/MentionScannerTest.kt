@@ -0,0 +1,167 @@
+package com.percolate.mentions
+
+import com.percolate.mentions.MentionTestUtils.createMockMention
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.lang.management.ManagementFactory
+
+/**
+ * Tests the rules [MentionScanner] applies to the text around the cursor.
+ */
+class MentionScannerTest {
+
+    /**
+     * A query must follow an '@' symbol at the start of the text or after a space, begin with a
+     * letter or digit and be at most `maxCharacters` long.
+     */
+    @Test
+    fun testFindQueryStart() {
+        assertEquals(1, MentionScanner.findQueryStart("@Brent", "@Brent".length, 13))
+        assertEquals("Hi @".length, MentionScanner.findQueryStart("Hi @Bre", "Hi @Bre".length, 13))
+        assertEquals("Email was detected as a query.", -1,
+                MentionScanner.findQueryStart("brent@percolate", "brent@percolate".length, 13))
+        assertEquals("Query starting with a space was detected.", -1,
+                MentionScanner.findQueryStart("@ Brent", "@ Brent".length, 13))
+        assertEquals("Query longer than the maximum was detected.", -1,
+                MentionScanner.findQueryStart("@Brent", "@Brent".length, 4))
+    }
+
+    /**
+     * Queries are checked code point by code point: they may start with a letter made of a
+     * surrogate pair, and an emoji counts as one character.
+     */
+    @Test
+    fun testCodePoints() {
+        assertEquals(1, MentionScanner.findQueryStart("@\uD835\uDC9C", 3, 13))
+        assertEquals(1, MentionScanner.findQueryStart("@a👍👍", "@a👍👍".length, 3))
+        assertEquals(-1, MentionScanner.findQueryStart("@a👍👍", "@a👍👍".length, 2))
+        assertEquals(-1, MentionScanner.findQueryStart("@👍", "@👍".length, 13))
+        assertEquals("\u3000@".length, MentionScanner.findQueryStart("\u3000@Bre", 5, 13))
+    }
+
+    /**
+     * The '@' symbol replaced by a mention is the last one before the cursor.
+     */
+    @Test
+    fun testFindMentionStart() {
+        assertEquals("Hi @Brent and ".length,
+                MentionScanner.findMentionStart("Hi @Brent and @Doug", "Hi @Brent and @Do".length))
+        assertEquals(-1, MentionScanner.findMentionStart("Hi Brent", "Hi Brent".length))
+    }
+
+    /**
+     * Tests whether the cursor placed on a word starting with '@' is detected, including the
+     * first word of the text.
+     */
+    @Test
+    fun testWordStartsWithAtSign() {
+        assertTrue(MentionScanner.wordStartsWithAtSign("@Brent", 3))
+        assertTrue(MentionScanner.wordStartsWithAtSign("Hi @Brent", "Hi @Brent".length))
+        assertFalse(MentionScanner.wordStartsWithAtSign("Hi Brent", "Hi Brent".length))
+        assertFalse(MentionScanner.wordStartsWithAtSign("Hi @Brent ", "Hi @Brent ".length))
+    }
+
+    /**
+     * With several triggers, the closest one of any kind starts the query and the others are
+     * ignored.
+     */
+    @Test
+    fun testSeveralTriggers() {
+        assertEquals("Hi #".length,
+                MentionScanner.findQueryStart("Hi #gen", "Hi #gen".length, 13, "@#+"))
+        assertEquals("@Brent +".length,
+                MentionScanner.findQueryStart("@Brent +urg", "@Brent +urg".length, 13, "@#+"))
+        assertEquals("Trigger that was not added was detected.", -1,
+                MentionScanner.findQueryStart("Hi #gen", "Hi #gen".length, 13, "@"))
+        assertEquals("Hi @Brent in ".length, MentionScanner.findMentionStart(
+                "Hi @Brent in #general", "Hi @Brent in #gen".length, "@#"))
+        assertTrue(MentionScanner.wordStartsWithTrigger("Hi +urg", "Hi +urg".length, "@+"))
+        assertFalse(MentionScanner.wordStartsWithTrigger("Hi +urg", "Hi +urg".length, "@#"))
+    }
+
+    /**
+     * Mentions appended to a text must be at their offsets.
+     */
+    @Test
+    fun testTextHasMentions() {
+        val text = "Hello Brent Watson"
+        assertTrue(MentionScanner.textHasMentions(text,
+                listOf(createMockMention("Hello ".length, "Brent Watson"))))
+        assertFalse(MentionScanner.textHasMentions(text,
+                listOf(createMockMention("Hello".length, "Brent Watson"))))
+    }
+
+    /**
+     * Handles after a whitespace or at a word start are replaced by the names of the resolved
+     * mentions, emails and unknown handles are copied as they are.
+     */
+    @Test
+    fun testResolveMentions() {
+        val resolver = MentionResolver<Mentionable> { trigger, text, start, end ->
+            val handle = if (trigger == '@') "brent" else "general"
+            if (end - start >= handle.length
+                    && text.subSequence(start, start + handle.length) == handle) {
+                createMockMention(0, if (trigger == '@') "Brent Watson" else "general").apply {
+                    mentionLength = handle.length
+                }
+            } else {
+                null
+            }
+        }
+        val text = "@brent see a@brent in #general, @doug"
+        val out = StringBuilder()
+        val mentions = ArrayList<Mentionable>()
+        val triggers = StringBuilder()
+        MentionScanner.resolveMentions(text, 0, text.length, true, "@#", resolver, out, mentions,
+                triggers)
+
+        assertEquals("Brent Watson see a@brent in general, @doug", out.toString())
+        assertEquals(2, mentions.size)
+        assertEquals(0, mentions[0].mentionOffset)
+        assertEquals("Brent Watson".length, mentions[0].mentionLength)
+        assertEquals("Brent Watson see a@brent in ".length, mentions[1].mentionOffset)
+        assertEquals("@#", triggers.toString())
+
+        //A handle at the start of a part is only resolved at the start of a word.
+        out.setLength(0)
+        mentions.clear()
+        MentionScanner.resolveMentions(text, 0, "@brent".length, false, "@#", resolver, out,
+                mentions, triggers)
+        assertEquals("@brent", out.toString())
+        assertTrue(mentions.isEmpty())
+    }
+
+    /**
+     * Scanning for a query that is not there must not allocate. A long text is used to make
+     * sure the scan does not copy it.
+     */
+    @Test
+    fun testQueryScanDoesNotAllocateOnMiss() {
+        val text = StringBuilder()
+        while (text.length < 10000) {
+            text.append("Hello @Brent Watson, this is a long draft without a query. ")
+        }
+        val cursor = text.length
+        val threadMXBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        val threadId = Thread.currentThread().id
+
+        // Warm up so class loading does not count.
+        for (i in 0 until 1000) {
+            MentionScanner.findQueryStart(text, cursor, 13)
+        }
+
+        val allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId)
+        var misses = 0
+        for (i in 0 until 10000) {
+            if (MentionScanner.findQueryStart(text, cursor, 13) == -1) {
+                misses++
+            }
+        }
+        val allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore
+
+        assertEquals(10000, misses)
+        assertTrue("Query scan allocated $allocated bytes.", allocated < 10000)
+    }
+}
@@ -0,0 +1,74 @@
+package com.percolate.mentions
+
+import com.percolate.mentions.MentionTestUtils.createMockMention
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.*
+
+/**
+ * Tests searching for suggestions with [MentionSuggestionIndex].
+ */
+class MentionSuggestionIndexTest {
+
+    /**
+     * [MentionSuggestionIndex] over a few mentions.
+     */
+    private lateinit var index: MentionSuggestionIndex<Mentionable>
+
+    private val brent = createMockMention(0, "Brent Watson")
+    private val doug = createMockMention(0, "Doug Tabuchi")
+    private val brenda = createMockMention(0, "Brenda Walsh")
+
+    @Before
+    fun setUp() {
+        index = MentionSuggestionIndex(Arrays.asList(brent, doug, brenda))
+    }
+
+    /**
+     * Queries match the start of the first name, last name or full name, ignoring case.
+     */
+    @Test
+    fun testSearchMatchesAnyToken() {
+        assertEquals(Arrays.asList(brenda, brent), index.search("bren", 10))
+        assertEquals(Arrays.asList(doug), index.search("TAB", 10))
+        assertEquals(Arrays.asList(brent), index.search("brent w", 10))
+        assertTrue(index.search("x", 10).isEmpty())
+    }
+
+    /**
+     * A mention matching several tokens is only returned once and the limit is respected.
+     */
+    @Test
+    fun testSearchReturnsDistinctResultsUpToLimit() {
+        assertEquals(Arrays.asList(brenda, brent), index.search("b", 10))
+        assertEquals(Arrays.asList(brenda), index.search("b", 1))
+        assertEquals(Arrays.asList(brenda, brent), index.search("w", 10))
+    }
+
+    /**
+     * Custom tokens, such as a handle, can be indexed.
+     */
+    @Test
+    fun testCustomTokenizer() {
+        val handles = MentionSuggestionIndex<Mentionable>(Arrays.asList(brent, doug),
+                MentionSuggestionIndex.Tokenizer<Mentionable> { item ->
+                    Arrays.asList(item.mentionName.replace(" ", "").toLowerCase(Locale.US))
+                }, Locale.US)
+        assertEquals(Arrays.asList(doug), handles.search("dougt", 10))
+        assertTrue(handles.search("tabuchi", 10).isEmpty())
+    }
+
+    /**
+     * The index can be used as a [QueryListener].
+     */
+    @Test
+    fun testAsQueryListener() {
+        var results: List<Mentionable>? = null
+        index.asQueryListener(10, SuggestionsResultListener<Mentionable> { _, suggestions ->
+            results = suggestions
+        }).onQueryReceived("Doug")
+        assertEquals(Arrays.asList(doug), results)
+    }
+}
@@ -0,0 +1,58 @@
+package com.percolate.mentions
+
+import com.percolate.mentions.MentionTestUtils.createMockMention
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import java.util.*
+
+/**
+ * Tests refining suggestions while typing with [MentionSuggestionSession].
+ */
+class MentionSuggestionSessionTest {
+
+    /**
+     * [MentionSuggestionSession].
+     */
+    private lateinit var session: MentionSuggestionSession<Mentionable>
+
+    private val josh = createMockMention(0, "Josh Smith")
+    private val joseph = createMockMention(0, "Joseph Tan")
+    private val john = createMockMention(0, "John Doe")
+
+    @Before
+    fun setUp() {
+        session = MentionSuggestionSession(MentionSuggestionIndex(
+                Arrays.asList(josh, joseph, john)))
+    }
+
+    /**
+     * "@jo" -> "@jos" -> "@josh" narrows the candidates found for the previous query. Every
+     * mention has a token for its first name and one for its full name.
+     */
+    @Test
+    fun testExtendingQueryNarrowsCandidates() {
+        assertEquals(Arrays.asList(john, joseph, josh), session.search(6, "jo", 10))
+        assertEquals(6, session.candidateCount)
+
+        assertEquals(Arrays.asList(joseph, josh), session.search(6, "jos", 10))
+        assertEquals(4, session.candidateCount)
+
+        assertEquals(Arrays.asList(josh), session.search(6, "josh", 10))
+        assertEquals(2, session.candidateCount)
+    }
+
+    /**
+     * Deleting characters or typing after another '@' searches the whole index again.
+     */
+    @Test
+    fun testBackspaceAndNewAnchorSearchWholeIndex() {
+        session.search(6, "josh", 10)
+        assertEquals(Arrays.asList(john, joseph, josh), session.search(6, "jo", 10))
+        assertEquals(6, session.candidateCount)
+
+        session.search(6, "josh", 10)
+        assertEquals(Arrays.asList(john), session.search(20, "john", 10))
+        assertEquals(2, session.candidateCount)
+    }
+}
@@ -0,0 +1,24 @@
+package com.percolate.mentions
+
+/**
+ * Utility methods commonly used throughout the core unit tests.
+ */
+internal object MentionTestUtils {
+
+    /**
+     * Creates a mention object with an offset and mention name. The length of the mention is
+     * length of the mention name.
+     *
+     * @param offset        int     The starting location of the mention.
+     * @param mentionName   String  The name of the mention.
+     *
+     * @return Mentionable          A mention.
+     */
+    fun createMockMention(offset: Int, mentionName: String): Mentionable {
+        return Mention().apply {
+            this.mentionOffset = offset
+            this.mentionName = mentionName
+            this.mentionLength = mentionName.length
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.percolate.mentions
+
+import com.percolate.mentions.MentionTestUtils.createMockMention
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/**
+ * Tests how [MentionValidator] finds valid, shifted and lost mentions.
+ */
+class MentionValidatorTest {
+
+    /**
+     * A record stored in memory.
+     */
+    private class Record(private val text: String, private val mentions: List<Mentionable>)
+        : MentionRecord<Mentionable> {
+
+        override fun getText(): CharSequence = text
+
+        override fun getMentions(): List<Mentionable> = mentions
+    }
+
+    /**
+     * Mentions at their offsets are valid.
+     */
+    @Test
+    fun testValidMentions() {
+        val result = MentionValidator(true).validate(Record("Hi Brent Watson and Doug Tabuchi",
+                listOf(createMockMention("Hi ".length, "Brent Watson"),
+                        createMockMention("Hi Brent Watson and ".length, "Doug Tabuchi"))))
+        assertTrue(result.isValid)
+        assertEquals(2, result.validCount)
+    }
+
+    /**
+     * A mention whose name moved is shifted to the closest occurrence and repaired.
+     */
+    @Test
+    fun testShiftedMentionIsRepaired() {
+        val brent = createMockMention("Hi ".length, "Brent Watson")
+        val result = MentionValidator(true).validate(Record("Oh hi Brent Watson", listOf(brent)))
+
+        assertEquals(1, result.shifted.size)
+        assertEquals("Hi ".length, result.shifted[0].previousOffset)
+        assertEquals("Oh hi ".length, result.shifted[0].offset)
+        assertEquals("Oh hi ".length, brent.mentionOffset)
+    }
+
+    /**
+     * Without repairing, shifted mentions are only reported.
+     */
+    @Test
+    fun testShiftedMentionIsReported() {
+        val brent = createMockMention("Hi ".length, "Brent Watson")
+        val result = MentionValidator(false).validate(Record("Oh hi Brent Watson", listOf(brent)))
+
+        assertEquals(1, result.shifted.size)
+        assertEquals("Hi ".length, brent.mentionOffset)
+    }
+
+    /**
+     * A shifted mention is not matched to the name of a valid mention, and a mention whose name
+     * is gone is lost.
+     */
+    @Test
+    fun testLostMention() {
+        val first = createMockMention(0, "Brent")
+        val second = createMockMention("Brent and ".length, "Brent")
+        val doug = createMockMention("Brent and Brent ".length, "Doug")
+        val result = MentionValidator(true).validate(Record("Brent and Brent",
+                listOf(first, second, doug)))
+
+        assertEquals(2, result.validCount)
+        assertEquals(listOf(doug), result.lost)
+    }
+
+    /**
+     * A mention at its offset with a wrong length is a length mismatch, not shifted, and its
+     * length is repaired.
+     */
+    @Test
+    fun testLengthMismatch() {
+        val brent = createMockMention("Hi ".length, "Brent Watson")
+        brent.mentionLength = "Brent".length
+        val result = MentionValidator(true).validate(Record("Hi Brent Watson", listOf(brent)))
+
+        assertEquals(listOf(brent), result.lengthMismatches)
+        assertTrue(result.shifted.isEmpty())
+        assertEquals(0, result.validCount)
+        assertEquals("Hi ".length, brent.mentionOffset)
+        assertEquals("Brent Watson".length, brent.mentionLength)
+    }
+
+    /**
+     * Shifted mentions are matched to the closest occurrences of their name not claimed by other
+     * mentions, on both sides of their stored offset.
+     */
+    @Test
+    fun testShiftedMentionsSkipClaimedRanges() {
+        val text = "Doug ".repeat(1000)
+        val mentions = ArrayList<Mentionable>()
+        for (i in 0 until 1000 step 2) {
+            mentions.add(createMockMention(i * "Doug ".length, "Doug"))
+        }
+        // All stored in the middle of the text, one character off.
+        for (i in 0 until 500) {
+            mentions.add(createMockMention(500 * "Doug ".length + 1, "Doug"))
+        }
+        val result = MentionValidator(true).validate(Record(text, mentions))
+
+        assertEquals(500, result.validCount)
+        assertEquals(500, result.shifted.size)
+        val offsets = mentions.map { it.mentionOffset }.toSet()
+        assertEquals("Two mentions were matched to the same name.", 1000, offsets.size)
+    }
+}
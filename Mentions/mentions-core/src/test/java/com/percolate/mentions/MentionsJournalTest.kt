@@ -0,0 +1,128 @@
+package com.percolate.mentions
+
+import com.percolate.mentions.MentionTestUtils.createMockMention
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.RandomAccessFile
+
+/**
+ * Tests saving drafts with [MentionsState] and [MentionsJournal].
+ */
+class MentionsJournalTest {
+
+    private lateinit var file: File
+
+    private lateinit var journal: MentionsJournal
+
+    @Before
+    fun setUp() {
+        file = File.createTempFile("mentions", ".journal")
+        file.delete()
+        journal = MentionsJournal(file, 3)
+    }
+
+    @After
+    fun tearDown() {
+        journal.delete()
+    }
+
+    /**
+     * A state is read back as written, with the triggers of its mentions.
+     */
+    @Test
+    fun testStateRoundTrip() {
+        val state = MentionsState("Hi Brent Watson #general 👍", 5, listOf(
+                createMockMention(3, "Brent Watson"), createMockMention(17, "general")),
+                charArrayOf('@', '#'))
+        val out = ByteArrayOutputStream()
+        state.writeTo(out)
+
+        val read = MentionsState.readFrom(ByteArrayInputStream(out.toByteArray()))
+        assertEquals(state.text, read.text)
+        assertEquals(5, read.cursor)
+        assertEquals(2, read.mentionCount)
+        assertEquals("general", read.getMentionName(1))
+        assertEquals(17, read.getMentionOffset(1))
+        assertEquals(7, read.getMentionLength(1))
+        assertEquals('#', read.getMentionTrigger(1))
+        assertEquals(listOf("Brent Watson", "general"),
+                read.createMentions(MentionDecoder.Factory<Mention> { Mention() })
+                        .map { it.mentionName })
+    }
+
+    /**
+     * Edits and mentions appended to the journal are replayed on the snapshot.
+     */
+    @Test
+    fun testReplay() {
+        assertNull(journal.read())
+        journal.compact(MentionsState("Hi ", 3, null))
+        journal.appendEdit(3, 0, "Brent Watson ")
+        journal.appendMention(createMockMention(3, "Brent Watson"), 3, '@')
+        journal.close()
+
+        val state = journal.read()!!
+        assertEquals("Hi Brent Watson ", state.text)
+        assertEquals(16, state.cursor)
+        assertEquals(1, state.mentionCount)
+        assertEquals(3, state.getMentionOffset(0))
+
+        //Edits move the mentions after them and remove the ones they touch.
+        journal.compact(state)
+        journal.appendEdit(0, 2, "Hello")
+        journal.appendEdit(0, 0, "")
+        journal.close()
+        assertEquals(6, journal.read()!!.getMentionOffset(0))
+        journal.compact(journal.read()!!)
+        journal.appendEdit(8, 1, "")
+        assertEquals(0, journal.read()!!.mentionCount)
+    }
+
+    /**
+     * A record cut short by a crash is dropped.
+     */
+    @Test
+    fun testTruncatedRecord() {
+        journal.compact(MentionsState("", 0, null))
+        journal.appendEdit(0, 0, "Hi")
+        journal.appendEdit(2, 0, " there")
+        journal.close()
+        RandomAccessFile(file, "rw").use { it.setLength(it.length() - 2) }
+
+        assertEquals("Hi", journal.read()!!.text)
+    }
+
+    /**
+     * Compaction is needed after the maximum number of records, and replaces them with a
+     * snapshot.
+     */
+    @Test
+    fun testCompaction() {
+        journal.compact(MentionsState("", 0, null))
+        for (i in 0..2) {
+            assertFalse(journal.needsCompaction())
+            journal.appendEdit(i, 0, "a")
+        }
+        assertTrue(journal.needsCompaction())
+        val length = file.length()
+
+        journal.compact(journal.read()!!)
+        assertFalse(journal.needsCompaction())
+        assertTrue(file.length() < length)
+        assertEquals("aaa", journal.read()!!.text)
+        assertFalse(File(file.path + ".tmp").exists())
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun testAppendBeforeCompaction() {
+        journal.appendEdit(0, 0, "Hi")
+    }
+}
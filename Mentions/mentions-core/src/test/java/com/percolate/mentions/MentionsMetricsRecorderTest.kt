@@ -0,0 +1,70 @@
+package com.percolate.mentions
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/**
+ * Tests the histograms and counters of [MentionsMetricsRecorder].
+ */
+class MentionsMetricsRecorderTest {
+
+    /**
+     * Small values are counted exactly, larger ones within 1/16th of their value.
+     */
+    @Test
+    fun testHistogram() {
+        val histogram = MentionsMetricsRecorder.Histogram()
+        assertEquals(0, histogram.getValueAtPercentile(50.0))
+        for (i in 1..1000) {
+            histogram.record(i * 1000L)
+        }
+        histogram.record(-5)
+
+        assertEquals(1001, histogram.totalCount)
+        assertEquals(0, histogram.min)
+        assertEquals(1000000, histogram.max)
+        assertEquals(1000000, histogram.getValueAtPercentile(100.0))
+        val median = histogram.getValueAtPercentile(50.0)
+        assertTrue("Median $median", median >= 500000 && median <= 500000 + 500000 / 16)
+    }
+
+    /**
+     * Every value falls in a bucket that holds it, and buckets do not overlap.
+     */
+    @Test
+    fun testBuckets() {
+        var value = 0L
+        while (value >= 0) {
+            val index = MentionsMetricsRecorder.Histogram.bucketIndex(value)
+            assertTrue(MentionsMetricsRecorder.Histogram.highestValueOf(index) >= value)
+            if (index > 0) {
+                assertTrue(MentionsMetricsRecorder.Histogram.highestValueOf(index - 1) < value)
+            }
+            value = value * 3 + 1
+        }
+        assertEquals(Long.MAX_VALUE, MentionsMetricsRecorder.Histogram.highestValueOf(
+                MentionsMetricsRecorder.Histogram.bucketIndex(Long.MAX_VALUE)))
+    }
+
+    @Test
+    fun testReset() {
+        val recorder = MentionsMetricsRecorder()
+        recorder.onOperation(MentionsMetrics.OPERATION_HIGHLIGHT, 100)
+        recorder.onMentionCount(3)
+        recorder.onMentionCount(1)
+        recorder.onSpanOperations(2)
+        recorder.onMentionLost("Brent Watson")
+        recorder.onQueryDispatched()
+        assertEquals(1, recorder.getLatencies(MentionsMetrics.OPERATION_HIGHLIGHT).totalCount)
+        assertEquals(1, recorder.lastMentionCount)
+        assertEquals(3, recorder.maxMentionCount)
+        assertTrue(recorder.queryDispatchRate > 0)
+
+        recorder.reset()
+        assertEquals(0, recorder.getLatencies(MentionsMetrics.OPERATION_HIGHLIGHT).totalCount)
+        assertEquals(0, recorder.spanOperations)
+        assertEquals(0, recorder.lostMentions)
+        assertEquals(0, recorder.queriesDispatched)
+    }
+}
@@ -0,0 +1,86 @@
+package com.percolate.mentions
+
+import com.percolate.mentions.MentionTestUtils.createMockMention
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+/**
+ * Tests converting offsets with [OffsetConverter].
+ */
+class OffsetConverterTest {
+
+    private val TEXT = "Héllo 👍 Brent Watson"
+
+    /**
+     * Every offset is converted to code points and UTF-8 bytes and back.
+     */
+    @Test
+    fun testConvert() {
+        val text = StringBuilder()
+        for (i in 0..40) {
+            text.append(TEXT).append(' ')
+        }
+        val converter = OffsetConverter(text)
+        for (offset in 0..text.length) {
+            if (offset > 0 && Character.isHighSurrogate(text[offset - 1])) {
+                continue
+            }
+            val prefix = text.substring(0, offset)
+            val codePoints = prefix.codePointCount(0, prefix.length)
+            val bytes = prefix.toByteArray(Charsets.UTF_8).size
+            assertEquals(codePoints, converter.fromUtf16(offset, OffsetConverter.CODE_POINTS))
+            assertEquals(bytes, converter.fromUtf16(offset, OffsetConverter.UTF_8))
+            assertEquals(offset, converter.toUtf16(codePoints, OffsetConverter.CODE_POINTS))
+            assertEquals(offset, converter.toUtf16(bytes, OffsetConverter.UTF_8))
+        }
+        assertEquals(text.toString().toByteArray(Charsets.UTF_8).size,
+                converter.length(OffsetConverter.UTF_8))
+    }
+
+    /**
+     * Edits are seen once the converter is told about them.
+     */
+    @Test
+    fun testEdit() {
+        val text = StringBuilder("a".repeat(200))
+        val converter = OffsetConverter(text)
+        assertEquals(200, converter.fromUtf16(200, OffsetConverter.UTF_8))
+
+        text.insert(100, "👍👍")
+        converter.onTextChanged(100)
+        assertEquals(208, converter.fromUtf16(204, OffsetConverter.UTF_8))
+        assertEquals(202, converter.fromUtf16(204, OffsetConverter.CODE_POINTS))
+        assertEquals(204, converter.toUtf16(202, OffsetConverter.CODE_POINTS))
+    }
+
+    /**
+     * An offset within the bytes of a character is moved to its start.
+     */
+    @Test
+    fun testOffsetWithinCharacter() {
+        val converter = OffsetConverter(TEXT)
+        assertEquals(1, converter.toUtf16(2, OffsetConverter.UTF_8))
+        assertEquals("Héllo ".length, converter.toUtf16(9, OffsetConverter.UTF_8))
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun testOffsetOutsideOfText() {
+        OffsetConverter(TEXT).toUtf16(TEXT.length, OffsetConverter.CODE_POINTS)
+    }
+
+    /**
+     * Mentions after an emoji are shifted by one code point less than UTF-16 chars.
+     */
+    @Test
+    fun testConvertMentions() {
+        val mentions = listOf(createMockMention("Héllo 👍 ".length, "Brent Watson"))
+        OffsetConverter.convertMentions(TEXT, mentions, OffsetConverter.UTF_16,
+                OffsetConverter.CODE_POINTS)
+        assertEquals(8, mentions[0].mentionOffset)
+        assertEquals(12, mentions[0].mentionLength)
+
+        OffsetConverter.convertMentions(TEXT, mentions, OffsetConverter.CODE_POINTS,
+                OffsetConverter.UTF_8)
+        assertEquals(12, mentions[0].mentionOffset)
+    }
+}
@@ -0,0 +1,122 @@
+package com.percolate.mentions
+
+import com.percolate.mentions.MentionTestUtils.createMockMention
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import java.util.*
+
+/**
+ * Tests caching suggestions with [SuggestionCache].
+ */
+class SuggestionCacheTest {
+
+    private val mark = createMockMention(0, "Mark Twain")
+    private val mary = createMockMention(0, "Mary Shelley")
+    private val matt = createMockMention(0, "Matt Damon")
+
+    /**
+     * Queries that reached the wrapped provider.
+     */
+    private val searchedQueries = ArrayList<String>()
+
+    /**
+     * Time returned to the cache.
+     */
+    private var now = 0L
+
+    @Before
+    fun setUp() {
+        searchedQueries.clear()
+        now = 0L
+    }
+
+    /**
+     * Creates a cache over an index of the test mentions, with a clock under test control.
+     */
+    private fun createCache(maxEntries: Int, maxTotalResults: Int,
+                            reusePrefixes: Boolean = false): SuggestionCache<Mentionable> {
+        val index = MentionSuggestionIndex(Arrays.asList(mark, mary, matt))
+        val provider = SuggestionProvider<Mentionable> { query, limit ->
+            searchedQueries.add(query)
+            index.search(query, limit)
+        }
+        return object : SuggestionCache<Mentionable>(provider, maxEntries, maxTotalResults, 1000,
+                reusePrefixes) {
+            override fun currentTimeMillis() = now
+        }
+    }
+
+    /**
+     * Searching the same query twice, ignoring case and spaces, only searches the provider once.
+     */
+    @Test
+    fun testExactHit() {
+        val cache = createCache(10, 100)
+        assertEquals(Arrays.asList(mark, mary, matt), cache.search("ma", 10))
+        assertEquals(Arrays.asList(mark, mary, matt), cache.search(" MA", 10))
+        assertEquals(listOf("ma"), searchedQueries)
+        assertEquals(1, cache.hitCount)
+        assertEquals(1, cache.missCount)
+    }
+
+    /**
+     * "mar" is answered from the complete results of "ma" if prefixes are reused, but not from
+     * incomplete ones.
+     */
+    @Test
+    fun testPrefixHit() {
+        val cache = createCache(10, 100, true)
+        cache.search("ma", 10)
+        assertEquals(Arrays.asList(mark, mary), cache.search("mar", 10))
+        assertEquals(1, cache.prefixHitCount)
+
+        cache.clear()
+        cache.search("ma", 3)
+        cache.search("mar", 3)
+        assertEquals(listOf("ma", "ma", "mar"), searchedQueries)
+    }
+
+    /**
+     * Prefixes are not reused by default, since the provider may match differently.
+     */
+    @Test
+    fun testNoPrefixReuseByDefault() {
+        val cache = createCache(10, 100)
+        cache.search("ma", 10)
+        assertNull(cache.getCached("mar", 10))
+        assertEquals(0, cache.prefixHitCount)
+    }
+
+    /**
+     * Cached results expire after the time to live.
+     */
+    @Test
+    fun testExpiry() {
+        val cache = createCache(10, 100)
+        cache.search("ma", 10)
+        now = 1000
+        assertNull(cache.getCached("ma", 10))
+        assertEquals(0, cache.size())
+    }
+
+    /**
+     * The least recently used queries are evicted when there are too many entries or results.
+     */
+    @Test
+    fun testLruEviction() {
+        val cache = createCache(2, 100)
+        cache.search("mark", 10)
+        cache.search("mary", 10)
+        cache.getCached("mark", 10)
+        cache.search("matt", 10)
+        assertNotNull(cache.getCached("mark", 10))
+        assertNull(cache.getCached("mary", 10))
+
+        val smallCache = createCache(10, 3)
+        smallCache.search("twain", 10)
+        smallCache.search("ma", 10)
+        assertNull("Total result bound was not applied.", smallCache.getCached("twain", 10))
+        assertEquals(1, smallCache.size())
+    }
+}
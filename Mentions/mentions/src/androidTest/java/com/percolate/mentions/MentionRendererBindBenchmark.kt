@@ -0,0 +1,170 @@
+package com.percolate.mentions
+
+import android.os.Bundle
+import android.support.test.InstrumentationRegistry
+import android.support.test.runner.AndroidJUnit4
+import android.util.Log
+import android.util.TypedValue
+import android.view.View
+import android.widget.TextView
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.*
+import java.util.concurrent.Executor
+
+/**
+ * Measures the main-thread time of binding comments with mentions with a [MentionRenderer] on a
+ * device: setting the text and measuring the view, as a RecyclerView does on bind. The comments are
+ * prefetched, once without and once with the text metrics of the view, so the span work is done in
+ * the background in both cases and only the measurement differs.
+ *
+ * Run it with `gradlew :mentions:connectedAndroidTest`. The median and mean time per bind of each
+ * case are logged with the tag "MentionRendererBench" and reported in the instrumentation status.
+ */
+@RunWith(AndroidJUnit4::class)
+class MentionRendererBindBenchmark {
+
+    private val TAG = "MentionRendererBench"
+
+    /**
+     * The number of comments bound in each case.
+     */
+    private val COMMENTS = 200
+
+    /**
+     * The number of characters and of mentions of each comment.
+     */
+    private val LENGTH = 1000
+
+    private val MENTIONS = 10
+
+    private val instrumentation = InstrumentationRegistry.getInstrumentation()
+
+    /**
+     * Renders the prefetched comments on the calling thread, which is not the main thread.
+     */
+    private val executor = Executor { it.run() }
+
+    private lateinit var textView: TextView
+
+    private var widthSpec = 0
+
+    private val heightSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED)
+
+    @Before
+    fun setUp() {
+        instrumentation.runOnMainSync {
+            val context = instrumentation.targetContext
+            val width = context.resources.displayMetrics.widthPixels
+            widthSpec = View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY)
+            textView = TextView(context)
+            textView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16f)
+            textView.measure(widthSpec, heightSpec)
+            textView.layout(0, 0, width, textView.measuredHeight)
+        }
+    }
+
+    /**
+     * Each case binds its own comments, so the words measured by one case are not in the
+     * framework's caches for the other. A first round with other comments warms up the code.
+     */
+    @Test
+    fun benchmarkBind() {
+        bindPrefetched(comments(1), false)
+        bindPrefetched(comments(2), true)
+
+        report("bindPrefetched", bindPrefetched(comments(3), false))
+        report("bindPrefetchedWithTextMetrics", bindPrefetched(comments(4), true))
+    }
+
+    /**
+     * @return LongArray    The main-thread time of each bind, in nanoseconds.
+     */
+    private fun bindPrefetched(comments: List<Comment>, textMetrics: Boolean): LongArray {
+        val renderer = MentionRenderer(0xFFFF8800.toInt(), COMMENTS, executor)
+        if (textMetrics) {
+            instrumentation.runOnMainSync { renderer.setTextMetrics(textView) }
+        }
+        comments.forEachIndexed { i, comment ->
+            renderer.prefetch(i, 0, comment.text, comment.mentions)
+        }
+
+        val times = LongArray(comments.size)
+        instrumentation.runOnMainSync {
+            comments.forEachIndexed { i, comment ->
+                val start = System.nanoTime()
+                renderer.bind(textView, i, 0, comment.text, comment.mentions)
+                textView.measure(widthSpec, heightSpec)
+                times[i] = System.nanoTime() - start
+            }
+        }
+        return times
+    }
+
+    private fun report(case: String, times: LongArray) {
+        val sorted = times.sortedArray()
+        val median = sorted[sorted.size / 2] / 1000.0
+        val mean = sorted.average() / 1000.0
+        val result = String.format(Locale.US, "%s: median %.1f us, mean %.1f us per bind",
+                case, median, mean)
+        Log.i(TAG, result)
+        instrumentation.sendStatus(0, Bundle().apply { putString(case, result) })
+    }
+
+    /**
+     * @return List<Comment>    Comments of random words and mentions, the same for a seed.
+     */
+    private fun comments(seed: Long): List<Comment> {
+        val random = Random(seed)
+        return (0 until COMMENTS).map {
+            val text = StringBuilder()
+            val mentions = ArrayList<Mentionable>()
+            while (text.length < LENGTH) {
+                val mention = mentions.size < MENTIONS && random.nextInt(LENGTH / 6 / MENTIONS) == 0
+                val start = text.length
+                if (mention) {
+                    text.append(word(random)).append(' ').append(word(random))
+                    mentions.add(BenchmarkMention(start, text.length - start))
+                } else {
+                    text.append(word(random))
+                }
+                text.append(' ')
+            }
+            Comment(text.toString(), mentions)
+        }
+    }
+
+    private fun word(random: Random): String {
+        val word = CharArray(2 + random.nextInt(9))
+        for (i in word.indices) {
+            word[i] = 'a' + random.nextInt(26)
+        }
+        return String(word)
+    }
+
+    private class Comment(val text: String, val mentions: List<Mentionable>)
+
+    private class BenchmarkMention(private var offset: Int, private var length: Int) : Mentionable {
+
+        private var name = ""
+
+        override fun getMentionOffset() = offset
+
+        override fun setMentionOffset(offset: Int) {
+            this.offset = offset
+        }
+
+        override fun getMentionLength() = length
+
+        override fun setMentionLength(length: Int) {
+            this.length = length
+        }
+
+        override fun getMentionName() = name
+
+        override fun setMentionName(mentionName: String) {
+            name = mentionName
+        }
+    }
+}
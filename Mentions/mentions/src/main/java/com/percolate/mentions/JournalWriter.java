@@ -0,0 +1,214 @@
+package com.percolate.mentions;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Writes a {@link MentionsJournal} on an {@link Executor}, one task at a time in the order they
+ * were submitted, so appending, flushing and the fsync of a compaction never block the main
+ * thread. The main thread decides when to compact and takes the snapshot, the tasks only write
+ * copies of the data. After a failed compaction the records are dropped, as the next snapshot
+ * contains them, and compacting is only tried again once a delay has passed. The delay doubles
+ * with every failure, so a full disk is not retried on every keystroke.
+ */
+class JournalWriter {
+
+    static final long MIN_RETRY_DELAY_MILLIS = 1000;
+
+    static final long MAX_RETRY_DELAY_MILLIS = 60000;
+
+    private final MentionsJournal journal;
+
+    private final Executor executor;
+
+    /**
+     * Tasks waiting for the running one, guarded by <code>this</code>.
+     */
+    private final ArrayDeque<Runnable> tasks;
+
+    /**
+     * True while a task is submitted to the executor, guarded by <code>this</code>.
+     */
+    private boolean running;
+
+    /**
+     * True once a compaction was submitted. Main thread only.
+     */
+    private boolean compactionSubmitted;
+
+    /**
+     * The number of records submitted since the last compaction. Main thread only.
+     */
+    private int recordCount;
+
+    /**
+     * True if the last compaction failed.
+     */
+    private volatile boolean compactionFailed;
+
+    /**
+     * Uptime in milliseconds before which a failed compaction is not tried again.
+     */
+    private volatile long retryAt;
+
+    /**
+     * The delay after the last failed compaction. Executor only.
+     */
+    private long retryDelay;
+
+    /**
+     * Runs the submitted tasks in order, then gives the thread back to the executor.
+     */
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                final Runnable task;
+                synchronized (JournalWriter.this) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        running = false;
+                        return;
+                    }
+                }
+                task.run();
+            }
+        }
+    };
+
+    /**
+     * @param journal   MentionsJournal     The journal to write, only used by this writer.
+     * @param executor  Executor            The executor to write on.
+     */
+    JournalWriter(final MentionsJournal journal, final Executor executor) {
+        this.journal = journal;
+        this.executor = executor;
+        this.tasks = new ArrayDeque<>();
+    }
+
+    /**
+     * @return true if the journal should be compacted before the next record: it was never
+     *         compacted, has <code>maxRecords</code> records or the last compaction failed, and
+     *         the retry delay of a failure has passed.
+     */
+    boolean needsCompaction() {
+        return (!compactionSubmitted || compactionFailed || recordCount >= journal.getMaxRecords())
+                && SystemClock.uptimeMillis() >= retryAt;
+    }
+
+    /**
+     * Appends a change of the text.
+     *
+     * @see MentionsJournal#appendEdit(int, int, CharSequence)
+     */
+    void appendEdit(final int start, final int before, final CharSequence inserted) {
+        recordCount++;
+        final String text = inserted.toString();
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                if (!journal.isOpen()) {
+                    return;
+                }
+                try {
+                    journal.appendEdit(start, before, text);
+                } catch (IOException e) {
+                    Log.e("Mentions", "Could not journal an edit.", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Appends an inserted {@link Mentionable}. Its offset is read right away.
+     *
+     * @see MentionsJournal#appendMention(Mentionable, int, char)
+     */
+    void appendMention(final Mentionable mentionable, final char trigger) {
+        recordCount++;
+        final int offset = mentionable.getMentionOffset();
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                if (!journal.isOpen()) {
+                    return;
+                }
+                try {
+                    journal.appendMention(mentionable, offset, trigger);
+                } catch (IOException e) {
+                    Log.e("Mentions", "Could not journal a mention.", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Replaces the journal with <code>state</code>.
+     *
+     * @see MentionsJournal#compact(MentionsState)
+     */
+    void compact(final MentionsState state) {
+        compactionSubmitted = true;
+        compactionFailed = false;
+        recordCount = 0;
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    journal.compact(state);
+                    retryDelay = 0;
+                } catch (IOException e) {
+                    Log.e("Mentions", "Could not compact the journal.", e);
+                    retryDelay = retryDelay == 0 ? MIN_RETRY_DELAY_MILLIS
+                            : Math.min(retryDelay * 2, MAX_RETRY_DELAY_MILLIS);
+                    retryAt = SystemClock.uptimeMillis() + retryDelay;
+                    compactionFailed = true;
+                }
+            }
+        });
+    }
+
+    /**
+     * Deletes the journal once the tasks submitted before are done. The next record compacts it
+     * again.
+     *
+     * @see MentionsJournal#delete()
+     */
+    void delete() {
+        compactionSubmitted = false;
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    journal.delete();
+                } catch (IOException e) {
+                    Log.e("Mentions", "Could not delete the journal.", e);
+                }
+            }
+        });
+    }
+
+    private void submit(final Runnable task) {
+        synchronized (this) {
+            tasks.add(task);
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+        try {
+            executor.execute(drain);
+        } catch (RejectedExecutionException ex) {
+            // The next task submits the drain again.
+            synchronized (this) {
+                running = false;
+            }
+            Log.e("Mentions", "Journal write rejected.", ex);
+        }
+    }
+}
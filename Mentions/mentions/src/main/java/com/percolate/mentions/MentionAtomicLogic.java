@@ -0,0 +1,161 @@
+package com.percolate.mentions;
+
+import android.text.Editable;
+import android.text.InputFilter;
+import android.text.Selection;
+import android.text.SpanWatcher;
+import android.text.Spannable;
+import android.text.Spanned;
+
+/**
+ * Makes the {@link Mentionable}s in an {@link android.widget.EditText} behave like single
+ * characters. Deleting part of a mention, e.g. with a backspace after it, deletes all of it, and
+ * the cursor skips over mentions instead of stopping inside of them. A selection touching a
+ * mention is extended to all of it.
+ * <p/>
+ * As an {@link InputFilter}, it sees every edit before it is applied and finds the mentions cut by
+ * it with a binary search on their offsets. A filter can not widen the edit, so the rest of the
+ * cut mentions is deleted from {@link #afterTextChanged(Editable)}, before the input method and
+ * the layout are updated. As a {@link SpanWatcher} on the text, it moves the selection out of
+ * the mentions.
+ */
+class MentionAtomicLogic implements InputFilter, SpanWatcher {
+
+    private final MentionTracker mentionTracker;
+
+    /**
+     * The part of a mention left before the last edit, or -1.
+     */
+    private int leftoverStart = -1;
+
+    private int leftoverEnd;
+
+    /**
+     * The part of a mention left after the last edit, in the edited text, or -1.
+     */
+    private int trailingStart = -1;
+
+    private int trailingEnd;
+
+    /**
+     * True while the selection is being moved out of a mention.
+     */
+    private boolean movingSelection;
+
+    MentionAtomicLogic(final MentionTracker mentionTracker) {
+        this.mentionTracker = mentionTracker;
+    }
+
+    /**
+     * Remembers the parts of the mentions an edit is about to cut, the edit itself is kept.
+     */
+    @Override
+    public CharSequence filter(final CharSequence source, final int start, final int end,
+                               final Spanned dest, final int dstart, final int dend) {
+        if (dstart == dend) {
+            return null;
+        }
+        final int before = mentionTracker.indexAround(dstart);
+        if (before != -1) {
+            leftoverStart = mentionTracker.startAt(before);
+            leftoverEnd = dstart;
+        }
+        final int after = mentionTracker.indexAround(dend);
+        if (after != -1) {
+            trailingStart = dstart + end - start;
+            trailingEnd = trailingStart + mentionTracker.endAt(after) - dend;
+        }
+        return null;
+    }
+
+    /**
+     * Deletes the parts of the mentions the last edit cut, the ones after the edit first so the
+     * offsets of the ones before stay valid. Also watches the selection of <code>text</code>, which
+     * is a new {@link Editable} after <code>EditText#setText</code>.
+     *
+     * @param text  Editable    The edited text.
+     */
+    void afterTextChanged(final Editable text) {
+        watchSelection(text);
+        if (trailingStart != -1) {
+            final int start = trailingStart;
+            trailingStart = -1;
+            text.delete(start, Math.min(trailingEnd, text.length()));
+        }
+        if (leftoverStart != -1) {
+            final int start = leftoverStart;
+            leftoverStart = -1;
+            text.delete(start, leftoverEnd);
+        }
+    }
+
+    /**
+     * Starts watching the selection of <code>text</code>, if it is not watched yet.
+     *
+     * @param text  Spannable   The text of the EditText.
+     */
+    void watchSelection(final Spannable text) {
+        if (text.getSpanStart(this) == -1) {
+            text.setSpan(this, 0, text.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE);
+        }
+    }
+
+    @Override
+    public void onSpanAdded(final Spannable text, final Object what, final int start,
+                            final int end) {
+    }
+
+    @Override
+    public void onSpanRemoved(final Spannable text, final Object what, final int start,
+                              final int end) {
+    }
+
+    /**
+     * Moves a cursor inside of a mention to the end it was moving towards, and extends a
+     * selection to the whole of the mentions it cuts. <code>Selection#setSelection</code> moves
+     * the start of the selection as an intermediate change followed by its end, so only the
+     * final change is looked at.
+     */
+    @Override
+    public void onSpanChanged(final Spannable text, final Object what, final int ostart,
+                              final int oend, final int nstart, final int nend) {
+        if (movingSelection || what != Selection.SELECTION_START && what != Selection.SELECTION_END
+                || (text.getSpanFlags(what) & Spanned.SPAN_INTERMEDIATE) != 0) {
+            return;
+        }
+        final int selectionStart = Selection.getSelectionStart(text);
+        final int selectionEnd = Selection.getSelectionEnd(text);
+        int newStart = selectionStart;
+        int newEnd = selectionEnd;
+        if (selectionStart == selectionEnd) {
+            final int index = mentionTracker.indexAround(selectionStart);
+            if (index != -1) {
+                newStart = newEnd = nstart > ostart ? mentionTracker.endAt(index)
+                        : mentionTracker.startAt(index);
+            }
+        } else {
+            final boolean reversed = selectionStart > selectionEnd;
+            int low = Math.min(selectionStart, selectionEnd);
+            int high = Math.max(selectionStart, selectionEnd);
+            final int first = mentionTracker.indexAround(low);
+            if (first != -1) {
+                low = mentionTracker.startAt(first);
+            }
+            final int last = mentionTracker.indexAround(high);
+            if (last != -1) {
+                high = mentionTracker.endAt(last);
+            }
+            newStart = reversed ? high : low;
+            newEnd = reversed ? low : high;
+        }
+
+        if (newStart != selectionStart || newEnd != selectionEnd) {
+            movingSelection = true;
+            try {
+                Selection.setSelection(text, newStart, newEnd);
+            } finally {
+                movingSelection = false;
+            }
+        }
+    }
+}
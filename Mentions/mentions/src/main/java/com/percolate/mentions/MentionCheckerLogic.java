@@ -1,18 +1,50 @@
 package com.percolate.mentions;
 
+import android.text.TextUtils;
 import android.widget.EditText;
 
 /**
- * Contains helper methods to determine if a search is valid.
+ * Looks for the query being typed in the {@link EditText}, using the rules of
+ * {@link MentionScanner}.
  */
 class MentionCheckerLogic {
 
+    /**
+     * Returned when there is no valid query, so that a miss does not allocate.
+     */
+    private static final String NO_QUERY = "";
+
     private final EditText editText;
 
     /* Default limit of 13 characters to evaluate after the '@' symbol. */
     @SuppressWarnings("WeakerAccess")
     protected int maxCharacters = 13;
 
+    /**
+     * The symbols a query may start with, '@' and any added trigger.
+     */
+    private String triggers = MentionScanner.DEFAULT_TRIGGERS;
+
+    /**
+     * Location of the trigger symbol of the last valid query, or -1.
+     */
+    private int queryOffset = -1;
+
+    /**
+     * The trigger symbol of the last valid query.
+     */
+    private char queryTrigger = MentionTrigger.DEFAULT_SYMBOL;
+
+    /**
+     * Receives how long the checks take.
+     */
+    private MentionsMetrics metrics = MentionsMetrics.NONE;
+
+    /**
+     * The chars of the last valid query, reused so a query is copied without its spans.
+     */
+    private char[] queryChars = new char[0];
+
     MentionCheckerLogic(final EditText editText) {
         this.editText = editText;
     }
@@ -33,107 +65,91 @@ class MentionCheckerLogic {
         this.maxCharacters = maxCharacters;
     }
 
+    /**
+     * @param triggers  String  The symbols a query may start with, e.g. "@#".
+     */
+    void setTriggers(final String triggers) {
+        this.triggers = triggers;
+    }
+
+    /**
+     * @param metrics   MentionsMetrics     Receives how long the checks take.
+     */
+    void setMetrics(final MentionsMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * Takes the string typed by the user after the '@' symbol and checks the following rules:
      * 1. The length of the searched string is within the <code>maxCharacters</code> limit.
      * 2. An alphanumeric character is after the '@' symbol.
      * 3. If there are no characters before the '@' symbol.
      * <p/>
-     * If these rules are satisfied, then the search text is valid.
+     * If these rules are satisfied, then the search text is valid. The text is scanned in place,
+     * only the chars of the query are copied when it is valid, not the spans on them. With several triggers, the same rules
+     * apply to all of them and a single scan finds the active one.
      *
      * @return String   A valid query that satisfies the three rules above.
      */
     String doMentionCheck() {
-        String queryToken = "";
-
-        // perform a search if the {@link EditText} has an '@' symbol.
-        if (StringUtils.contains(editText.getText(), "@")) {
-            final int cursorPosition = editText.getSelectionStart();
-            final String allTextBeforeCursor = editText.getText().toString().substring(0, cursorPosition);
-            final String providedSearchText = StringUtils.substringAfterLast(allTextBeforeCursor, "@");
-
-            // check search text is within <code>maxCharacters</code> and begins with a
-            // alpha numeric char.
-            if (searchIsWithinMaxChars(providedSearchText, maxCharacters)
-                    && searchBeginsWithAlphaNumericChar(providedSearchText)) {
-
-                final int atSymbolPosition = StringUtils.lastIndexOf(allTextBeforeCursor, "@");
-
-                // check if search text is first in the view or has a space beforehand if there are
-                // more characters in the view.
-                if (atSymbolPosition == 0
-                        || spaceBeforeAtSymbol(allTextBeforeCursor, atSymbolPosition)) {
-                    queryToken = providedSearchText;
-                }
-            }
+        if (metrics == MentionsMetrics.NONE) {
+            return findQuery();
         }
-
-        return queryToken;
+        final long startNanos = System.nanoTime();
+        final String query = findQuery();
+        metrics.onOperation(MentionsMetrics.OPERATION_MENTION_CHECK,
+                System.nanoTime() - startNanos);
+        return query;
     }
 
-    /**
-     * If there is text before the '@' symbol, then check if it a white space. This is to prevent
-     * performing a mention when the user is typing an email.
-     *
-     * @param currentTextBeforeCursor String   This is all the text that has been typed into the
-     *                                {@link EditText}, before the current cursor location.
-     * @param atSymbolPosition        String   The location of the '@' symbol in the
-     *                                {@link EditText}.
-     * @return true or false
-     */
-    private boolean spaceBeforeAtSymbol(final String currentTextBeforeCursor, final int atSymbolPosition) {
-        if (atSymbolPosition > 0) {
-            final char charBeforeAtSymbol = currentTextBeforeCursor.charAt(atSymbolPosition - 1);
-            if (Character.isWhitespace(charBeforeAtSymbol)) {
-                return true;
-            }
+    private String findQuery() {
+        final CharSequence text = editText.getText();
+        final int cursorPosition = editText.getSelectionStart();
+        final int queryStart = MentionScanner.findQueryStart(text, cursorPosition, maxCharacters,
+                triggers);
+        if (queryStart == -1) {
+            queryOffset = -1;
+            return NO_QUERY;
         }
-        return false;
+        queryOffset = queryStart - 1;
+        queryTrigger = text.charAt(queryOffset);
+        final int length = cursorPosition - queryStart;
+        if (queryChars.length < length) {
+            queryChars = new char[Math.max(length, maxCharacters)];
+        }
+        TextUtils.getChars(text, queryStart, cursorPosition, queryChars, 0);
+        return new String(queryChars, 0, length);
     }
 
     /**
-     * Check if the number of characters after the '@' symbol is within <code>maxCharacters</code>.
-     *
-     * @param providedSearchText String  The text after the '@' symbol entered by the user.
-     * @param maxCharacters      int     The maximum number of characters that should be used
-     *                           as a search query. The default is 13 characters, but this
-     *                           value is configurable.
-     * @return true or false
+     * @return int  The location of the trigger symbol of the query last returned by
+     *              {@link #doMentionCheck()}, or -1 if no valid query was found.
      */
-    private boolean searchIsWithinMaxChars(final String providedSearchText, final int maxCharacters) {
-        return (providedSearchText.length() >= 1 && providedSearchText.length() <= maxCharacters);
+    int getQueryOffset() {
+        return queryOffset;
     }
 
     /**
-     * Checks if the starting character in the search text is a letter or digit.
-     *
-     * @param providedSearchText String  The text after the '@' symbol entered by the user.
-     * @return true or false
+     * @return char     The trigger symbol of the query last returned by {@link #doMentionCheck()},
+     *                  '@' if no valid query was found.
      */
-    private boolean searchBeginsWithAlphaNumericChar(final String providedSearchText) {
-        return Character.isLetterOrDigit(providedSearchText.charAt(0));
+    char getQueryTrigger() {
+        return queryOffset != -1 ? queryTrigger : MentionTrigger.DEFAULT_SYMBOL;
     }
 
     /**
      * Return true if the position of the cursor in {@link EditText} is on a word that
-     * starts with an '@' sign.
+     * starts with a trigger symbol. The word is found by scanning backwards from the cursor to
+     * the previous space or the start of the text.
      *
      * @return true or false
      */
-    boolean currentWordStartsWithAtSign() {
+    boolean currentWordStartsWithTrigger() {
         final int start = editText.getSelectionStart();
         final int end = editText.getSelectionEnd();
 
-        if (start == end) {
-            //Multiple text is not highlighted
-            if (editText.length() >= start) {
-                String text = editText.getText().toString().substring(0, start);
-                text = StringUtils.substringAfterLast(text, " ");
-                if (StringUtils.startsWith(text, "@")) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        //Multiple text is not highlighted
+        return start == end && MentionScanner.wordStartsWithTrigger(editText.getText(), start,
+                triggers);
     }
 }
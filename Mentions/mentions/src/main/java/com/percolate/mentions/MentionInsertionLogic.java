@@ -2,22 +2,21 @@ package com.percolate.mentions;
 
 import android.support.v4.content.ContextCompat;
 import android.text.InputType;
-import android.text.Spannable;
 import android.text.style.ForegroundColorSpan;
-import android.util.Log;
 import android.widget.EditText;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 /**
  * Insert and highlights a {@link Mentionable} in the {@link EditText}. All {@link Mentionable}s
- * are appended to the <code>mentions</code> array. The {@link Mentionable}'s offset and length
- * values are updated as text is edited in the {@link EditText}. The default text highlight color
- * is orange and it is configurable.
+ * are tracked by the <code>mentionTracker</code>. The {@link Mentionable}'s offset values are
+ * updated lazily as text is edited in the {@link EditText}, they are written when
+ * {@link #getMentions()} is called. The default text highlight color is orange and it is
+ * configurable. Mentions inserted after another trigger than '@' are highlighted with the color of
+ * their {@link MentionTrigger}.
  */
-class MentionInsertionLogic {
+class MentionInsertionLogic implements MentionTracker.HighlightColors {
 
     /**
      * The {@link EditText} we are inserting and highlighting mentions into.
@@ -25,9 +24,9 @@ class MentionInsertionLogic {
     private final EditText editText;
 
     /**
-     *  An internal array that keeps track of all the mentions added to {@link EditText}.
+     *  Keeps track of all the mentions added to {@link EditText} and of their highlight.
      */
-    private final List<Mentionable> mentions;
+    private final MentionTracker mentionTracker;
 
     /**
      * Text color of the mention in the {@link EditText}. The default color is orange.
@@ -35,20 +34,64 @@ class MentionInsertionLogic {
     @SuppressWarnings("WeakerAccess")
     protected int textHighlightColor;
 
+    /**
+     * The color int <code>textHighlightColor</code> resolves to, looked up once.
+     */
+    private int resolvedHighlightColor;
+
+    /**
+     * True if <code>resolvedHighlightColor</code> is up-to-date.
+     */
+    private boolean highlightColorResolved;
+
+    /**
+     * The triggers added besides '@'.
+     */
+    private final List<MentionTrigger> triggers;
+
+    /**
+     * The symbols a mention may be inserted after, '@' and the <code>triggers</code>.
+     */
+    private String triggerSymbols;
+
+    /**
+     * True while a batch edit defers the highlighting to its end.
+     */
+    private boolean highlightDeferred;
+
+    /**
+     * True if mentions were added while the highlighting was deferred.
+     */
+    private boolean highlightPending;
+
+    /**
+     * Receives how long updating and highlighting the mentions takes.
+     */
+    private MentionsMetrics metrics = MentionsMetrics.NONE;
+
     MentionInsertionLogic(final EditText editText) {
         this.editText = editText;
-        this.mentions = new ArrayList<>();
+        this.mentionTracker = new MentionTracker();
         this.textHighlightColor = R.color.mentions_default_color;
+        this.triggers = new ArrayList<>();
+        this.triggerSymbols = MentionScanner.DEFAULT_TRIGGERS;
     }
 
     /**
      * Returns all the {@link Mentionable}s added to the {@link EditText} by invoking
-     * <code>MentionInsertionLogic#insertMention</code>.
+     * <code>MentionInsertionLogic#insertMention</code>, with their offsets brought up-to-date.
      *
      * @return List<Mentionable>    All the {@link Mentionable}s added to edit {@link EditText}.
      */
     public List<Mentionable> getMentions() {
-        return mentions;
+        return mentionTracker.getMentions();
+    }
+
+    /**
+     * @return MentionTracker   Tracks the {@link Mentionable}s in the {@link EditText}.
+     */
+    MentionTracker getMentionTracker() {
+        return mentionTracker;
     }
 
     /**
@@ -60,10 +103,25 @@ class MentionInsertionLogic {
     void addMentions(final List<? extends Mentionable> mentions) {
         if (mentions == null || mentions.isEmpty()) {
             throw new IllegalArgumentException("Appended Mentions cannot be null nor empty.");
-        } else if (StringUtils.isBlank(editText.getText()) || !textHasMentions(mentions)) {
+        } else if (StringUtils.isBlank(editText.getText())
+                || !MentionScanner.textHasMentions(editText.getText(), mentions)) {
             throw new IllegalArgumentException("Appended Mentions must be in the edit text.");
         }
-        this.mentions.addAll(mentions);
+        mentionTracker.addAll(mentions);
+        highlightMentionsText();
+    }
+
+    /**
+     * Adds {@link Mentionable}s that are known to be in the {@link EditText} with the trigger
+     * symbols they were typed after, e.g. when a draft is restored.
+     *
+     * @param mentions  List<? extends Mentionable>     The mentions, at their offsets.
+     * @param triggers  char[]                          The trigger symbol of each mention.
+     */
+    void addMentions(final List<? extends Mentionable> mentions, final char[] triggers) {
+        for (int i = 0; i < mentions.size(); i++) {
+            mentionTracker.add(mentions.get(i), mentions.get(i).getMentionOffset(), triggers[i]);
+        }
         highlightMentionsText();
     }
 
@@ -74,24 +132,110 @@ class MentionInsertionLogic {
      */
     void setTextHighlightColor(final int textHighlightColor) {
         this.textHighlightColor = textHighlightColor;
+        this.highlightColorResolved = false;
+    }
+
+    /**
+     * @param metrics   MentionsMetrics     Receives how long updating and highlighting the
+     *                                      mentions takes, the span operations and the lost
+     *                                      mentions.
+     */
+    void setMetrics(final MentionsMetrics metrics) {
+        this.metrics = metrics;
+        mentionTracker.setMetrics(metrics);
+    }
+
+    /**
+     * Adds a trigger symbol mentions may be inserted after.
+     *
+     * @param trigger   MentionTrigger  The trigger, its symbol must not be used yet.
+     */
+    void addTrigger(final MentionTrigger trigger) {
+        triggers.add(trigger);
+        triggerSymbols += trigger.symbol;
+    }
+
+    /**
+     * @param symbol    char    A trigger symbol other than '@'.
+     * @return MentionTrigger   The trigger added for <code>symbol</code>, or null.
+     */
+    MentionTrigger getTrigger(final char symbol) {
+        for (int i = 0; i < triggers.size(); i++) {
+            if (triggers.get(i).symbol == symbol) {
+                return triggers.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return String   The symbols a mention may be inserted after, '@' first.
+     */
+    String getTriggerSymbols() {
+        return triggerSymbols;
+    }
+
+    /**
+     * @param mention   Mentionable     A mention inserted in the {@link EditText}.
+     * @return char     The trigger symbol the mention was inserted after.
+     */
+    char getMentionTrigger(final Mentionable mention) {
+        return mentionTracker.getTrigger(mention);
+    }
+
+    /**
+     * Returns the color int of the mentions inserted after <code>trigger</code>, resolving it on
+     * first use.
+     *
+     * @param trigger   char    A trigger symbol.
+     * @return int  The color to highlight the mentions with.
+     */
+    @Override
+    public int getHighlightColor(final char trigger) {
+        final MentionTrigger mentionTrigger = trigger != MentionTrigger.DEFAULT_SYMBOL
+                ? getTrigger(trigger) : null;
+        if (mentionTrigger == null) {
+            return getResolvedHighlightColor();
+        } else if (!mentionTrigger.highlightColorResolved) {
+            mentionTrigger.resolvedHighlightColor = ContextCompat.getColor(editText.getContext(),
+                    mentionTrigger.highlightColor);
+            mentionTrigger.highlightColorResolved = true;
+        }
+        return mentionTrigger.resolvedHighlightColor;
+    }
+
+    /**
+     * Returns the color int of <code>textHighlightColor</code>, resolving it on first use.
+     *
+     * @return int  The color to highlight the mentions with.
+     */
+    private int getResolvedHighlightColor() {
+        if (!highlightColorResolved) {
+            resolvedHighlightColor = ContextCompat.getColor(editText.getContext(),
+                    textHighlightColor);
+            highlightColorResolved = true;
+        }
+        return resolvedHighlightColor;
     }
 
     /**
      * Inserts a {@link Mentionable} into an {@link EditText} by inserting the mentions'
-     * name, highlighting it and keeping track of it in the array <code>mentions</code>.
+     * name, highlighting it and keeping track of it in the array <code>mentions</code>. The name
+     * replaces the query and the trigger symbol it was typed after.
      *
      * @param mention Mentionable     A mention to display in {@link EditText}.
+     * @return true if the mention was inserted, false if the cursor is not after a trigger.
      */
-     void insertMention(final Mentionable mention) {
+     boolean insertMention(final Mentionable mention) {
         checkMentionable(mention);
         mention.setMentionLength(mention.getMentionName().length());
 
         final int cursorPosition = editText.getSelectionEnd();
-        final String text = editText.getText().toString();
-        final String toReplace = text.substring(0, cursorPosition);
-        final int start = toReplace.lastIndexOf("@");
+        final int start = MentionScanner.findMentionStart(editText.getText(), cursorPosition,
+                triggerSymbols);
 
         if (start != -1) {
+            final char trigger = editText.getText().charAt(start);
             final int newCursorPosition = start + mention.getMentionName().length() + 1;
             editText.getText().delete(start, cursorPosition);
             editText.getText().insert(start, mention.getMentionName() + " ");
@@ -102,9 +246,11 @@ class MentionInsertionLogic {
             editText.setInputType(originalInputType);
             editText.setSelection(newCursorPosition);
 
-            addMentionToInternalArray(mention, start);
+            mentionTracker.add(mention, start, trigger);
             highlightMentionsText();
+            return true;
         }
+        return false;
     }
 
     /**
@@ -131,8 +277,7 @@ class MentionInsertionLogic {
      */
     void addMentionToInternalArray(final Mentionable mention, final int start) {
         if (mention != null) {
-            mention.setMentionOffset(start);
-            mentions.add(mention);
+            mentionTracker.add(mention, start);
         }
     }
 
@@ -152,7 +297,7 @@ class MentionInsertionLogic {
             final int count, final int after) {
         if (StringUtils.isNotBlank(charSequence) && start == 0 && count == charSequence.length()
                 && after == 0) {
-            mentions.clear();
+            mentionTracker.clear(editText.getEditableText());
         }
     }
 
@@ -161,98 +306,62 @@ class MentionInsertionLogic {
      * Consideration:
      * - If editing within an existing mention, remove it.
      * - If editing before an existing mentions, update the start of them.
+     * Only the mentions overlapping <code>start</code> are looked at, the offsets of the ones
+     * after it are shifted in O(log n). The highlight spans of the shifted mentions move along
+     * with the text, so only the spans of removed mentions need to be updated.
      *
      * @param start  int     Initial position of the new text.
      * @param before int     Length of old text.
      * @param count  int     The number of characters in the new text.
      */
      void updateInternalMentionsArray(final int start, final int before, final int count) {
-        if (!mentions.isEmpty()) {
-            if (before != count) { // Text not changed if they ==.
-                for (Iterator<Mentionable> iterator = mentions.iterator(); iterator.hasNext(); ) {
-                    final Mentionable mention = iterator.next();
-                    final int mentionStart = mention.getMentionOffset();
-                    final int mentionEnd = mentionStart + mention.getMentionLength();
-                    final int editPos = start + count;
-
-                    if (start <= mentionStart) {
-                        //Editing text before mention - change offset
-                        final int diff = count - before;
-                        mention.setMentionOffset(mentionStart + diff);
-                    } else if (editPos > mentionStart + 1 && editPos < mentionEnd) {
-                        //Editing text within mention - delete the mention
-                        iterator.remove();
-                    }
-                }
-                highlightMentionsText();
-            }
+        if (metrics == MentionsMetrics.NONE) {
+            mentionTracker.onTextChanged(editText.getEditableText(), start, before, count);
+            return;
         }
+        final long startNanos = System.nanoTime();
+        mentionTracker.onTextChanged(editText.getEditableText(), start, before, count);
+        metrics.onOperation(MentionsMetrics.OPERATION_UPDATE_MENTIONS,
+                System.nanoTime() - startNanos);
+        metrics.onMentionCount(mentionTracker.size());
     }
 
     /**
-     * Highlight all the {@link Mentionable}s in the {@link EditText}. A {@link ForegroundColorSpan}
-     * is set at the starting and ending locations of the {@link Mentionable}s.
+     * Defers highlighting the added {@link Mentionable}s until {@link #resumeHighlight()}, so a
+     * batch of insertions is highlighted in a single pass.
      */
-    private void highlightMentionsText() {
-        // Clear current highlighting (note: just using clearSpans(); makes EditText fields act
-        // strange).
-        final ForegroundColorSpan[] spans = editText.getEditableText().getSpans(0,
-                editText.getText().length(), ForegroundColorSpan.class);
-        for (ForegroundColorSpan span : spans) {
-            editText.getEditableText().removeSpan(span);
-        }
+    void deferHighlight() {
+        highlightDeferred = true;
+    }
 
-        if (!mentions.isEmpty()) {
-            for (Iterator<Mentionable> iterator = mentions.iterator(); iterator.hasNext(); ) {
-                final Mentionable mention = iterator.next();
-
-                try {
-                    final int start = mention.getMentionOffset();
-                    final int end = start + mention.getMentionLength();
-                    if (editText.length() >= end && StringUtils.equals(editText.getText()
-                            .subSequence(start, end), mention.getMentionName())) {
-                        ForegroundColorSpan highlightSpan = new ForegroundColorSpan(
-                                ContextCompat.getColor(editText.getContext(), textHighlightColor));
-                        editText.getEditableText().setSpan(highlightSpan, start, end,
-                                Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-                    } else {
-                        //Something went wrong.  The expected text that we're trying to highlight does
-                        // not match the actual text at that position.
-                        Log.w("Mentions", "Mention lost. [" + mention.getMentionName() + "]");
-                        iterator.remove();
-                    }
-                } catch (Exception ex) {
-                    Log.e("Mentions", "Mention removed due to exception. + [" +
-                                                                mention.getMentionName() + "]", ex);
-                    iterator.remove();
-                }
-            }
+    /**
+     * Highlights the {@link Mentionable}s added since {@link #deferHighlight()}, if any.
+     */
+    void resumeHighlight() {
+        highlightDeferred = false;
+        if (highlightPending) {
+            highlightPending = false;
+            highlightMentionsText();
         }
     }
 
     /**
-     * If you prepopulate an {@link EditText} with {@link Mentionable}s, then we check whether the
-     * view has all the {@link Mentionable}s at their offsets and length.
-     *
-     * @param mentions List<Mentionable>   List of pre-defined mentions in the {@link EditText}.
-     * @return true or false
+     * Highlight all the {@link Mentionable}s in the {@link EditText}. A {@link ForegroundColorSpan}
+     * is set at the starting and ending locations of the {@link Mentionable}s, in the color of
+     * their trigger. Spans already at the right location are kept and spans not set by the library
+     * are never touched.
      */
-    private boolean textHasMentions(final List<? extends Mentionable> mentions) {
-        if (editText != null && mentions != null && !mentions.isEmpty()) {
-            for (Mentionable mention : mentions) {
-                final int mentionStart = mention.getMentionOffset();
-                final int mentionEnd = mention.getMentionLength();
-                if (mentionEnd <= editText.getText().length()) {
-                    final String displayText = StringUtils.substring(editText.getText().toString(),
-                            mentionStart, mentionStart + mentionEnd);
-                    if (StringUtils.isBlank(displayText) || !StringUtils.equals(displayText,
-                            mention.getMentionName())) {
-                        return false;
-                    }
-                }
-            }
+    private void highlightMentionsText() {
+        if (highlightDeferred) {
+            highlightPending = true;
+            return;
+        } else if (metrics == MentionsMetrics.NONE) {
+            mentionTracker.highlight(editText.getEditableText(), this);
+            return;
         }
-
-        return true;
+        final long startNanos = System.nanoTime();
+        mentionTracker.highlight(editText.getEditableText(), this);
+        metrics.onOperation(MentionsMetrics.OPERATION_HIGHLIGHT, System.nanoTime() - startNanos);
+        metrics.onMentionCount(mentionTracker.size());
     }
 }
@@ -0,0 +1,402 @@
+package com.percolate.mentions;
+
+import android.annotation.TargetApi;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.text.Layout;
+import android.text.PrecomputedText;
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.TextView;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Renders read-only texts with their {@link Mentionable}s highlighted, for example the comments
+ * of a feed displayed in a RecyclerView. Each text is rendered once into a {@link Spanned} which
+ * is kept in an LRU cache, keyed by the id and version of the text, so binding a view only takes
+ * a single <code>setText</code>. Texts about to be displayed can be rendered ahead of time on a
+ * background {@link Executor} with {@link #prefetch(Object, long, CharSequence, List)}.
+ * <p/>
+ * Once the metrics of the views are set with {@link #setTextMetrics(TextView)}, prefetched texts
+ * are also measured in the background. From API 28 they are cached as {@link PrecomputedText}, so
+ * the view does not measure them again. Below API 28 they are laid out and the layout is dropped,
+ * which fills the framework's text measurement caches so measuring them again in the view is
+ * cheaper. Bind them with {@link #bind(TextView, Object, long, CharSequence, List)}.
+ * <p/>
+ * A higher version of a text replaces the cached rendering of a lower one. A renderer may be
+ * used from several threads.
+ */
+@SuppressWarnings("WeakerAccess")
+public class MentionRenderer {
+
+    /**
+     * The color the mentions are highlighted with.
+     */
+    private final int highlightColor;
+
+    /**
+     * Runs the prefetched renderings.
+     */
+    private final Executor executor;
+
+    /**
+     * Rendered texts by id.
+     */
+    private final LruCache<Object, Entry> cache;
+
+    /**
+     * Ids of the texts waiting to be rendered on the executor.
+     */
+    private final Set<Object> pending;
+
+    /**
+     * How prefetched texts are measured, or null to only render them.
+     */
+    private volatile TextMetrics textMetrics;
+
+    /**
+     * Renders on {@link AsyncTask#THREAD_POOL_EXECUTOR}.
+     *
+     * @param highlightColor    int     The color to highlight the mentions with.
+     * @param maxEntries        int     The maximum number of rendered texts to keep.
+     */
+    public MentionRenderer(final int highlightColor, final int maxEntries) {
+        this(highlightColor, maxEntries, AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * @param highlightColor    int         The color to highlight the mentions with.
+     * @param maxEntries        int         The maximum number of rendered texts to keep.
+     * @param executor          Executor    The executor to prefetch on.
+     */
+    public MentionRenderer(final int highlightColor, final int maxEntries,
+                           final Executor executor) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Maximum number of entries must be greater than 0.");
+        } else if (executor == null) {
+            throw new IllegalArgumentException("Executor must not be null.");
+        }
+        this.highlightColor = highlightColor;
+        this.executor = executor;
+        this.cache = new LruCache<>(maxEntries);
+        this.pending = new HashSet<>();
+    }
+
+    /**
+     * Returns the rendering of a text, from the cache if this version was already rendered.
+     *
+     * @param id        Object                          Identifies the text, e.g. a comment id.
+     * @param version   long                            The version of the text.
+     * @param text      CharSequence                    The text.
+     * @param mentions  List<? extends Mentionable>     The mentions in the text, may be null.
+     * @return Spanned  The text with its mentions highlighted, a {@link PrecomputedText} if it was
+     *                  prefetched with text metrics from API 28.
+     */
+    public Spanned render(final Object id, final long version, final CharSequence text,
+                          final List<? extends Mentionable> mentions) {
+        if (id == null || text == null) {
+            throw new IllegalArgumentException("Id and text must not be null.");
+        }
+        final Spanned cached = getCached(id, version);
+        if (cached != null) {
+            return cached;
+        }
+        final Spanned rendered = highlight(text.toString(), ranges(mentions), highlightColor);
+        put(id, version, rendered);
+        return rendered;
+    }
+
+    /**
+     * Renders a text on the executor, unless this version is already cached or being rendered.
+     * The mentions' offsets are read right away, so they may change once this returns.
+     *
+     * @param id        Object                          Identifies the text, e.g. a comment id.
+     * @param version   long                            The version of the text.
+     * @param text      CharSequence                    The text.
+     * @param mentions  List<? extends Mentionable>     The mentions in the text, may be null.
+     */
+    public void prefetch(final Object id, final long version, final CharSequence text,
+                         final List<? extends Mentionable> mentions) {
+        if (id == null || text == null) {
+            throw new IllegalArgumentException("Id and text must not be null.");
+        }
+        synchronized (this) {
+            if (getCached(id, version) != null || !pending.add(id)) {
+                return;
+            }
+        }
+        final String value = text.toString();
+        final int[] ranges = ranges(mentions);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final Spanned rendered = highlight(value, ranges, highlightColor);
+                    final TextMetrics metrics = textMetrics;
+                    put(id, version, metrics != null ? metrics.precompute(rendered) : rendered);
+                } finally {
+                    synchronized (MentionRenderer.this) {
+                        pending.remove(id);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets the rendering of a text on <code>textView</code>. A text precomputed with other metrics
+     * than the view's is set without them.
+     *
+     * @param textView  TextView                        The view to display the text in.
+     * @param id        Object                          Identifies the text, e.g. a comment id.
+     * @param version   long                            The version of the text.
+     * @param text      CharSequence                    The text.
+     * @param mentions  List<? extends Mentionable>     The mentions in the text, may be null.
+     */
+    public void bind(final TextView textView, final Object id, final long version,
+                     final CharSequence text, final List<? extends Mentionable> mentions) {
+        if (textView == null) {
+            throw new IllegalArgumentException("Text view must not be null.");
+        }
+        final Spanned rendered = render(id, version, text, mentions);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            textView.setText(PrecomputedMetrics.forView(textView, rendered));
+        } else {
+            textView.setText(rendered);
+        }
+    }
+
+    /**
+     * Measures the prefetched texts like <code>textView</code> would. From API 28 its text metrics
+     * are used; below, a copy of its paint, width and spacing, and nothing is changed if it was
+     * not measured yet. Call it again if the style or the width of the views changes.
+     *
+     * @param textView  TextView    A view the rendered texts are displayed in.
+     */
+    public void setTextMetrics(final TextView textView) {
+        if (textView == null) {
+            throw new IllegalArgumentException("Text view must not be null.");
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            textMetrics = new PrecomputedMetrics(textView);
+            return;
+        }
+        final int width = textView.getWidth() - textView.getCompoundPaddingLeft()
+                - textView.getCompoundPaddingRight();
+        if (width > 0) {
+            textMetrics = new LayoutMetrics(textView, width);
+        }
+    }
+
+    /**
+     * Stops measuring the prefetched texts.
+     */
+    public void clearTextMetrics() {
+        textMetrics = null;
+    }
+
+    /**
+     * @param id        Object  Identifies the text.
+     * @param version   long    The version of the text.
+     * @return Spanned  The cached rendering of this version of the text, or null.
+     */
+    public Spanned getCached(final Object id, final long version) {
+        final Entry entry = cache.get(id);
+        return entry != null && entry.version == version ? entry.rendered : null;
+    }
+
+    /**
+     * Removes the rendering of a text, e.g. after it was deleted.
+     *
+     * @param id    Object  Identifies the text.
+     */
+    public void invalidate(final Object id) {
+        cache.remove(id);
+    }
+
+    /**
+     * Removes all the renderings.
+     */
+    public void clear() {
+        cache.evictAll();
+    }
+
+    /**
+     * Caches <code>rendered</code> unless a higher version of the text is already cached.
+     */
+    private synchronized void put(final Object id, final long version, final Spanned rendered) {
+        final Entry entry = cache.get(id);
+        if (entry == null || entry.version <= version) {
+            cache.put(id, new Entry(version, rendered));
+        }
+    }
+
+    /**
+     * @return int[]    The start and end of each mention, in pairs.
+     */
+    private static int[] ranges(final List<? extends Mentionable> mentions) {
+        if (mentions == null) {
+            return new int[0];
+        }
+        final int[] ranges = new int[mentions.size() * 2];
+        for (int i = 0; i < mentions.size(); i++) {
+            final Mentionable mention = mentions.get(i);
+            if (mention != null) {
+                ranges[i * 2] = mention.getMentionOffset();
+                ranges[i * 2 + 1] = mention.getMentionOffset() + mention.getMentionLength();
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Highlights the <code>ranges</code> of <code>text</code>. Ranges outside of the text are
+     * skipped.
+     */
+    static Spanned highlight(final String text, final int[] ranges, final int color) {
+        final SpannableString spannable = new SpannableString(text);
+        for (int i = 0; i < ranges.length; i += 2) {
+            final int start = ranges[i];
+            final int end = ranges[i + 1];
+            if (start >= 0 && start < end && end <= text.length()) {
+                spannable.setSpan(new MentionSpanReconciler.MentionSpan(color), start, end,
+                                  Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            } else if (start != end) {
+                Log.w("Mentions", "Mention lost. [" + start + ", " + end + "]");
+            }
+        }
+        return spannable;
+    }
+
+    /**
+     * A rendered version of a text.
+     */
+    private static class Entry {
+
+        final long version;
+
+        final Spanned rendered;
+
+        Entry(final long version, final Spanned rendered) {
+            this.version = version;
+            this.rendered = rendered;
+        }
+    }
+
+    /**
+     * Measures rendered texts on the executor.
+     */
+    abstract static class TextMetrics {
+
+        /**
+         * @return Spanned  <code>text</code>, or a copy of it that keeps its measurement.
+         */
+        abstract Spanned precompute(Spanned text);
+    }
+
+    /**
+     * Precomputes the texts with the text metrics of a view, from API 28.
+     */
+    @TargetApi(Build.VERSION_CODES.P)
+    static class PrecomputedMetrics extends TextMetrics {
+
+        private final PrecomputedText.Params params;
+
+        PrecomputedMetrics(final TextView textView) {
+            this.params = textView.getTextMetricsParams();
+        }
+
+        @Override
+        Spanned precompute(final Spanned text) {
+            return PrecomputedText.create(text, params);
+        }
+
+        /**
+         * The view rejects a {@link PrecomputedText} of other metrics, so it then only gets the
+         * text.
+         */
+        static CharSequence forView(final TextView textView, final Spanned rendered) {
+            if (rendered instanceof PrecomputedText) {
+                final PrecomputedText precomputed = (PrecomputedText) rendered;
+                if (!precomputed.getParams().equals(textView.getTextMetricsParams())) {
+                    return precomputed.getText();
+                }
+            }
+            return rendered;
+        }
+    }
+
+    /**
+     * Lays out the texts like a view, below API 28.
+     */
+    static class LayoutMetrics extends TextMetrics {
+
+        private final TextPaint paint;
+
+        private final int width;
+
+        private final float spacingMultiplier;
+
+        private final float spacingExtra;
+
+        private final boolean includePadding;
+
+        private final int breakStrategy;
+
+        private final int hyphenationFrequency;
+
+        @TargetApi(Build.VERSION_CODES.M)
+        LayoutMetrics(final TextView textView, final int width) {
+            this.paint = new TextPaint(textView.getPaint());
+            this.width = width;
+            this.spacingMultiplier = textView.getLineSpacingMultiplier();
+            this.spacingExtra = textView.getLineSpacingExtra();
+            this.includePadding = textView.getIncludeFontPadding();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                this.breakStrategy = textView.getBreakStrategy();
+                this.hyphenationFrequency = textView.getHyphenationFrequency();
+            } else {
+                this.breakStrategy = 0;
+                this.hyphenationFrequency = 0;
+            }
+        }
+
+        /**
+         * Lays out <code>text</code> and drops the layout: measuring it shapes its words, which
+         * are kept in the framework's caches.
+         */
+        @Override
+        Spanned precompute(final Spanned text) {
+            layout(text);
+            return text;
+        }
+
+        /**
+         * Several threads may lay out at the same time, so each layout gets its own paint.
+         */
+        @TargetApi(Build.VERSION_CODES.M)
+        Layout layout(final Spanned text) {
+            final TextPaint layoutPaint = new TextPaint(paint);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                return StaticLayout.Builder.obtain(text, 0, text.length(), layoutPaint, width)
+                        .setAlignment(Layout.Alignment.ALIGN_NORMAL)
+                        .setLineSpacing(spacingExtra, spacingMultiplier)
+                        .setIncludePad(includePadding)
+                        .setBreakStrategy(breakStrategy)
+                        .setHyphenationFrequency(hyphenationFrequency)
+                        .build();
+            }
+            return new StaticLayout(text, layoutPaint, width, Layout.Alignment.ALIGN_NORMAL,
+                                    spacingMultiplier, spacingExtra, includePadding);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.percolate.mentions;
+
+import android.text.Spannable;
+import android.text.style.ForegroundColorSpan;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Keeps the highlight spans of the {@link Mentionable}s in sync with their ranges. Every
+ * {@link Mentionable} owns at most one {@link MentionSpan}, which is only added, moved or removed
+ * when the {@link Mentionable}'s range actually changed. Spans that move along with the text
+ * because of an edit are left alone, and spans set by other code are never touched.
+ */
+class MentionSpanReconciler {
+
+    /**
+     * The highlight span set by the library. Having our own type lets us tell our spans apart from
+     * any other {@link ForegroundColorSpan} in the text.
+     */
+    static class MentionSpan extends ForegroundColorSpan {
+
+        MentionSpan(final int color) {
+            super(color);
+        }
+    }
+
+    /**
+     * The span currently set for each highlighted {@link Mentionable}.
+     */
+    private final Map<Mentionable, MentionSpan> spans;
+
+    /**
+     * The number of spans added, moved or removed since {@link #takeOperationCount()}.
+     */
+    private int operationCount;
+
+    MentionSpanReconciler() {
+        this.spans = new IdentityHashMap<>();
+    }
+
+    /**
+     * Makes sure <code>mention</code> is highlighted from <code>start</code> to <code>end</code>
+     * with <code>color</code>. Nothing is done if its span is already there.
+     *
+     * @param text      Spannable       The text containing the mention.
+     * @param mention   Mentionable     The mention to highlight.
+     * @param start     int             The current offset of the mention.
+     * @param end       int             The current end (exclusive) of the mention.
+     * @param color     int             The resolved highlight color.
+     */
+    void highlight(final Spannable text, final Mentionable mention, final int start, final int end,
+                   final int color) {
+        MentionSpan span = spans.get(mention);
+        if (span != null && span.getForegroundColor() != color) {
+            text.removeSpan(span);
+            operationCount++;
+            span = null;
+        }
+
+        if (span == null) {
+            span = new MentionSpan(color);
+            spans.put(mention, span);
+        } else if (text.getSpanStart(span) == start && text.getSpanEnd(span) == end) {
+            return;
+        }
+
+        // Setting a span that is already in the text moves it.
+        text.setSpan(span, start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        operationCount++;
+    }
+
+    /**
+     * Removes the highlight of a {@link Mentionable} that is no longer tracked.
+     *
+     * @param text      Spannable       The text containing the mention.
+     * @param mention   Mentionable     The mention that was removed.
+     */
+    void remove(final Spannable text, final Mentionable mention) {
+        final MentionSpan span = spans.remove(mention);
+        if (span != null) {
+            text.removeSpan(span);
+            operationCount++;
+        }
+    }
+
+    /**
+     * Removes the highlight of all the {@link Mentionable}s.
+     *
+     * @param text      Spannable       The text containing the mentions.
+     */
+    void clear(final Spannable text) {
+        for (Iterator<MentionSpan> iterator = spans.values().iterator(); iterator.hasNext(); ) {
+            text.removeSpan(iterator.next());
+            iterator.remove();
+            operationCount++;
+        }
+    }
+
+    /**
+     * @return int  The number of spans added, moved or removed since the last call.
+     */
+    int takeOperationCount() {
+        final int count = operationCount;
+        operationCount = 0;
+        return count;
+    }
+}
@@ -0,0 +1,285 @@
+package com.percolate.mentions;
+
+import android.text.Spannable;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of the {@link Mentionable}s in a text and of their highlight spans while the text is
+ * edited. Only the {@link Spannable} text is needed, not the {@link android.widget.EditText}
+ * holding it. Each mention remembers the trigger symbol it was inserted after, so mentions of
+ * different kinds can be highlighted differently.
+ */
+class MentionTracker {
+
+    /**
+     * Gives the highlight color of the mentions inserted after a trigger symbol.
+     */
+    interface HighlightColors {
+
+        /**
+         * @param trigger   char    The trigger symbol of a mention.
+         * @return int  The resolved color to highlight the mention with.
+         */
+        int getHighlightColor(final char trigger);
+    }
+
+    /**
+     * The tracked mentions, sorted by offset.
+     */
+    private final MentionRangeIndex mentions;
+
+    /**
+     * Adds, moves and removes the highlight spans of the <code>mentions</code>.
+     */
+    private final MentionSpanReconciler spanReconciler;
+
+    /**
+     * Receives the mentions removed by an edit, reused to avoid allocating on every keystroke.
+     */
+    private final List<Mentionable> removedMentions;
+
+    /**
+     * The trigger symbol of the tracked mentions not inserted after the default one.
+     */
+    private final Map<Mentionable, Character> triggers;
+
+    /**
+     * Receives the span operations and the lost mentions.
+     */
+    private MentionsMetrics metrics = MentionsMetrics.NONE;
+
+    MentionTracker() {
+        this.mentions = new MentionRangeIndex();
+        this.spanReconciler = new MentionSpanReconciler();
+        this.removedMentions = new ArrayList<>();
+        this.triggers = new IdentityHashMap<>();
+    }
+
+    /**
+     * @return List<Mentionable>    The tracked {@link Mentionable}s, with their offsets brought
+     *                              up-to-date. Their offsets are not written to them until then.
+     */
+    List<Mentionable> getMentions() {
+        return mentions.materialize();
+    }
+
+    /**
+     * @return int  The number of tracked {@link Mentionable}s.
+     */
+    int size() {
+        return mentions.size();
+    }
+
+    /**
+     * Finds the {@link Mentionable} a position is strictly inside of, with a binary search.
+     *
+     * @param position  int     A position in the text.
+     * @return int  The index of the mention starting before <code>position</code> and ending after
+     *              it, or -1 if <code>position</code> is not inside of a mention.
+     */
+    int indexAround(final int position) {
+        final int index = mentions.lowerBound(position) - 1;
+        return index >= 0 && mentions.endAt(index) > position ? index : -1;
+    }
+
+    /**
+     * @param index int     The index of a tracked mention, in offset order.
+     * @return int  The current offset of the mention.
+     */
+    int startAt(final int index) {
+        return mentions.offsetAt(index);
+    }
+
+    /**
+     * @param index int     The index of a tracked mention, in offset order.
+     * @return int  The current end (exclusive) of the mention.
+     */
+    int endAt(final int index) {
+        return mentions.endAt(index);
+    }
+
+    /**
+     * @param metrics   MentionsMetrics     Receives the span operations and the lost mentions.
+     */
+    void setMetrics(final MentionsMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts tracking a {@link Mentionable}.
+     *
+     * @param mention   Mentionable     The mention.
+     * @param start     int             The offset of the mention in the text.
+     */
+    void add(final Mentionable mention, final int start) {
+        add(mention, start, MentionTrigger.DEFAULT_SYMBOL);
+    }
+
+    /**
+     * Starts tracking a {@link Mentionable} inserted after <code>trigger</code>.
+     *
+     * @param mention   Mentionable     The mention.
+     * @param start     int             The offset of the mention in the text.
+     * @param trigger   char            The trigger symbol the mention was inserted after.
+     */
+    void add(final Mentionable mention, final int start, final char trigger) {
+        mentions.add(mention, start);
+        if (trigger != MentionTrigger.DEFAULT_SYMBOL) {
+            triggers.put(mention, trigger);
+        } else if (!triggers.isEmpty()) {
+            triggers.remove(mention);
+        }
+    }
+
+    /**
+     * @param mention   Mentionable     A tracked mention.
+     * @return char     The trigger symbol the mention was inserted after.
+     */
+    char getTrigger(final Mentionable mention) {
+        final Character trigger = triggers.isEmpty() ? null : triggers.get(mention);
+        return trigger != null ? trigger : MentionTrigger.DEFAULT_SYMBOL;
+    }
+
+    /**
+     * Snapshots <code>text</code> and the tracked {@link Mentionable}s. The offsets are read from
+     * the index, they are not written to the {@link Mentionable}s.
+     *
+     * @param text      CharSequence    The text containing the mentions.
+     * @param cursor    int             The location of the cursor in the text.
+     * @param version   long            The version of the state.
+     * @return MentionsState    The state.
+     */
+    MentionsState getState(final CharSequence text, final int cursor, final long version) {
+        final int count = mentions.size();
+        final String[] names = new String[count];
+        final int[] offsets = new int[count];
+        final int[] lengths = new int[count];
+        final char[] mentionTriggers = new char[count];
+        for (int i = 0; i < count; i++) {
+            final Mentionable mention = mentions.get(i);
+            names[i] = mention.getMentionName() != null ? mention.getMentionName() : "";
+            offsets[i] = mentions.offsetAt(i);
+            lengths[i] = mentions.lengthAt(i);
+            mentionTriggers[i] = getTrigger(mention);
+        }
+        return new MentionsState(text.toString(), cursor, names, offsets, lengths,
+                mentionTriggers, version);
+    }
+
+    /**
+     * Starts tracking {@link Mentionable}s at their current offsets.
+     *
+     * @param mentions  List<Mentionable>   The mentions.
+     */
+    void addAll(final List<? extends Mentionable> mentions) {
+        this.mentions.addAll(mentions);
+    }
+
+    /**
+     * Stops tracking all the {@link Mentionable}s and removes their highlight.
+     *
+     * @param text  Spannable   The text containing the mentions.
+     */
+    void clear(final Spannable text) {
+        mentions.clear();
+        triggers.clear();
+        spanReconciler.clear(text);
+    }
+
+    /**
+     * Updates the tracked mentions after <code>before</code> characters at <code>start</code> were
+     * replaced by <code>count</code> characters. Mentions that were edited are removed along with
+     * their highlight, the offsets of the ones after the edit are shifted lazily.
+     *
+     * @param text      Spannable   The edited text.
+     * @param start     int         Initial position of the new text.
+     * @param before    int         Length of old text.
+     * @param count     int         The number of characters in the new text.
+     */
+    void onTextChanged(final Spannable text, final int start, final int before, final int count) {
+        if (!mentions.isEmpty() && before != count) { // Text not changed if they ==.
+            mentions.applyEdit(start, before, count, removedMentions);
+            for (int i = 0; i < removedMentions.size(); i++) {
+                spanReconciler.remove(text, removedMentions.get(i));
+                if (!triggers.isEmpty()) {
+                    triggers.remove(removedMentions.get(i));
+                }
+            }
+            removedMentions.clear();
+            reportSpanOperations();
+        }
+    }
+
+    /**
+     * Highlights all the tracked {@link Mentionable}s with <code>color</code>. Spans already at the
+     * right location are kept, and mentions whose name is no longer in the text are removed.
+     *
+     * @param text      Spannable   The text containing the mentions.
+     * @param color     int         The resolved highlight color.
+     */
+    void highlight(final Spannable text, final int color) {
+        highlight(text, new HighlightColors() {
+            @Override
+            public int getHighlightColor(final char trigger) {
+                return color;
+            }
+        });
+    }
+
+    /**
+     * Highlights all the tracked {@link Mentionable}s with the color of their trigger symbol.
+     *
+     * @param text      Spannable           The text containing the mentions.
+     * @param colors    HighlightColors     Gives the color of each trigger symbol.
+     */
+    void highlight(final Spannable text, final HighlightColors colors) {
+        // Walk backwards so lost mentions can be removed without skipping any.
+        for (int i = mentions.size() - 1; i >= 0; i--) {
+            final Mentionable mention = mentions.get(i);
+
+            try {
+                final int start = mentions.offsetAt(i);
+                final int end = start + mentions.lengthAt(i);
+                if (text.length() >= end && StringUtils.equals(text.subSequence(start, end),
+                        mention.getMentionName())) {
+                    spanReconciler.highlight(text, mention, start, end,
+                            colors.getHighlightColor(getTrigger(mention)));
+                } else {
+                    //Something went wrong.  The expected text that we're trying to highlight does
+                    // not match the actual text at that position.
+                    Log.w("Mentions", "Mention lost. [" + mention.getMentionName() + "]");
+                    metrics.onMentionLost(mention.getMentionName());
+                    remove(text, i);
+                }
+            } catch (Exception ex) {
+                Log.e("Mentions", "Mention removed due to exception. + [" +
+                                                            mention.getMentionName() + "]", ex);
+                metrics.onMentionLost(mention.getMentionName());
+                remove(text, i);
+            }
+        }
+        reportSpanOperations();
+    }
+
+    private void reportSpanOperations() {
+        final int count = spanReconciler.takeOperationCount();
+        if (count != 0 && metrics != MentionsMetrics.NONE) {
+            metrics.onSpanOperations(count);
+        }
+    }
+
+    /**
+     * Stops tracking the mention at <code>index</code> and removes its highlight.
+     */
+    private void remove(final Spannable text, final int index) {
+        final Mentionable mention = mentions.get(index);
+        mentions.removeRange(index, index + 1);
+        spanReconciler.remove(text, mention);
+        triggers.remove(mention);
+    }
+}
@@ -0,0 +1,45 @@
+package com.percolate.mentions;
+
+/**
+ * A symbol other than '@' that starts a query, e.g. '#' for channels, with the listener its
+ * queries are passed to and the color its mentions are highlighted with.
+ */
+class MentionTrigger {
+
+    /**
+     * The symbol of the queries and mentions not started by another trigger.
+     */
+    static final char DEFAULT_SYMBOL = '@';
+
+    /**
+     * The symbol typed before the query.
+     */
+    final char symbol;
+
+    /**
+     * The color resource the mentions inserted after <code>symbol</code> are highlighted with.
+     */
+    final int highlightColor;
+
+    /**
+     * Receives the queries typed after <code>symbol</code>.
+     */
+    final QueryListener queryListener;
+
+    /**
+     * The color int <code>highlightColor</code> resolves to, looked up once.
+     */
+    int resolvedHighlightColor;
+
+    /**
+     * True if <code>resolvedHighlightColor</code> is up-to-date.
+     */
+    boolean highlightColorResolved;
+
+    MentionTrigger(final char symbol, final int highlightColor,
+                   final QueryListener queryListener) {
+        this.symbol = symbol;
+        this.highlightColor = highlightColor;
+        this.queryListener = queryListener;
+    }
+}
@@ -1,18 +1,27 @@
 package com.percolate.mentions;
 
+import android.content.ClipData;
+import android.content.ClipboardManager;
 import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.Editable;
+import android.text.InputFilter;
 import android.text.TextWatcher;
+import android.util.Log;
 import android.view.View;
 import android.widget.EditText;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Mentions class contains a Builder through which you could set the text highlight color,
  * query listener or add mentions. Pass in an {@link EditText} view to the builder and the library
- * will setup the ability to '@' mention.
+ * will setup the ability to '@' mention. Other trigger symbols, e.g. '#' for channels, may be
+ * added with their own listener and highlight color.
  */
 @SuppressWarnings("WeakerAccess")
 public class Mentions {
@@ -47,6 +56,98 @@ public class Mentions {
      */
     protected final MentionInsertionLogic mentionInsertionLogic;
 
+    /**
+     * Debounces the queries passed to <code>queryListener</code>.
+     */
+    protected final QueryDispatcher queryDispatcher;
+
+    /**
+     * Run the searches of the {@link SuggestionProvider}s that were set.
+     */
+    private final List<SuggestionDispatcher<?>> suggestionDispatchers;
+
+    /**
+     * The search in flight, shared by the <code>suggestionDispatchers</code> so only one runs at
+     * a time.
+     */
+    private final SuggestionDispatcher.Searches suggestionSearches;
+
+    /**
+     * Handler on the main thread.
+     */
+    private final Handler handler;
+
+    /**
+     * The number of batches begun and not committed yet.
+     */
+    private int batchDepth;
+
+    /**
+     * True if the text changed during a batch, so the query is checked when it is committed.
+     */
+    private boolean queryCheckPending;
+
+    /**
+     * Keeps the draft in a journal as it is edited, or null.
+     */
+    private JournalWriter journalWriter;
+
+    /**
+     * Receives measurements of the mention pipeline.
+     */
+    private MentionsMetrics metrics = MentionsMetrics.NONE;
+
+    /**
+     * Converts offsets in <code>offsetConverterText</code>, or null until it is asked for.
+     */
+    private OffsetConverter offsetConverter;
+
+    /**
+     * The text of the {@link EditText} <code>offsetConverter</code> reads, which is replaced when
+     * <code>setText</code> is called.
+     */
+    private CharSequence offsetConverterText;
+
+    /**
+     * Deletes and selects mentions as a whole, or null.
+     */
+    private MentionAtomicLogic mentionAtomicLogic;
+
+    /**
+     * True if a snapshot is published after every batch of changes.
+     */
+    private boolean publishSnapshots;
+
+    /**
+     * The last published snapshot, read from any thread, or null.
+     */
+    private volatile MentionsState snapshot;
+
+    /**
+     * The version of the text and the mentions, increased with every change.
+     */
+    private long version;
+
+    /**
+     * True if the text or the mentions changed since <code>snapshot</code> was published.
+     */
+    private boolean snapshotStale;
+
+    /**
+     * Publishes a new snapshot once the current changes are done.
+     */
+    private final Runnable snapshotPublisher = new Runnable() {
+        @Override
+        public void run() {
+            publishSnapshot();
+        }
+    };
+
+    /**
+     * Resolves the handles of pasted text, or null.
+     */
+    private MentionResolver<? extends Mentionable> mentionResolver;
+
     /**
      * Pass in your {@link EditText} to give it the ability to @ mention.
 
@@ -60,6 +161,10 @@ public class Mentions {
         // instantiate helper classes
         this.mentionCheckerLogic = new MentionCheckerLogic(editText);
         this.mentionInsertionLogic = new MentionInsertionLogic(editText);
+        this.handler = new Handler(Looper.getMainLooper());
+        this.queryDispatcher = new QueryDispatcher(handler);
+        this.suggestionDispatchers = new ArrayList<>();
+        this.suggestionSearches = new SuggestionDispatcher.Searches();
     }
 
     /**
@@ -73,6 +178,21 @@ public class Mentions {
          */
         private final Mentions mentionsLib;
 
+        /**
+         * Executor for the searches of a {@link SuggestionProvider}.
+         */
+        private Executor suggestionExecutor = AsyncTask.THREAD_POOL_EXECUTOR;
+
+        /**
+         * The journal of the draft, or null.
+         */
+        private MentionsJournal journal;
+
+        /**
+         * Executor the journal is written on.
+         */
+        private Executor journalExecutor = AsyncTask.THREAD_POOL_EXECUTOR;
+
         /**
          * Builder which allows you configure mentions. A {@link Context} and {@link EditText} is
          * required by the Builder.
@@ -135,6 +255,129 @@ public class Mentions {
             return this;
         }
 
+        /**
+         * Wait for the user to stop typing for <code>debounceMillis</code> before passing a query
+         * to the {@link QueryListener}. Queries are passed right away by default.
+         *
+         * @param debounceMillis    long    The time in milliseconds during which a newly typed
+         *                                  query replaces the one waiting to be passed.
+         */
+        public Builder queryDebounce(final long debounceMillis) {
+            mentionsLib.queryDispatcher.setDebounceMillis(debounceMillis);
+            return this;
+        }
+
+        /**
+         * Set a listener that will be notified when a query passed to the {@link QueryListener}
+         * is no longer current, so that you may cancel the search for it.
+         *
+         * @param queryCancelListener   QueryCancelListener     The listener to notify of cancelled
+         *                                                      queries.
+         */
+        public Builder queryCancelListener(final QueryCancelListener queryCancelListener) {
+            mentionsLib.queryDispatcher.setCancelListener(queryCancelListener);
+            return this;
+        }
+
+        /**
+         * Search for suggestions with <code>provider</code> instead of setting a
+         * {@link QueryListener}. Searches run on a background thread, one at a time, and the
+         * results are delivered on the main thread if their query is still current.
+         *
+         * @param provider          SuggestionProvider<T>           Searches for suggestions.
+         * @param limit             int                             The maximum number of
+         *                                                          suggestions to search for.
+         * @param resultListener    SuggestionsResultListener<T>    Receives the suggestions on
+         *                                                          the main thread.
+         */
+        public <T extends Mentionable> Builder suggestionProvider(
+                final SuggestionProvider<T> provider, final int limit,
+                final SuggestionsResultListener<T> resultListener) {
+            if (provider == null || resultListener == null) {
+                throw new IllegalArgumentException("Provider and result listener must not be " +
+                                                   "null.");
+            }
+            mentionsLib.queryListener = createSuggestionDispatcher(provider, limit,
+                    resultListener);
+            return this;
+        }
+
+        /**
+         * Add a symbol other than '@' that starts a query, e.g. '#' for channels. The same rules
+         * apply to the queries of all the triggers, which are found in a single scan of the text.
+         *
+         * @param symbol            char            The trigger symbol, not a letter, digit or
+         *                                          space.
+         * @param color             int             The color to highlight the mentions inserted
+         *                                          after <code>symbol</code> with.
+         * @param queryListener     QueryListener   Receives the queries typed after
+         *                                          <code>symbol</code>.
+         */
+        public Builder trigger(final char symbol, final int color,
+                               final QueryListener queryListener) {
+            if (queryListener == null) {
+                throw new IllegalArgumentException("Query listener must not be null.");
+            }
+            mentionsLib.addTrigger(new MentionTrigger(symbol, color, queryListener));
+            return this;
+        }
+
+        /**
+         * Add a symbol other than '@' that starts a query, and search for its suggestions with
+         * <code>provider</code>.
+         *
+         * @param symbol            char                            The trigger symbol, not a
+         *                                                          letter, digit or space.
+         * @param color             int                             The color to highlight the
+         *                                                          mentions inserted after
+         *                                                          <code>symbol</code> with.
+         * @param provider          SuggestionProvider<T>           Searches for suggestions.
+         * @param limit             int                             The maximum number of
+         *                                                          suggestions to search for.
+         * @param resultListener    SuggestionsResultListener<T>    Receives the suggestions on
+         *                                                          the main thread.
+         * @see #suggestionProvider(SuggestionProvider, int, SuggestionsResultListener)
+         */
+        public <T extends Mentionable> Builder trigger(
+                final char symbol, final int color, final SuggestionProvider<T> provider,
+                final int limit, final SuggestionsResultListener<T> resultListener) {
+            if (provider == null || resultListener == null) {
+                throw new IllegalArgumentException("Provider and result listener must not be " +
+                                                   "null.");
+            }
+            mentionsLib.addTrigger(new MentionTrigger(symbol, color,
+                    createSuggestionDispatcher(provider, limit, resultListener)));
+            return this;
+        }
+
+        private <T extends Mentionable> SuggestionDispatcher<T> createSuggestionDispatcher(
+                final SuggestionProvider<T> provider, final int limit,
+                final SuggestionsResultListener<T> resultListener) {
+            final SuggestionDispatcher<T> suggestionDispatcher = new SuggestionDispatcher<>(
+                    provider, limit, resultListener, mentionsLib.queryDispatcher,
+                    mentionsLib.handler, suggestionExecutor, mentionsLib.suggestionSearches);
+            mentionsLib.suggestionDispatchers.add(suggestionDispatcher);
+            return suggestionDispatcher;
+        }
+
+        /**
+         * Set the executor the searches of the {@link SuggestionProvider} run on. The
+         * {@link AsyncTask#THREAD_POOL_EXECUTOR} is used by default. At most one search is
+         * submitted at a time.
+         *
+         * @param executor  Executor    The executor to run searches on.
+         */
+        public Builder suggestionExecutor(final Executor executor) {
+            if (executor == null) {
+                throw new IllegalArgumentException("Executor must not be null.");
+            }
+            suggestionExecutor = executor;
+            for (SuggestionDispatcher<?> suggestionDispatcher : mentionsLib.suggestionDispatchers) {
+                suggestionDispatcher.setExecutor(executor);
+            }
+            return this;
+        }
+
         /**
          * Set a listener to notify you whether you should hide or display a drop down with
          * {@link Mentionable}s.
@@ -147,17 +390,137 @@ public class Mentions {
             return this;
         }
 
+        /**
+         * Keep the draft in <code>journal</code> as it is edited: each change of the text and
+         * each inserted {@link Mentionable} is appended to it, and it is compacted with the
+         * current state once it needs to. Restore the draft by passing the state returned by
+         * {@link MentionsJournal#read()} to {@link #restoreState(MentionsState,
+         * MentionDecoder.Factory)}. The journal is written in the background, one write at a
+         * time, so it must not be used directly once it is set: delete it with
+         * {@link #deleteJournal()}. Errors writing the journal are logged, and a failed
+         * compaction is retried after a growing delay.
+         *
+         * @param journal   MentionsJournal     The journal of the draft.
+         */
+        public Builder journal(final MentionsJournal journal) {
+            if (journal == null) {
+                throw new IllegalArgumentException("Journal must not be null.");
+            }
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * Set the executor the journal is written on. The
+         * {@link AsyncTask#THREAD_POOL_EXECUTOR} is used by default. At most one write is
+         * submitted at a time.
+         *
+         * @param executor  Executor    The executor to write the journal on.
+         */
+        public Builder journalExecutor(final Executor executor) {
+            if (executor == null) {
+                throw new IllegalArgumentException("Executor must not be null.");
+            }
+            journalExecutor = executor;
+            return this;
+        }
+
+        /**
+         * Set a listener measuring how long checking for a query, updating the mentions after an
+         * edit and highlighting them take, and counting the mentions, the highlight span
+         * operations, the lost mentions and the dispatched queries. Nothing is measured by
+         * default. {@link MentionsMetricsRecorder} keeps the measurements in memory.
+         *
+         * @param metrics   MentionsMetrics     Receives the measurements.
+         */
+        public Builder metrics(final MentionsMetrics metrics) {
+            if (metrics == null) {
+                throw new IllegalArgumentException("Metrics must not be null.");
+            }
+            mentionsLib.metrics = metrics;
+            mentionsLib.mentionCheckerLogic.setMetrics(metrics);
+            mentionsLib.mentionInsertionLogic.setMetrics(metrics);
+            mentionsLib.queryDispatcher.setMetrics(metrics);
+            return this;
+        }
+
+        /**
+         * Make the {@link Mentionable}s behave like single characters: deleting part of a
+         * mention deletes all of it, the cursor skips over mentions and a selection touching a
+         * mention is extended to all of it. The mention cut by an edit is found with a binary
+         * search, whatever the number of mentions. Any filter already set on the
+         * {@link EditText} is kept.
+         */
+        public Builder atomicMentions() {
+            if (mentionsLib.mentionAtomicLogic == null) {
+                final MentionAtomicLogic atomicLogic = new MentionAtomicLogic(
+                        mentionsLib.mentionInsertionLogic.getMentionTracker());
+                final InputFilter[] filters = mentionsLib.editText.getFilters();
+                final InputFilter[] newFilters = new InputFilter[filters.length + 1];
+                System.arraycopy(filters, 0, newFilters, 0, filters.length);
+                newFilters[filters.length] = atomicLogic;
+                mentionsLib.editText.setFilters(newFilters);
+                atomicLogic.watchSelection(mentionsLib.editText.getText());
+                mentionsLib.mentionAtomicLogic = atomicLogic;
+            }
+            return this;
+        }
+
+        /**
+         * Set a resolver turning the handles in pasted text, e.g. "@brent", into
+         * {@link Mentionable}s. {@link #paste(CharSequence)} then inserts text with its handles
+         * replaced by mentions, and so does {@link #onTextContextMenuItem(int)} for a paste from
+         * the clipboard. Typed text is not resolved.
+         *
+         * @param resolver  MentionResolver<?>  Resolves the handles after any trigger symbol.
+         */
+        public Builder mentionResolver(final MentionResolver<? extends Mentionable> resolver) {
+            if (resolver == null) {
+                throw new IllegalArgumentException("Resolver must not be null.");
+            }
+            mentionsLib.mentionResolver = resolver;
+            return this;
+        }
+
+        /**
+         * Publish an immutable snapshot of the text and the {@link Mentionable}s after every batch
+         * of changes, so {@link #getSnapshot()} may be called from any thread. Each snapshot
+         * copies the text, so they are not published unless this is set.
+         */
+        public Builder publishSnapshots() {
+            mentionsLib.publishSnapshots = true;
+            return this;
+        }
+
         /**
          * Builds and returns a {@link Mentions} object.
          */
         public Mentions build() {
+            if (journal != null) {
+                mentionsLib.journalWriter = new JournalWriter(journal, journalExecutor);
+            }
             mentionsLib.hookupInternalTextWatcher();
             mentionsLib.hookupOnClickListener();
+            if (mentionsLib.publishSnapshots) {
+                mentionsLib.snapshot = mentionsLib.getState(0);
+            }
             return mentionsLib;
         }
 
     }
 
+    /**
+     * Adds a trigger symbol to the query and the mention scans.
+     */
+    private void addTrigger(final MentionTrigger trigger) {
+        if (Character.isLetterOrDigit(trigger.symbol) || Character.isWhitespace(trigger.symbol)
+                || mentionInsertionLogic.getTriggerSymbols().indexOf(trigger.symbol) != -1) {
+            throw new IllegalArgumentException("Trigger must be a symbol that is not used yet.");
+        }
+        mentionInsertionLogic.addTrigger(trigger);
+        mentionCheckerLogic.setTriggers(mentionInsertionLogic.getTriggerSymbols());
+    }
+
     /**
      * You may be pre-loading text with {@link Mentionable}s. In order to highlight and make those
      * {@link Mentionable}s recognizable by the library, you may add them by using this method.
@@ -167,6 +530,291 @@ public class Mentions {
      */
     public void addMentions(final List<? extends Mentionable> mentionables) {
         mentionInsertionLogic.addMentions(mentionables);
+        onMentionsChanged();
+        if (journalWriter != null) {
+            for (Mentionable mentionable : mentionables) {
+                journalMention(mentionable, MentionTrigger.DEFAULT_SYMBOL);
+            }
+        }
+    }
+
+    /**
+     * Returns a converter of offsets in the text of the {@link EditText} between UTF-16 chars,
+     * which {@link Mentionable}s use, and code points or UTF-8 bytes, e.g. to exchange mentions
+     * with a backend. It is kept up-to-date as the text is edited, so only the part of the text
+     * after an edit is counted again.
+     *
+     * @return OffsetConverter  The converter for the current text.
+     */
+    public OffsetConverter getOffsetConverter() {
+        final CharSequence text = editText.getText();
+        if (offsetConverter == null || offsetConverterText != text) {
+            offsetConverter = new OffsetConverter(text);
+            offsetConverterText = text;
+        }
+        return offsetConverter;
+    }
+
+    /**
+     * Returns a snapshot of the text, the cursor and the {@link Mentionable}s, e.g. to save a
+     * draft with {@link MentionsStateParcel} or {@link MentionsState#writeTo}.
+     *
+     * @return MentionsState    The current state.
+     */
+    public MentionsState getState() {
+        return getState(0);
+    }
+
+    /**
+     * Returns the latest snapshot of the text, the cursor and the {@link Mentionable}s. Unlike
+     * {@link #getInsertedMentions()} and {@link #getState()}, it may be called from any thread:
+     * snapshots are immutable and published through a volatile field, so reading one takes no lock
+     * and copies nothing. On the main thread, the snapshot is up-to-date. On other threads, it is
+     * the one published after the last batch of changes, at most one message loop behind. Its
+     * version increases with every change of the text or the mentions. Snapshots are only
+     * published if {@link Builder#publishSnapshots()} was set.
+     *
+     * @return MentionsState    The latest snapshot.
+     */
+    public MentionsState getSnapshot() {
+        if (!publishSnapshots) {
+            throw new IllegalStateException("Snapshots are not published.");
+        } else if (Looper.myLooper() == Looper.getMainLooper()) {
+            publishSnapshot();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Counts a change of the text or the mentions, and publishes a new snapshot once the main
+     * thread is done with the current changes, if snapshots are published, so typing quickly
+     * publishes at most one snapshot per message.
+     */
+    private void onMentionsChanged() {
+        version++;
+        if (publishSnapshots && !snapshotStale) {
+            snapshotStale = true;
+            handler.post(snapshotPublisher);
+        }
+    }
+
+    private void publishSnapshot() {
+        if (snapshotStale) {
+            snapshotStale = false;
+            handler.removeCallbacks(snapshotPublisher);
+            snapshot = getState(version);
+        }
+    }
+
+    private MentionsState getState(final long version) {
+        final CharSequence text = editText.getText();
+        final int cursor = Math.max(0, Math.min(editText.getSelectionStart(), text.length()));
+        return mentionInsertionLogic.getMentionTracker().getState(text, cursor, version);
+    }
+
+    /**
+     * Replaces the text, the cursor and the {@link Mentionable}s with <code>state</code> in a
+     * single batch. Mentions whose name is not at their offset in the text any more are dropped.
+     * If a journal is set, it is compacted with the restored state.
+     *
+     * @param state     MentionsState               A state returned by {@link #getState()} or
+     *                                              read from a journal.
+     * @param factory   MentionDecoder.Factory<T>   Creates the restored mentions.
+     * @return List<T>  The restored mentions.
+     */
+    public <T extends Mentionable> List<T> restoreState(final MentionsState state,
+                                                        final MentionDecoder.Factory<T> factory) {
+        if (state == null || factory == null) {
+            throw new IllegalArgumentException("State and factory must not be null.");
+        }
+        final String text = state.getText();
+        final List<T> created = state.createMentions(factory);
+        final List<T> mentions = new ArrayList<>(created.size());
+        final StringBuilder triggers = new StringBuilder(created.size());
+        for (int i = 0; i < created.size(); i++) {
+            final T mention = created.get(i);
+            final int offset = mention.getMentionOffset();
+            final String name = mention.getMentionName();
+            if (offset >= 0 && StringUtils.isNotBlank(name)
+                    && mention.getMentionLength() == name.length()
+                    && text.startsWith(name, offset)) {
+                mentions.add(mention);
+                triggers.append(state.getMentionTrigger(i));
+            } else {
+                Log.w("Mentions", "Mention lost. [" + offset + ", " + name + "]");
+                metrics.onMentionLost(name);
+            }
+        }
+
+        beginBatch();
+        try {
+            editText.setText(text);
+            if (!mentions.isEmpty()) {
+                mentionInsertionLogic.addMentions(mentions, triggers.toString().toCharArray());
+                onMentionsChanged();
+            }
+            editText.setSelection(Math.min(state.getCursor(), editText.length()));
+        } finally {
+            commitBatch();
+        }
+        if (journalWriter != null) {
+            compactJournal();
+        }
+        return mentions;
+    }
+
+    /**
+     * Replaces the text of the {@link EditText} and the {@link Mentionable}s in it in a single
+     * batch, e.g. to restore a draft. The previous mentions are dropped. If a journal is set, it
+     * is compacted with the new state.
+     *
+     * @param text      CharSequence                    The new text.
+     * @param mentions  List<? extends Mentionable>     The mentions in <code>text</code>, may be
+     *                                                  null or empty.
+     */
+    public void setText(final CharSequence text, final List<? extends Mentionable> mentions) {
+        beginBatch();
+        try {
+            editText.setText(text);
+            if (mentions != null && !mentions.isEmpty()) {
+                mentionInsertionLogic.addMentions(mentions);
+                onMentionsChanged();
+            }
+        } finally {
+            commitBatch();
+        }
+        if (journalWriter != null) {
+            compactJournal();
+        }
+    }
+
+    /**
+     * Replaces the selection with <code>text</code>, its handles replaced by the
+     * {@link Mentionable}s the resolver set with {@link Builder#mentionResolver} returns. The text
+     * is scanned once, inserted with a single edit and all the mentions are highlighted in one
+     * pass, however many handles it contains. The cursor is moved after the inserted text.
+     *
+     * @param text  CharSequence    The text to paste.
+     * @return List<Mentionable>    The resolved mentions, in the order of the text.
+     */
+    public List<Mentionable> paste(final CharSequence text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text must not be null.");
+        } else if (mentionResolver == null) {
+            throw new IllegalStateException("No mention resolver was set.");
+        }
+        final Editable editable = editText.getText();
+        int start = Math.min(editText.getSelectionStart(), editText.getSelectionEnd());
+        int end = Math.max(editText.getSelectionStart(), editText.getSelectionEnd());
+        if (start < 0) {
+            start = editable.length();
+            end = editable.length();
+        }
+        queryDispatcher.cancel();
+
+        final boolean wordStart = start == 0
+                || Character.isWhitespace(Character.codePointBefore(editable, start));
+        final StringBuilder resolved = new StringBuilder(text.length());
+        final List<Mentionable> mentions = new ArrayList<>();
+        final StringBuilder triggers = new StringBuilder();
+        MentionScanner.resolveMentions(text, 0, text.length(), wordStart,
+                mentionInsertionLogic.getTriggerSymbols(), mentionResolver, resolved, mentions,
+                triggers);
+
+        beginBatch();
+        try {
+            editable.replace(start, end, resolved);
+            for (Mentionable mention : mentions) {
+                mention.setMentionOffset(start + mention.getMentionOffset());
+            }
+            if (!mentions.isEmpty()) {
+                mentionInsertionLogic.addMentions(mentions, triggers.toString().toCharArray());
+                onMentionsChanged();
+                if (journalWriter != null) {
+                    for (int i = 0; i < mentions.size(); i++) {
+                        journalMention(mentions.get(i), triggers.charAt(i));
+                    }
+                }
+            }
+            editText.setSelection(start + resolved.length());
+        } finally {
+            commitBatch();
+        }
+        return mentions;
+    }
+
+    /**
+     * Pastes the text of the clipboard with {@link #paste(CharSequence)} when the paste item of
+     * the context menu is chosen, so its handles are resolved. Text inserted by the keyboard, by
+     * dictation or with <code>setText</code> is never resolved. Call it from the
+     * <code>onTextContextMenuItem</code> of the {@link EditText}:
+     * <pre>
+     * public boolean onTextContextMenuItem(int id) {
+     *     return mentions.onTextContextMenuItem(id) || super.onTextContextMenuItem(id);
+     * }
+     * </pre>
+     *
+     * @param id    int     The id of the chosen context menu item.
+     * @return true if the item was the paste item and the clipboard had text, which was pasted.
+     */
+    public boolean onTextContextMenuItem(final int id) {
+        if (id != android.R.id.paste || mentionResolver == null) {
+            return false;
+        }
+        final ClipboardManager clipboard = (ClipboardManager) context.getSystemService(
+                Context.CLIPBOARD_SERVICE);
+        final ClipData clip = clipboard != null ? clipboard.getPrimaryClip() : null;
+        if (clip == null) {
+            return false;
+        }
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < clip.getItemCount(); i++) {
+            final CharSequence item = clip.getItemAt(i).coerceToText(context);
+            if (item != null) {
+                if (text.length() > 0) {
+                    text.append('\n');
+                }
+                text.append(item);
+            }
+        }
+        if (text.length() == 0) {
+            return false;
+        }
+        paste(text);
+        return true;
+    }
+
+    /**
+     * Begins a batch of changes to the text and the {@link Mentionable}s. Until the batch is
+     * committed, the mentions are still kept up-to-date as the text changes, but they are not
+     * highlighted and the query is not checked, and the {@link EditText} defers its own updates.
+     * Batches may be nested, only the outermost one applies the changes.
+     */
+    public void beginBatch() {
+        if (batchDepth++ == 0) {
+            editText.beginBatchEdit();
+            mentionInsertionLogic.deferHighlight();
+        }
+    }
+
+    /**
+     * Commits a batch begun with {@link #beginBatch()}. When the outermost batch is committed,
+     * all the mentions are highlighted in one pass and the query is checked once.
+     */
+    public void commitBatch() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("No batch was begun.");
+        } else if (--batchDepth == 0) {
+            try {
+                mentionInsertionLogic.resumeHighlight();
+            } finally {
+                editText.endBatchEdit();
+            }
+            if (queryCheckPending) {
+                queryCheckPending = false;
+                queryReceived(mentionCheckerLogic.doMentionCheck());
+            }
+        }
     }
 
     /**
@@ -179,16 +827,73 @@ public class Mentions {
     }
 
     /**
-     * If the user sets the cursor after an '@', then perform a mention.
+     * Returns the token of the last query passed to the {@link QueryListener}. Keep the token
+     * when you start searching for a query and check it with {@link #isQueryCurrent(long)} when
+     * the results arrive.
+     *
+     * @return long     The token of the last query, it increases with every query.
+     */
+    public long getQueryToken() {
+        return queryDispatcher.getQueryToken();
+    }
+
+    /**
+     * Returns the location of the trigger symbol the current query was typed after. Two queries
+     * with the same offset were typed in the same word, which {@link MentionSuggestionSession}
+     * uses to refine its previous results.
+     *
+     * @return int  The offset of the trigger symbol, or -1 if the user is not typing a query.
+     */
+    public int getQueryOffset() {
+        return mentionCheckerLogic.getQueryOffset();
+    }
+
+    /**
+     * Returns the trigger symbol the current query was typed after, for a {@link QueryListener}
+     * shared by several triggers.
+     *
+     * @return char     The trigger symbol, '@' if the user is not typing a query.
+     */
+    public char getQueryTrigger() {
+        return mentionCheckerLogic.getQueryTrigger();
+    }
+
+    /**
+     * Returns the trigger symbol an inserted {@link Mentionable} was typed after, e.g. to store
+     * what kind of mention it is.
+     *
+     * @param mentionable   Mentionable     A {@link Mentionable} returned by
+     *                                      {@link #getInsertedMentions()}.
+     * @return char     The trigger symbol, '@' for the mentions added with
+     *                  {@link #addMentions(List)}.
+     */
+    public char getMentionTrigger(final Mentionable mentionable) {
+        return mentionInsertionLogic.getMentionTrigger(mentionable);
+    }
+
+    /**
+     * Whether results for the query with the token <code>queryToken</code> should still be
+     * displayed.
+     *
+     * @param queryToken    long    A token returned by {@link #getQueryToken()}.
+     * @return true if the query is still current or false if the user typed something else.
+     */
+    public boolean isQueryCurrent(final long queryToken) {
+        return queryDispatcher.isCurrent(queryToken);
+    }
+
+    /**
+     * If the user sets the cursor after an '@' or another trigger, then perform a mention.
      */
     private void hookupOnClickListener() {
         editText.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-                if (mentionCheckerLogic.currentWordStartsWithAtSign()) {
+                if (mentionCheckerLogic.currentWordStartsWithTrigger()) {
                     String query = mentionCheckerLogic.doMentionCheck();
                     queryReceived(query);
                 } else {
+                    queryDispatcher.cancel();
                     suggestionsListener.displaySuggestions(false);
                 }
             }
@@ -210,10 +915,24 @@ public class Mentions {
             @Override
             public void onTextChanged(CharSequence charSequence, int start, int before, int count) {
                 mentionInsertionLogic.updateInternalMentionsArray(start, before, count);
+                if (offsetConverter != null) {
+                    offsetConverter.onTextChanged(start);
+                }
+                onMentionsChanged();
+                if (journalWriter != null) {
+                    journalEdit(start, before, charSequence.subSequence(start, start + count));
+                }
             }
 
             @Override
             public void afterTextChanged(Editable s) {
+                if (mentionAtomicLogic != null) {
+                    mentionAtomicLogic.afterTextChanged(s);
+                }
+                if (batchDepth > 0) {
+                    queryCheckPending = true;
+                    return;
+                }
                 String query = mentionCheckerLogic.doMentionCheck();
                 queryReceived(query);
             }
@@ -228,20 +947,74 @@ public class Mentions {
      *                                      and highlight in the {@link EditText}.
      */
     public void insertMention(final Mentionable mentionable) {
-        mentionInsertionLogic.insertMention(mentionable);
+        queryDispatcher.cancel();
+        final boolean inserted = mentionInsertionLogic.insertMention(mentionable);
+        if (inserted) {
+            onMentionsChanged();
+            if (journalWriter != null) {
+                journalMention(mentionable, mentionInsertionLogic.getMentionTrigger(mentionable));
+            }
+        }
         suggestionsListener.displaySuggestions(false);
     }
 
     /**
-     * If the user typed a query that was valid then return it. Otherwise, notify you to close
-     * a suggestions list.
+     * Deletes the journal set with {@link Builder#journal(MentionsJournal)} once the writes
+     * submitted before are done, e.g. once the draft was sent. The next change of the text
+     * starts a new journal.
+     */
+    public void deleteJournal() {
+        if (journalWriter == null) {
+            throw new IllegalStateException("No journal was set.");
+        }
+        journalWriter.delete();
+    }
+
+    /**
+     * Appends a change of the text to the journal, or compacts it if it needs to be.
+     */
+    private void journalEdit(final int start, final int before, final CharSequence inserted) {
+        if (journalWriter.needsCompaction()) {
+            compactJournal();
+        } else {
+            journalWriter.appendEdit(start, before, inserted);
+        }
+    }
+
+    /**
+     * Appends an inserted {@link Mentionable} to the journal, or compacts it if it needs to be.
+     */
+    private void journalMention(final Mentionable mentionable, final char trigger) {
+        if (journalWriter.needsCompaction()) {
+            compactJournal();
+        } else {
+            journalWriter.appendMention(mentionable, trigger);
+        }
+    }
+
+    /**
+     * Replaces the journal with a snapshot of the current state.
+     */
+    private void compactJournal() {
+        journalWriter.compact(getState());
+    }
+
+    /**
+     * If the user typed a query that was valid then return it to the listener of its trigger.
+     * Otherwise, notify you to close a suggestions list. The same query is only returned once,
+     * and when a debounce time is set it is returned after the user stopped typing.
      *
      * @param query     String      A valid query.
      */
     public void queryReceived(final String query) {
-        if (queryListener != null && StringUtils.isNotBlank(query)) {
-            queryListener.onQueryReceived(query);
+        final MentionTrigger trigger =
+                mentionCheckerLogic.getQueryTrigger() != MentionTrigger.DEFAULT_SYMBOL
+                ? mentionInsertionLogic.getTrigger(mentionCheckerLogic.getQueryTrigger()) : null;
+        final QueryListener listener = trigger != null ? trigger.queryListener : queryListener;
+        if (listener != null && StringUtils.isNotBlank(query)) {
+            queryDispatcher.dispatch(query, listener);
         } else {
+            queryDispatcher.cancel();
             suggestionsListener.displaySuggestions(false);
         }
     }
@@ -0,0 +1,73 @@
+package com.percolate.mentions;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Wraps a {@link MentionsState} to save it in a <code>Bundle</code>, e.g. in
+ * <code>onSaveInstanceState</code>, so a draft survives the death of the process.
+ */
+@SuppressWarnings("WeakerAccess")
+public class MentionsStateParcel implements Parcelable {
+
+    public static final Creator<MentionsStateParcel> CREATOR = new Creator<MentionsStateParcel>() {
+        @Override
+        public MentionsStateParcel createFromParcel(final Parcel source) {
+            final String text = source.readString();
+            final int cursor = source.readInt();
+            final String[] names = source.createStringArray();
+            final int[] offsets = source.createIntArray();
+            final int[] lengths = source.createIntArray();
+            final char[] triggers = source.createCharArray();
+            return new MentionsStateParcel(new MentionsState(text, cursor, names, offsets, lengths,
+                    triggers));
+        }
+
+        @Override
+        public MentionsStateParcel[] newArray(final int size) {
+            return new MentionsStateParcel[size];
+        }
+    };
+
+    private final MentionsState state;
+
+    /**
+     * @param state     MentionsState   The state to save.
+     */
+    public MentionsStateParcel(final MentionsState state) {
+        if (state == null) {
+            throw new IllegalArgumentException("State must not be null.");
+        }
+        this.state = state;
+    }
+
+    public MentionsState getState() {
+        return state;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(final Parcel dest, final int flags) {
+        final int count = state.getMentionCount();
+        final String[] names = new String[count];
+        final int[] offsets = new int[count];
+        final int[] lengths = new int[count];
+        final char[] triggers = new char[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = state.getMentionName(i);
+            offsets[i] = state.getMentionOffset(i);
+            lengths[i] = state.getMentionLength(i);
+            triggers[i] = state.getMentionTrigger(i);
+        }
+        dest.writeString(state.getText());
+        dest.writeInt(state.getCursor());
+        dest.writeStringArray(names);
+        dest.writeIntArray(offsets);
+        dest.writeIntArray(lengths);
+        dest.writeCharArray(triggers);
+    }
+}
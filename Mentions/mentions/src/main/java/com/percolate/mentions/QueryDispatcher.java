@@ -0,0 +1,192 @@
+package com.percolate.mentions;
+
+import android.os.Handler;
+
+/**
+ * Delivers the queries found by {@link MentionCheckerLogic} to a {@link QueryListener}. Queries
+ * are debounced by <code>debounceMillis</code>, so that only the last query typed within the window
+ * is delivered, and a query equal to the one waiting for delivery or already delivered to the same
+ * listener is dropped. Every delivered query gets a new token, so results arriving for an older
+ * token can be recognized as stale.
+ */
+class QueryDispatcher {
+
+    /**
+     * Handler on the main thread used to delay the delivery of queries.
+     */
+    private final Handler handler;
+
+    /**
+     * Delivers <code>pendingQuery</code> to <code>pendingListener</code>.
+     */
+    private final Runnable dispatchRunnable;
+
+    /**
+     * Time to wait for the user to stop typing before delivering a query. No waiting by default.
+     */
+    @SuppressWarnings("WeakerAccess")
+    protected long debounceMillis;
+
+    /**
+     * Notified when a delivered query is no longer current.
+     */
+    private QueryCancelListener cancelListener;
+
+    /**
+     * Token of the last delivered query. Incremented whenever a query is delivered or cancelled.
+     */
+    private long queryToken;
+
+    /**
+     * The delivered query that is still current, or null.
+     */
+    private String currentQuery;
+
+    /**
+     * The listener <code>currentQuery</code> was delivered to.
+     */
+    private QueryListener currentListener;
+
+    /**
+     * The query waiting for the debounce window to pass, or null.
+     */
+    private String pendingQuery;
+
+    /**
+     * The listener <code>pendingQuery</code> will be delivered to.
+     */
+    private QueryListener pendingListener;
+
+    /**
+     * Counts the delivered queries.
+     */
+    private MentionsMetrics metrics = MentionsMetrics.NONE;
+
+    QueryDispatcher(final Handler handler) {
+        this.handler = handler;
+        this.dispatchRunnable = new Runnable() {
+            @Override
+            public void run() {
+                dispatchPendingQuery();
+            }
+        };
+    }
+
+    /**
+     * Set the time to wait for the user to stop typing before delivering a query.
+     *
+     * @param debounceMillis    long    The debounce window in milliseconds, 0 to deliver queries
+     *                                  right away.
+     */
+    void setDebounceMillis(final long debounceMillis) {
+        if (debounceMillis < 0) {
+            throw new IllegalArgumentException("Debounce time must not be negative.");
+        }
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * @param cancelListener    QueryCancelListener     Notified when a delivered query is no longer
+     *                                                  current.
+     */
+    void setCancelListener(final QueryCancelListener cancelListener) {
+        this.cancelListener = cancelListener;
+    }
+
+    /**
+     * @param metrics   MentionsMetrics     Counts the delivered queries.
+     */
+    void setMetrics(final MentionsMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Schedules <code>query</code> for delivery to <code>listener</code>, replacing any query
+     * still waiting for the debounce window to pass. A query equal to the current one is dropped, so
+     * clicking around inside of a query does not restart its search. Once the query was cancelled,
+     * e.g. by clicking away from it, it is delivered again.
+     *
+     * @param query     String          A valid query.
+     * @param listener  QueryListener   The listener to deliver the query to.
+     */
+    void dispatch(final String query, final QueryListener listener) {
+        if (query.equals(pendingQuery) && listener == pendingListener) {
+            return;
+        }
+
+        handler.removeCallbacks(dispatchRunnable);
+        pendingQuery = null;
+        pendingListener = null;
+        if (query.equals(currentQuery) && listener == currentListener) {
+            // The user typed or clicked back to the query that was already delivered.
+            return;
+        }
+
+        cancelCurrentQuery();
+        pendingQuery = query;
+        pendingListener = listener;
+        if (debounceMillis > 0) {
+            handler.postDelayed(dispatchRunnable, debounceMillis);
+        } else {
+            dispatchPendingQuery();
+        }
+    }
+
+    /**
+     * Drops the query waiting to be delivered and cancels the current one.
+     */
+    void cancel() {
+        handler.removeCallbacks(dispatchRunnable);
+        pendingQuery = null;
+        pendingListener = null;
+        cancelCurrentQuery();
+    }
+
+    /**
+     * @return long     The token of the last delivered query.
+     */
+    long getQueryToken() {
+        return queryToken;
+    }
+
+    /**
+     * @param queryToken    long    A token returned by {@link #getQueryToken()}.
+     * @return true if the query delivered with <code>queryToken</code> is still current.
+     */
+    boolean isCurrent(final long queryToken) {
+        return currentQuery != null && this.queryToken == queryToken;
+    }
+
+    /**
+     * @return String   The delivered query that is still current, or null.
+     */
+    String getCurrentQuery() {
+        return currentQuery;
+    }
+
+    private void dispatchPendingQuery() {
+        final String query = pendingQuery;
+        final QueryListener listener = pendingListener;
+        pendingQuery = null;
+        pendingListener = null;
+        if (query != null) {
+            queryToken++;
+            currentQuery = query;
+            currentListener = listener;
+            metrics.onQueryDispatched();
+            listener.onQueryReceived(query);
+        }
+    }
+
+    private void cancelCurrentQuery() {
+        if (currentQuery != null) {
+            final String cancelledQuery = currentQuery;
+            currentQuery = null;
+            currentListener = null;
+            queryToken++;
+            if (cancelListener != null) {
+                cancelListener.onQueryCancelled(cancelledQuery);
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.percolate.mentions;
+
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs the searches of a {@link SuggestionProvider} on an {@link Executor} and delivers the
+ * results on the main thread. At most one search runs at a time for a {@link Mentions} instance,
+ * whatever the number of triggers with a provider, since all its dispatchers share one
+ * {@link Searches}: a query received while a search is running waits for it, replacing any other
+ * waiting query, also one of another trigger.
+ * Results are only delivered if their query is still current in the {@link QueryDispatcher}.
+ * When the provider is a {@link CachingProvider}, e.g. a {@link SuggestionCache}, cached results
+ * are delivered right away.
+ *
+ * @param <T>   The type of {@link Mentionable} searched for.
+ */
+class SuggestionDispatcher<T extends Mentionable> implements QueryListener {
+
+    /**
+     * The search in flight and the one waiting for it, shared by the dispatchers of a
+     * {@link Mentions} instance. Main thread only.
+     */
+    static class Searches {
+
+        /**
+         * True while a search is running.
+         */
+        private boolean searching;
+
+        /**
+         * The dispatcher to search <code>pendingQuery</code> with, or null.
+         */
+        private SuggestionDispatcher<?> pendingDispatcher;
+
+        /**
+         * The query waiting for the running search to finish.
+         */
+        private String pendingQuery;
+
+        /**
+         * The token of <code>pendingQuery</code>.
+         */
+        private long pendingQueryToken;
+
+        private void clearPending() {
+            pendingDispatcher = null;
+            pendingQuery = null;
+        }
+    }
+
+    /**
+     * Searches for the suggestions.
+     */
+    private final SuggestionProvider<T> provider;
+
+    /**
+     * The provider, if it can answer queries from a cache, or null.
+     */
+    private final CachingProvider<T> cache;
+
+    /**
+     * The maximum number of suggestions to search for.
+     */
+    private final int limit;
+
+    /**
+     * Receives the suggestions on the main thread.
+     */
+    private final SuggestionsResultListener<T> resultListener;
+
+    /**
+     * Tells whether the query of a search is still current.
+     */
+    private final QueryDispatcher queryDispatcher;
+
+    /**
+     * Handler on the main thread the results are posted to.
+     */
+    private final Handler handler;
+
+    /**
+     * Runs the searches.
+     */
+    private Executor executor;
+
+    /**
+     * The searches of all the dispatchers of the {@link Mentions} instance.
+     */
+    private final Searches searches;
+
+    SuggestionDispatcher(final SuggestionProvider<T> provider, final int limit,
+                         final SuggestionsResultListener<T> resultListener,
+                         final QueryDispatcher queryDispatcher, final Handler handler,
+                         final Executor executor, final Searches searches) {
+        this.provider = provider;
+        this.cache = provider instanceof CachingProvider ? (CachingProvider<T>) provider : null;
+        this.limit = limit;
+        this.resultListener = resultListener;
+        this.queryDispatcher = queryDispatcher;
+        this.handler = handler;
+        this.executor = executor;
+        this.searches = searches;
+    }
+
+    /**
+     * @param executor  Executor    The executor to run the searches on.
+     */
+    void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void onQueryReceived(final String query) {
+        if (cache != null) {
+            final List<T> cached = cache.getCached(query, limit);
+            if (cached != null) {
+                // Anything still waiting is older than this query.
+                searches.clearPending();
+                resultListener.onSuggestionsResult(query, cached);
+                return;
+            }
+        }
+
+        final long queryToken = queryDispatcher.getQueryToken();
+        if (searches.searching) {
+            searches.pendingDispatcher = this;
+            searches.pendingQuery = query;
+            searches.pendingQueryToken = queryToken;
+        } else {
+            search(query, queryToken);
+        }
+    }
+
+    /**
+     * Starts searching for <code>query</code> on the executor.
+     */
+    private void search(final String query, final long queryToken) {
+        searches.searching = true;
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    List<T> results = null;
+                    try {
+                        results = cache != null ? cache.searchProvider(query, limit)
+                                : provider.search(query, limit);
+                    } catch (RuntimeException ex) {
+                        Log.e("Mentions", "Search failed. [" + query + "]", ex);
+                    }
+                    final List<T> suggestions = results;
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onSearchFinished(query, queryToken, suggestions);
+                        }
+                    });
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // E.g. a shared executor that was shut down, the next query tries again.
+            searches.searching = false;
+            Log.e("Mentions", "Search rejected. [" + query + "]", ex);
+        }
+    }
+
+    /**
+     * Delivers the results if their query is still current and starts the search waiting for
+     * this one, if any. Runs on the main thread.
+     */
+    private void onSearchFinished(final String query, final long queryToken,
+                                  final List<T> suggestions) {
+        searches.searching = false;
+        if (suggestions != null && queryDispatcher.isCurrent(queryToken)) {
+            resultListener.onSuggestionsResult(query, suggestions);
+        }
+
+        if (searches.pendingDispatcher != null) {
+            final SuggestionDispatcher<?> nextDispatcher = searches.pendingDispatcher;
+            final String nextQuery = searches.pendingQuery;
+            final long nextQueryToken = searches.pendingQueryToken;
+            searches.clearPending();
+            if (queryDispatcher.isCurrent(nextQueryToken)) {
+                nextDispatcher.search(nextQuery, nextQueryToken);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.percolate.mentions
+
+import android.text.InputFilter
+import android.widget.EditText
+import com.percolate.mentions.MentionTestUtils.createMockMention
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+
+/**
+ * Tests deleting and selecting mentions as a whole with [Mentions.Builder.atomicMentions].
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(constants = BuildConfig::class, sdk = intArrayOf(23))
+class MentionAtomicLogicTest {
+
+    private val TEXT = "Hi Brent Watson and Doug Tabuchi"
+
+    private lateinit var editText: EditText
+
+    private lateinit var mentions: Mentions
+
+    @Before
+    fun setUp() {
+        editText = EditText(RuntimeEnvironment.application)
+        editText.filters = arrayOf<InputFilter>(InputFilter.LengthFilter(100))
+        mentions = Mentions.Builder(RuntimeEnvironment.application, editText)
+                .suggestionsListener(SuggestionsListener { })
+                .atomicMentions()
+                .build()
+        mentions.setText(TEXT, listOf(createMockMention(3, "Brent Watson"),
+                createMockMention(20, "Doug Tabuchi")))
+    }
+
+    /**
+     * A backspace after a mention deletes all of it, and the other filters are kept.
+     */
+    @Test
+    fun testBackspace() {
+        editText.text.delete(14, 15)
+        assertEquals("Hi  and Doug Tabuchi", editText.text.toString())
+        assertEquals(listOf("Doug Tabuchi"), mentions.insertedMentions.map { it.mentionName })
+        assertEquals(8, mentions.insertedMentions[0].mentionOffset)
+        assertEquals(2, editText.filters.size)
+    }
+
+    /**
+     * Deleting from the middle of a mention to the middle of the next one deletes both of them.
+     */
+    @Test
+    fun testDeleteAcrossMentions() {
+        editText.text.delete(6, 23)
+        assertEquals("Hi ", editText.text.toString())
+        assertTrue(mentions.insertedMentions.isEmpty())
+
+        mentions.setText(TEXT, listOf(createMockMention(3, "Brent Watson")))
+        editText.text.replace(5, 7, "x")
+        assertEquals("Hi x and Doug Tabuchi", editText.text.toString())
+    }
+
+    /**
+     * The cursor skips over a mention in the direction it moves, and selections are extended to
+     * the mentions they cut.
+     */
+    @Test
+    fun testSelection() {
+        editText.setSelection(0)
+        editText.setSelection(5)
+        assertEquals(15, editText.selectionStart)
+        editText.setSelection(10)
+        assertEquals(3, editText.selectionStart)
+        assertEquals(3, editText.selectionEnd)
+
+        editText.setSelection(5, 22)
+        assertEquals(3, editText.selectionStart)
+        assertEquals(32, editText.selectionEnd)
+
+        //Edges of mentions are fine.
+        editText.setSelection(15)
+        assertEquals(15, editText.selectionStart)
+    }
+
+    /**
+     * Text without mentions is edited as usual, also after the EditText's text was replaced.
+     */
+    @Test
+    fun testPlainText() {
+        editText.setText("Hello there")
+        editText.text.delete(4, 5)
+        assertEquals("Hell there", editText.text.toString())
+        editText.setSelection(2)
+        assertEquals(2, editText.selectionStart)
+    }
+}
@@ -1,6 +1,11 @@
 package com.percolate.mentions
 
+import android.text.SpannableStringBuilder
+import android.text.Spanned
+import android.text.style.ForegroundColorSpan
 import android.widget.EditText
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
 import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Test
@@ -8,6 +13,7 @@ import org.junit.runner.RunWith
 import org.robolectric.RobolectricTestRunner
 import org.robolectric.RuntimeEnvironment
 import org.robolectric.annotation.Config
+import java.lang.management.ManagementFactory
 
 /**
  * Test whether a search is valid or not by the rules defined in [MentionCheckerLogic].
@@ -126,4 +132,76 @@ class MentionCheckerLogicTest {
         assertTrue("Search beginning with alpha numeric character failed.", !query.isEmpty())
     }
 
+    /**
+     * Tests whether the cursor placed on a word starting with '@' is detected, including the
+     * first word of the text.
+     */
+    @Test
+    fun checkCurrentWordStartsWithAtSign() {
+        MentionTestUtils.setTextAndSelection(editText, "@Brent")
+        assertTrue("First word starting with @ was not detected.",
+                mentionCheckerLogic.currentWordStartsWithTrigger())
+
+        MentionTestUtils.setTextAndSelection(editText, "Hello Brent")
+        assertFalse("Word without @ was detected.",
+                mentionCheckerLogic.currentWordStartsWithTrigger())
+    }
+
+    /**
+     * Checking the text of the [EditText], with mention spans on it, must not allocate when there
+     * is no query, and must only copy the chars of a query, not the spans on it.
+     */
+    @Test
+    fun checkMentionCheckDoesNotCopySpans() {
+        val text = SpannableStringBuilder()
+        var mentions = 0
+        while (text.length < 10000) {
+            val start = text.length + "Hello ".length
+            text.append("Hello Brent Watson, this is a long draft without a query. ")
+            text.setSpan(MentionSpanReconciler.MentionSpan(0), start, start + "Brent Watson".length,
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE)
+            mentions++
+        }
+        editText.setText(text)
+        editText.setSelection(editText.length())
+        assertEquals(mentions, editText.text.getSpans(0, editText.length(),
+                MentionSpanReconciler.MentionSpan::class.java).size)
+
+        assertEquals("Misses allocated.", 0, allocatedPerCheck(10000) { it.isEmpty() })
+
+        // A span over the query, like the composing span of a keyboard, is not copied with it.
+        editText.text.append("@Bre")
+        editText.text.setSpan(ForegroundColorSpan(0), 0, editText.length(),
+                Spanned.SPAN_EXCLUSIVE_EXCLUSIVE)
+        editText.setSelection(editText.length())
+        val perHit = allocatedPerCheck(1000) { it == "Bre" }
+        assertTrue("A query allocated $perHit bytes.", perHit < 100)
+    }
+
+    /**
+     * Runs the mention check <code>count</code> times after a warm up, checking each result.
+     *
+     * @return Long     The bytes allocated per check.
+     */
+    private fun allocatedPerCheck(count: Int, check: (String) -> Boolean): Long {
+        val threadMXBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        val threadId = Thread.currentThread().id
+
+        // Warm up so class loading does not count.
+        for (i in 0 until 1000) {
+            mentionCheckerLogic.doMentionCheck()
+        }
+
+        var passed = 0
+        val allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId)
+        for (i in 0 until count) {
+            if (check(mentionCheckerLogic.doMentionCheck())) {
+                passed++
+            }
+        }
+        val allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore
+        assertEquals(count, passed)
+        return allocated / count
+    }
+
 }
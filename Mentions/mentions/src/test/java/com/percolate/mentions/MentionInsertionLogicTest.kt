@@ -1,5 +1,6 @@
 package com.percolate.mentions
 
+import android.text.Spanned
 import android.text.style.ForegroundColorSpan
 import android.widget.EditText
 import com.percolate.mentions.MentionTestUtils.createMockMention
@@ -118,4 +119,34 @@ class MentionInsertionLogicTest {
         assertTrue("The mention \"Doug Tabuchi\" was not highlighted.", highlightSpans2.size == 1)
     }
 
+    /**
+     * "Hello Brent Watson" -> "Oh Hello Brent Watson"
+     *
+     * Editing before a mention should keep its highlight span instead of re-creating it, and a
+     * [ForegroundColorSpan] set by someone else should not be removed.
+     */
+    @Test
+    fun testHighlightSpansAreReconciled() {
+        MentionTestUtils.setTextAndSelection(editText, "Hello Brent Watson")
+        val foreignSpan = ForegroundColorSpan(0)
+        editText.text.setSpan(foreignSpan, 0, "Hello".length, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE)
+        mentionInsertionLogic.addMentions(listOf(createMockMention("Hello ".length,
+                "Brent Watson")))
+
+        val spansBefore = editText.text.getSpans(0, editText.text.length,
+                MentionSpanReconciler.MentionSpan::class.java)
+        assertTrue("Did not highlight mention", spansBefore.size == 1)
+
+        editText.text.insert(0, "Oh ")
+        mentionInsertionLogic.updateInternalMentionsArray(0, 0, "Oh ".length)
+
+        val spansAfter = editText.text.getSpans(0, editText.text.length,
+                MentionSpanReconciler.MentionSpan::class.java)
+        assertTrue("Highlight span was re-created.", spansAfter.size == 1
+                && spansAfter[0] === spansBefore[0])
+        assertEquals("Oh Hello ".length, editText.text.getSpanStart(spansAfter[0]))
+        assertEquals("Oh Hello ".length, mentionInsertionLogic.mentions[0].mentionOffset)
+        assertTrue("Foreign span was removed.", editText.text.getSpanStart(foreignSpan) != -1)
+    }
+
 }
@@ -0,0 +1,150 @@
+package com.percolate.mentions
+
+import android.graphics.Color
+import android.text.Spanned
+import android.text.style.ForegroundColorSpan
+import android.widget.TextView
+import com.percolate.mentions.MentionTestUtils.createMockMention
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+import java.util.*
+import java.util.concurrent.Executor
+
+/**
+ * Tests rendering read-only texts with a [MentionRenderer].
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(constants = BuildConfig::class, sdk = intArrayOf(23))
+class MentionRendererTest {
+
+    private val TEXT = "Hi Brent Watson and Doug Tabuchi"
+
+    private val MENTIONS = listOf(createMockMention(3, "Brent Watson"),
+            createMockMention(20, "Doug Tabuchi"))
+
+    /**
+     * Executor that only runs the prefetched renderings when asked to.
+     */
+    private val renderings = ArrayDeque<Runnable>()
+
+    private lateinit var renderer: MentionRenderer
+
+    @Before
+    fun setUp() {
+        renderer = MentionRenderer(Color.RED, 2, Executor { renderings.add(it) })
+    }
+
+    /**
+     * Every mention is highlighted with the renderer's color.
+     */
+    @Test
+    fun testRender() {
+        val rendered = renderer.render(1L, 0, TEXT, MENTIONS)
+
+        assertEquals(TEXT, rendered.toString())
+        val spans = rendered.getSpans(0, rendered.length, ForegroundColorSpan::class.java)
+        assertEquals(2, spans.size)
+        spans.sortBy { rendered.getSpanStart(it) }
+        assertEquals(3, rendered.getSpanStart(spans[0]))
+        assertEquals(15, rendered.getSpanEnd(spans[0]))
+        assertEquals(20, rendered.getSpanStart(spans[1]))
+        assertEquals(32, rendered.getSpanEnd(spans[1]))
+        assertEquals(Color.RED, spans[0].foregroundColor)
+    }
+
+    /**
+     * Mentions outside of the text are not highlighted.
+     */
+    @Test
+    fun testMentionOutsideOfText() {
+        val rendered = renderer.render(1L, 0, "Hi Brent Watson",
+                listOf(createMockMention(3, "Brent Watson"), createMockMention(20, "Doug Tabuchi")))
+        assertEquals(1, rendered.getSpans(0, rendered.length, ForegroundColorSpan::class.java).size)
+    }
+
+    /**
+     * A text is only rendered again when its version changed, or once it was evicted.
+     */
+    @Test
+    fun testCache() {
+        val rendered = renderer.render(1L, 0, TEXT, MENTIONS)
+        assertSame(rendered, renderer.render(1L, 0, TEXT, MENTIONS))
+
+        val edited = renderer.render(1L, 1, "Hi Brent Watson", MENTIONS.subList(0, 1))
+        assertNotSame(rendered, edited)
+        assertNull(renderer.getCached(1L, 0))
+        assertSame(edited, renderer.getCached(1L, 1))
+
+        renderer.render(2L, 0, TEXT, MENTIONS)
+        renderer.render(3L, 0, TEXT, MENTIONS)
+        assertNull(renderer.getCached(1L, 1))
+    }
+
+    /**
+     * Prefetched texts are rendered on the executor, once.
+     */
+    @Test
+    fun testPrefetch() {
+        renderer.prefetch(1L, 0, TEXT, MENTIONS)
+        renderer.prefetch(1L, 0, TEXT, MENTIONS)
+        assertEquals(1, renderings.size)
+        assertNull(renderer.getCached(1L, 0))
+
+        renderings.poll().run()
+        val rendered = renderer.getCached(1L, 0)
+        assertEquals(2, rendered.getSpans(0, rendered.length, ForegroundColorSpan::class.java).size)
+        assertSame(rendered, renderer.render(1L, 0, TEXT, MENTIONS))
+
+        renderer.prefetch(1L, 0, TEXT, MENTIONS)
+        assertEquals(0, renderings.size)
+    }
+
+    /**
+     * A prefetched rendering finishing late does not replace a higher version.
+     */
+    @Test
+    fun testPrefetchOfOlderVersion() {
+        renderer.prefetch(1L, 0, TEXT, MENTIONS)
+        val edited = renderer.render(1L, 1, "Hi Brent Watson", MENTIONS.subList(0, 1))
+
+        renderings.poll().run()
+        assertSame(edited, renderer.getCached(1L, 1))
+        assertNull(renderer.getCached(1L, 0))
+    }
+
+    /**
+     * Below API 28, texts prefetched with the metrics of a view are laid out and bound unchanged.
+     * Views that were not measured yet are skipped.
+     */
+    @Test
+    fun testTextMetrics() {
+        val textView = TextView(RuntimeEnvironment.application)
+        renderer.setTextMetrics(textView)
+        renderer.prefetch(1L, 0, TEXT, MENTIONS)
+        renderings.poll().run()
+        val rendered = renderer.getCached(1L, 0)
+
+        textView.layout(0, 0, 500, 100)
+        renderer.setTextMetrics(textView)
+        renderer.prefetch(2L, 0, TEXT, MENTIONS)
+        renderings.poll().run()
+        val measured = renderer.getCached(2L, 0)
+        assertTrue(MentionRenderer.LayoutMetrics(textView, 500).layout(measured).lineCount > 0)
+        assertEquals(rendered.toString(), measured.toString())
+        assertEquals(2, measured.getSpans(0, measured.length, ForegroundColorSpan::class.java).size)
+
+        renderer.bind(textView, 2L, 0, TEXT, MENTIONS)
+        val bound = textView.text as Spanned
+        assertEquals(TEXT, bound.toString())
+        assertEquals(2, bound.getSpans(0, bound.length, ForegroundColorSpan::class.java).size)
+    }
+}
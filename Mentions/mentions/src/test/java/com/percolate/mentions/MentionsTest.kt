@@ -1,6 +1,16 @@
 package com.percolate.mentions
 
 import android.annotation.SuppressLint
+import android.content.ClipData
+import android.content.ClipboardManager
+import android.content.Context
+import android.os.Parcel
+import android.support.v4.content.ContextCompat
+import android.text.Editable
+import android.text.SpanWatcher
+import android.text.Spannable
+import android.text.Spanned
+import android.text.TextWatcher
 import android.widget.EditText
 import org.junit.Assert.*
 import org.junit.Test
@@ -10,7 +20,9 @@ import org.mockito.Mockito.*
 import org.robolectric.RobolectricTestRunner
 import org.robolectric.RuntimeEnvironment
 import org.robolectric.annotation.Config
+import java.io.File
 import java.util.*
+import java.util.concurrent.Executor
 
 @RunWith(RobolectricTestRunner::class)
 @Config(constants = BuildConfig::class, sdk = intArrayOf(23))
@@ -81,4 +93,365 @@ class MentionsTest {
         verify(mentionsLib.suggestionsListener).displaySuggestions(anyBoolean())
 
     }
+
+    /**
+     * Clicking away from a query cancels it, so clicking back into it delivers it again.
+     */
+    @Test
+    fun testClickBackIntoQuery() {
+        val editText = EditText(RuntimeEnvironment.application)
+        val queryListener = Mockito.mock(QueryListener::class.java)
+        val mentionsLib = Mentions.Builder(RuntimeEnvironment.application, editText)
+                .queryListener(queryListener)
+                .suggestionsListener(SuggestionsListener { })
+                .build()
+        MentionTestUtils.setTextAndSelection(editText, "Hi @Br")
+        editText.performClick()
+        assertTrue(mentionsLib.isQueryCurrent(mentionsLib.queryToken))
+
+        editText.setSelection(1)
+        editText.performClick()
+        assertFalse(mentionsLib.isQueryCurrent(mentionsLib.queryToken))
+
+        reset(queryListener)
+        editText.setSelection(editText.length())
+        editText.performClick()
+        verify(queryListener).onQueryReceived("Br")
+        assertTrue(mentionsLib.isQueryCurrent(mentionsLib.queryToken))
+    }
+
+    @Test
+    fun testTriggers() {
+        val editText = EditText(RuntimeEnvironment.application)
+        val queryListener = Mockito.mock(QueryListener::class.java)
+        val channelListener = Mockito.mock(QueryListener::class.java)
+        val suggestionsListener = Mockito.mock(SuggestionsListener::class.java)
+        val mentionsLib = Mentions.Builder(RuntimeEnvironment.application, editText)
+                .queryListener(queryListener)
+                .trigger('#', android.R.color.holo_blue_dark, channelListener)
+                .suggestionsListener(suggestionsListener)
+                .build()
+
+        //Queries are routed to the listener of their trigger.
+        MentionTestUtils.setTextAndSelection(editText, "Hi #gen")
+        mentionsLib.queryReceived(mentionsLib.mentionCheckerLogic.doMentionCheck())
+        verify(channelListener).onQueryReceived("gen")
+        assertEquals('#', mentionsLib.queryTrigger)
+        MentionTestUtils.setTextAndSelection(editText, "Hi @gen")
+        mentionsLib.queryReceived(mentionsLib.mentionCheckerLogic.doMentionCheck())
+        verify(queryListener).onQueryReceived("gen")
+        assertEquals('@', mentionsLib.queryTrigger)
+
+        //Mentions replace their trigger and are highlighted in its color.
+        MentionTestUtils.setTextAndSelection(editText, "Hi #gen")
+        val channel = MentionTestUtils.createMockMention(0, "general")
+        mentionsLib.insertMention(channel)
+        assertEquals("Hi general ", editText.text.toString())
+        assertEquals('#', mentionsLib.getMentionTrigger(channel))
+        val spans = MentionTestUtils.getForegroundColorSpans(editText, 3, "general".length)
+        assertEquals(1, spans.size)
+        assertEquals(ContextCompat.getColor(RuntimeEnvironment.application,
+                android.R.color.holo_blue_dark), spans[0].foregroundColor)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun testTriggerAlreadyUsed() {
+        Mentions.Builder(RuntimeEnvironment.application, EditText(RuntimeEnvironment.application))
+                .trigger('@', android.R.color.holo_blue_dark, QueryListener { })
+    }
+
+    @Test
+    fun testBatch() {
+        assertEquals("Span operations without a batch.", 3, countSpanOperations(false))
+        assertEquals("Span operations with a batch.", 1, countSpanOperations(true))
+    }
+
+    @Test
+    fun testSetText() {
+        val editText = EditText(RuntimeEnvironment.application)
+        val mentionsLib = Mentions.Builder(RuntimeEnvironment.application, editText)
+                .suggestionsListener(SuggestionsListener { })
+                .build()
+        mentionsLib.setText("Hi Brent Watson", listOf(MentionTestUtils.createMockMention(3,
+                "Brent Watson")))
+        mentionsLib.setText("Hi Doug Tabuchi", listOf(MentionTestUtils.createMockMention(3,
+                "Doug Tabuchi")))
+
+        assertEquals(listOf("Doug Tabuchi"), mentionsLib.insertedMentions.map { it.mentionName })
+        assertEquals(1, editText.text.getSpans(0, editText.length(),
+                MentionSpanReconciler.MentionSpan::class.java).size)
+    }
+
+    @Test
+    fun testRestoreState() {
+        val editText = EditText(RuntimeEnvironment.application)
+        val mentionsLib = Mentions.Builder(RuntimeEnvironment.application, editText)
+                .trigger('#', android.R.color.holo_blue_dark, QueryListener { })
+                .suggestionsListener(SuggestionsListener { })
+                .build()
+        MentionTestUtils.setTextAndSelection(editText, "Hi #gen")
+        mentionsLib.insertMention(MentionTestUtils.createMockMention(0, "general"))
+        editText.setSelection(2)
+
+        //The state survives a parcel, mentions keep their trigger and the cursor is restored.
+        val parcel = Parcel.obtain()
+        MentionsStateParcel(mentionsLib.state).writeToParcel(parcel, 0)
+        parcel.setDataPosition(0)
+        val state = MentionsStateParcel.CREATOR.createFromParcel(parcel).state
+        parcel.recycle()
+        editText.setText("")
+
+        val restored = mentionsLib.restoreState(state,
+                MentionDecoder.Factory<Mention> { Mention() })
+        assertEquals("Hi general ", editText.text.toString())
+        assertEquals(2, editText.selectionStart)
+        assertEquals(listOf("general"), restored.map { it.mentionName })
+        assertEquals('#', mentionsLib.getMentionTrigger(restored[0]))
+
+        //Mentions whose name is not in the text are dropped.
+        val edited = MentionsState("Hi gen", 0, listOf(MentionTestUtils.createMockMention(3,
+                "general")))
+        assertTrue(mentionsLib.restoreState(edited, MentionDecoder.Factory<Mention> { Mention() })
+                .isEmpty())
+        assertTrue(mentionsLib.insertedMentions.isEmpty())
+    }
+
+    @Test
+    fun testJournal() {
+        val file = File.createTempFile("draft", null)
+        file.deleteOnExit()
+        val editText = EditText(RuntimeEnvironment.application)
+        val mentionsLib = Mentions.Builder(RuntimeEnvironment.application, editText)
+                .suggestionsListener(SuggestionsListener { })
+                .journal(MentionsJournal(file, 2))
+                .journalExecutor(Executor { it.run() })
+                .build()
+
+        //The mentions of setText, typed text and inserted mentions are all journaled.
+        mentionsLib.setText("Hi Brent Watson", listOf(MentionTestUtils.createMockMention(3,
+                "Brent Watson")))
+        editText.text.append(" cc @Dou")
+        editText.setSelection(editText.length())
+        mentionsLib.insertMention(MentionTestUtils.createMockMention(0, "Doug Tabuchi"))
+        editText.text.delete(0, 3)
+
+        val draft = MentionsJournal(file, 2).read()
+        val restoredText = EditText(RuntimeEnvironment.application)
+        val restored = Mentions.Builder(RuntimeEnvironment.application, restoredText)
+                .suggestionsListener(SuggestionsListener { })
+                .build()
+                .restoreState(draft, MentionDecoder.Factory<Mention> { Mention() })
+        assertEquals("Brent Watson cc Doug Tabuchi ", restoredText.text.toString())
+        assertEquals(listOf("Brent Watson", "Doug Tabuchi"), restored.map { it.mentionName })
+        assertEquals(listOf(0, 16), restored.map { it.mentionOffset })
+
+        //Deleting the journal waits for the writes before it.
+        mentionsLib.deleteJournal()
+        assertFalse(file.exists())
+    }
+
+    @Test
+    fun testJournalBackOff() {
+        val journal = spy(MentionsJournal(File("/does/not/exist/draft"), 2))
+        val editText = EditText(RuntimeEnvironment.application)
+        Mentions.Builder(RuntimeEnvironment.application, editText)
+                .suggestionsListener(SuggestionsListener { })
+                .journal(journal)
+                .journalExecutor(Executor { it.run() })
+                .build()
+
+        //A failed compaction is not tried again on every keystroke.
+        for (c in "Hi there") {
+            editText.text.append(c)
+        }
+        verify(journal, times(1)).compact(Mockito.any(MentionsState::class.java))
+    }
+
+    @Test
+    fun testMetrics() {
+        val editText = EditText(RuntimeEnvironment.application)
+        val recorder = MentionsMetricsRecorder()
+        val mentionsLib = Mentions.Builder(RuntimeEnvironment.application, editText)
+                .queryListener(QueryListener { })
+                .suggestionsListener(SuggestionsListener { })
+                .metrics(recorder)
+                .build()
+        MentionTestUtils.setTextAndSelection(editText, "Hi @Bre")
+        mentionsLib.insertMention(MentionTestUtils.createMockMention(0, "Brent Watson"))
+
+        assertTrue(recorder.getLatencies(MentionsMetrics.OPERATION_MENTION_CHECK).totalCount > 0)
+        assertTrue(recorder.getLatencies(MentionsMetrics.OPERATION_UPDATE_MENTIONS).totalCount > 0)
+        assertEquals(1, recorder.getLatencies(MentionsMetrics.OPERATION_HIGHLIGHT).totalCount)
+        assertEquals(1, recorder.lastMentionCount)
+        assertEquals(1, recorder.spanOperations)
+        assertTrue(recorder.queriesDispatched > 0)
+
+        //Editing inside the mention removes it and its span.
+        editText.text.delete(3, 4)
+        assertEquals(0, recorder.lastMentionCount)
+        assertEquals(2, recorder.spanOperations)
+        mentionsLib.restoreState(MentionsState("Hi", 0, listOf(MentionTestUtils.createMockMention(3,
+                "Brent Watson"))), MentionDecoder.Factory<Mention> { Mention() })
+        assertEquals(1, recorder.lostMentions)
+    }
+
+    @Test
+    fun testOffsetConverter() {
+        val editText = EditText(RuntimeEnvironment.application)
+        val mentionsLib = Mentions.Builder(RuntimeEnvironment.application, editText)
+                .suggestionsListener(SuggestionsListener { })
+                .build()
+        mentionsLib.setText("👍 Brent Watson", listOf(MentionTestUtils.createMockMention(3,
+                "Brent Watson")))
+        val converter = mentionsLib.offsetConverter
+        assertEquals(2, converter.convert(3, OffsetConverter.UTF_16, OffsetConverter.CODE_POINTS))
+
+        //The converter follows the edits, and the new text after setText.
+        editText.text.insert(0, "👍")
+        assertEquals(3, mentionsLib.offsetConverter.fromUtf16(5, OffsetConverter.CODE_POINTS))
+        editText.setText("Hi")
+        assertEquals(2, mentionsLib.offsetConverter.length(OffsetConverter.CODE_POINTS))
+    }
+
+    @Test
+    fun testSnapshot() {
+        val editText = EditText(RuntimeEnvironment.application)
+        val mentionsLib = Mentions.Builder(RuntimeEnvironment.application, editText)
+                .suggestionsListener(SuggestionsListener { })
+                .publishSnapshots()
+                .build()
+        val empty = mentionsLib.snapshot
+        assertEquals(0, empty.version)
+
+        MentionTestUtils.setTextAndSelection(editText, "Hi @Bre")
+        val mention = MentionTestUtils.createMockMention(0, "Brent Watson")
+        mentionsLib.insertMention(mention)
+        val inserted = mentionsLib.snapshot
+        assertTrue(inserted.version > empty.version)
+        assertEquals("Hi Brent Watson ", inserted.text)
+        assertEquals(1, inserted.mentionCount)
+        assertEquals(3, inserted.getMentionOffset(0))
+
+        //Snapshots are not changed by later edits, and other threads read the latest one.
+        editText.text.insert(0, "Oh ")
+        assertEquals(3, inserted.getMentionOffset(0))
+        val edited = mentionsLib.snapshot
+        assertEquals(6, edited.getMentionOffset(0))
+        assertEquals("Snapshots do not write the offsets.", 3, mention.mentionOffset)
+        assertTrue(edited.version > inserted.version)
+        var read: MentionsState? = null
+        val reader = Thread { read = mentionsLib.snapshot }
+        reader.start()
+        reader.join()
+        assertSame(edited, read)
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun testSnapshotNotPublished() {
+        val editText = EditText(RuntimeEnvironment.application)
+        Mentions.Builder(RuntimeEnvironment.application, editText).build().snapshot
+    }
+
+    @Test
+    fun testPaste() {
+        val editText = EditText(RuntimeEnvironment.application)
+        val mentionsLib = Mentions.Builder(RuntimeEnvironment.application, editText)
+                .suggestionsListener(SuggestionsListener { })
+                .mentionResolver(MentionResolver<Mentionable> { _, text, start, end ->
+                    if (end - start >= 5 && text.subSequence(start, start + 5) == "brent") {
+                        MentionTestUtils.createMockMention(0, "Brent Watson").apply {
+                            mentionLength = 5
+                        }
+                    } else {
+                        null
+                    }
+                })
+                .build()
+
+        MentionTestUtils.setTextAndSelection(editText, "Hi ")
+        val pasted = mentionsLib.paste("@brent and @brent, a@brent")
+        assertEquals("Hi Brent Watson and Brent Watson, a@brent", editText.text.toString())
+        assertEquals(2, pasted.size)
+        assertEquals(3, pasted[0].mentionOffset)
+        assertEquals("Hi Brent Watson and ".length, pasted[1].mentionOffset)
+        assertEquals(2, mentionsLib.insertedMentions.size)
+        assertEquals(editText.length(), editText.selectionStart)
+
+        //A paste from the clipboard is resolved too, with a single edit.
+        MentionTestUtils.setTextAndSelection(editText, "")
+        val clipboard = RuntimeEnvironment.application.getSystemService(
+                Context.CLIPBOARD_SERVICE) as ClipboardManager
+        clipboard.primaryClip = ClipData.newPlainText("comment", "cc @brent please")
+        var edits = 0
+        editText.addTextChangedListener(object : TextWatcher {
+            override fun beforeTextChanged(s: CharSequence, start: Int, count: Int, after: Int) {}
+            override fun onTextChanged(s: CharSequence, start: Int, before: Int, count: Int) {
+                edits++
+            }
+            override fun afterTextChanged(s: Editable) {}
+        })
+        assertTrue(mentionsLib.onTextContextMenuItem(android.R.id.paste))
+        assertEquals("cc Brent Watson please", editText.text.toString())
+        assertEquals(1, edits)
+        assertEquals(1, mentionsLib.insertedMentions.size)
+        assertEquals(3, mentionsLib.insertedMentions[0].mentionOffset)
+        assertFalse(mentionsLib.onTextContextMenuItem(android.R.id.copy))
+
+        //Text set or inserted in one block, like a commit of the keyboard, is not.
+        MentionTestUtils.setTextAndSelection(editText, "@brent and @brent")
+        editText.text.insert(0, "cc @brent ")
+        assertEquals("cc @brent @brent and @brent", editText.text.toString())
+        assertTrue(mentionsLib.insertedMentions.isEmpty())
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun testPasteWithoutResolver() {
+        val editText = EditText(RuntimeEnvironment.application)
+        Mentions.Builder(RuntimeEnvironment.application, editText).build().paste("@brent")
+    }
+
+    /**
+     * Inserts two mentions and deletes the second one again, counting the highlight spans added,
+     * moved and removed.
+     */
+    private fun countSpanOperations(batch: Boolean): Int {
+        val editText = EditText(RuntimeEnvironment.application)
+        val mentionsLib = Mentions.Builder(RuntimeEnvironment.application, editText)
+                .suggestionsListener(SuggestionsListener { })
+                .build()
+        var operations = 0
+        val counter = object : SpanWatcher {
+            override fun onSpanAdded(text: Spannable, what: Any, start: Int, end: Int) {
+                if (what is MentionSpanReconciler.MentionSpan) operations++
+            }
+
+            override fun onSpanRemoved(text: Spannable, what: Any, start: Int, end: Int) {
+                if (what is MentionSpanReconciler.MentionSpan) operations++
+            }
+
+            override fun onSpanChanged(text: Spannable, what: Any, ostart: Int, oend: Int,
+                                       nstart: Int, nend: Int) {
+                if (what is MentionSpanReconciler.MentionSpan) operations++
+            }
+        }
+        MentionTestUtils.setTextAndSelection(editText, "Hi @Bre")
+        editText.text.setSpan(counter, 0, editText.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE)
+
+        if (batch) {
+            mentionsLib.beginBatch()
+        }
+        mentionsLib.insertMention(MentionTestUtils.createMockMention(0, "Brent Watson"))
+        editText.text.append("and @Dou")
+        editText.setSelection(editText.length())
+        mentionsLib.insertMention(MentionTestUtils.createMockMention(0, "Doug Tabuchi"))
+        editText.text.delete("Hi Brent Watson and ".length, editText.length())
+        if (batch) {
+            assertEquals("Span operations before the commit.", 0, operations)
+            mentionsLib.commitBatch()
+        }
+
+        assertEquals("Hi Brent Watson and ", editText.text.toString())
+        assertEquals(listOf("Brent Watson"), mentionsLib.insertedMentions.map { it.mentionName })
+        return operations
+    }
 }
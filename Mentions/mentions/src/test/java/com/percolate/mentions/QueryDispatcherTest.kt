@@ -0,0 +1,133 @@
+package com.percolate.mentions
+
+import android.os.Handler
+import android.os.Looper
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mockito.*
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.util.concurrent.TimeUnit
+
+/**
+ * Tests debouncing, coalescing and cancelling of queries by [QueryDispatcher]. The main looper's
+ * clock is advanced by hand.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(constants = BuildConfig::class, sdk = intArrayOf(23))
+class QueryDispatcherTest {
+
+    /**
+     * [QueryDispatcher].
+     */
+    private lateinit var queryDispatcher: QueryDispatcher
+
+    /**
+     * Mock [QueryListener].
+     */
+    private lateinit var queryListener: QueryListener
+
+    /**
+     * Mock [QueryCancelListener].
+     */
+    private lateinit var cancelListener: QueryCancelListener
+
+    @Before
+    fun setUp() {
+        queryListener = mock(QueryListener::class.java)
+        cancelListener = mock(QueryCancelListener::class.java)
+        queryDispatcher = QueryDispatcher(Handler(Looper.getMainLooper()))
+        queryDispatcher.setCancelListener(cancelListener)
+    }
+
+    /**
+     * "@B" -> "@Br" -> "@Bre" typed within the debounce window only delivers "Bre".
+     */
+    @Test
+    fun testQueriesAreDebounced() {
+        queryDispatcher.setDebounceMillis(300)
+        queryDispatcher.dispatch("B", queryListener)
+        advanceBy(100)
+        queryDispatcher.dispatch("Br", queryListener)
+        advanceBy(100)
+        queryDispatcher.dispatch("Bre", queryListener)
+        advanceBy(299)
+        verifyZeroInteractions(queryListener)
+
+        advanceBy(1)
+        verify(queryListener).onQueryReceived("Bre")
+        verifyNoMoreInteractions(queryListener)
+    }
+
+    /**
+     * The same query is only delivered once while it waits for the debounce window.
+     */
+    @Test
+    fun testIdenticalQueriesAreCoalesced() {
+        queryDispatcher.setDebounceMillis(300)
+        queryDispatcher.dispatch("Brent", queryListener)
+        advanceBy(100)
+        queryDispatcher.dispatch("Brent", queryListener)
+        advanceBy(300)
+        verify(queryListener, times(1)).onQueryReceived("Brent")
+        verifyZeroInteractions(cancelListener)
+    }
+
+    /**
+     * A query equal to the one already delivered is dropped, unless it was cancelled in between,
+     * e.g. when the user clicked away from it and came back.
+     */
+    @Test
+    fun testDeliveredQueryIsDeliveredAgain() {
+        queryDispatcher.dispatch("Brent", queryListener)
+        val token = queryDispatcher.queryToken
+        queryDispatcher.dispatch("Brent", queryListener)
+        verify(queryListener, times(1)).onQueryReceived("Brent")
+        assertTrue(queryDispatcher.isCurrent(token))
+        verifyZeroInteractions(cancelListener)
+
+        queryDispatcher.cancel()
+        queryDispatcher.dispatch("Brent", queryListener)
+        verify(queryListener, times(2)).onQueryReceived("Brent")
+        assertFalse(queryDispatcher.isCurrent(token))
+        assertTrue(queryDispatcher.isCurrent(queryDispatcher.queryToken))
+    }
+
+    /**
+     * A new query makes the token of the previous one stale and cancels it.
+     */
+    @Test
+    fun testStaleQueriesAreCancelled() {
+        queryDispatcher.dispatch("Br", queryListener)
+        val token = queryDispatcher.queryToken
+        assertTrue(queryDispatcher.isCurrent(token))
+
+        queryDispatcher.dispatch("Bre", queryListener)
+        assertFalse("Previous query is still current.", queryDispatcher.isCurrent(token))
+        assertTrue(queryDispatcher.queryToken > token)
+        verify(cancelListener).onQueryCancelled("Br")
+
+        queryDispatcher.cancel()
+        assertFalse(queryDispatcher.isCurrent(queryDispatcher.queryToken))
+        verify(cancelListener).onQueryCancelled("Bre")
+    }
+
+    /**
+     * Cancelling drops a query waiting for the debounce window.
+     */
+    @Test
+    fun testCancelDropsPendingQuery() {
+        queryDispatcher.setDebounceMillis(300)
+        queryDispatcher.dispatch("Br", queryListener)
+        queryDispatcher.cancel()
+        advanceBy(300)
+        verifyZeroInteractions(queryListener)
+    }
+
+    private fun advanceBy(millis: Long) {
+        Robolectric.getForegroundThreadScheduler().advanceBy(millis, TimeUnit.MILLISECONDS)
+    }
+}
@@ -0,0 +1,164 @@
+package com.percolate.mentions
+
+import android.widget.EditText
+import com.percolate.mentions.MentionTestUtils.createMockMention
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+import java.util.*
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+
+/**
+ * Tests searching for suggestions in the background with a [SuggestionProvider].
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(constants = BuildConfig::class, sdk = intArrayOf(23))
+class SuggestionDispatcherTest {
+
+    /**
+     * Executor that only runs the submitted searches when asked to.
+     */
+    private val searches = ArrayDeque<Runnable>()
+
+    /**
+     * True to make the executor reject the next search.
+     */
+    private var rejectSearch = false
+
+    /**
+     * Queries delivered to the result listener.
+     */
+    private val deliveredQueries = ArrayList<String>()
+
+    /**
+     * [Mentions] searching a [MentionSuggestionIndex].
+     */
+    private lateinit var mentions: Mentions
+
+    @Before
+    fun setUp() {
+        val index = MentionSuggestionIndex(Arrays.asList(createMockMention(0, "Brent Watson"),
+                createMockMention(0, "Doug Tabuchi")))
+        mentions = Mentions.Builder(RuntimeEnvironment.application,
+                EditText(RuntimeEnvironment.application))
+                .suggestionProvider(index, 10, SuggestionsResultListener<Mentionable> { query, _ ->
+                    deliveredQueries.add(query)
+                })
+                .suggestionExecutor(Executor {
+                    if (rejectSearch) {
+                        rejectSearch = false
+                        throw RejectedExecutionException()
+                    }
+                    searches.add(it)
+                })
+                .build()
+    }
+
+    /**
+     * Results of a search are delivered once it finished.
+     */
+    @Test
+    fun testResultsAreDelivered() {
+        mentions.queryReceived("Br")
+        assertTrue(deliveredQueries.isEmpty())
+
+        searches.poll().run()
+        assertEquals(listOf("Br"), deliveredQueries)
+    }
+
+    /**
+     * Only one search runs at a time. Queries received meanwhile wait and only the last one is
+     * searched. Results of a query that is no longer current are dropped.
+     */
+    @Test
+    fun testSearchesAreSingleFlight() {
+        mentions.queryReceived("B")
+        mentions.queryReceived("Br")
+        mentions.queryReceived("Bre")
+        assertEquals("More than one search was submitted.", 1, searches.size)
+
+        searches.poll().run()
+        assertTrue("Stale results were delivered.", deliveredQueries.isEmpty())
+        assertEquals(1, searches.size)
+
+        searches.poll().run()
+        assertEquals(listOf("Bre"), deliveredQueries)
+        assertTrue(searches.isEmpty())
+    }
+
+    /**
+     * The triggers of a [Mentions] instance share the single search in flight: a query of another
+     * trigger waits for it too.
+     */
+    @Test
+    fun testSearchesAreSingleFlightAcrossTriggers() {
+        val editText = EditText(RuntimeEnvironment.application)
+        val channels = MentionSuggestionIndex(Arrays.asList(createMockMention(0, "general")))
+        Mentions.Builder(RuntimeEnvironment.application, editText)
+                .suggestionProvider(MentionSuggestionIndex(Arrays.asList(createMockMention(0,
+                        "Brent Watson"))), 10, SuggestionsResultListener<Mentionable> { query, _ ->
+                    deliveredQueries.add(query)
+                })
+                .trigger('#', android.R.color.holo_blue_dark, channels, 10,
+                        SuggestionsResultListener<Mentionable> { query, _ ->
+                            deliveredQueries.add(query)
+                        })
+                .suggestionExecutor(Executor { searches.add(it) })
+                .build()
+
+        editText.text.append("Hi @Br")
+        editText.text.append(" #gen")
+        assertEquals("More than one search was submitted.", 1, searches.size)
+
+        searches.poll().run()
+        assertTrue("Stale results were delivered.", deliveredQueries.isEmpty())
+        searches.poll().run()
+        assertEquals(listOf("gen"), deliveredQueries)
+    }
+
+    /**
+     * A search rejected by the executor does not keep later queries from being searched.
+     */
+    @Test
+    fun testRejectedSearch() {
+        rejectSearch = true
+        mentions.queryReceived("B")
+        assertTrue(searches.isEmpty())
+
+        mentions.queryReceived("Br")
+        assertEquals(1, searches.size)
+        searches.poll().run()
+        assertEquals(listOf("Br"), deliveredQueries)
+    }
+
+    /**
+     * Queries a [SuggestionCache] can answer are delivered right away, the others are searched on
+     * the executor and cached.
+     */
+    @Test
+    fun testCachedResultsAreDeliveredRightAway() {
+        val index = MentionSuggestionIndex(Arrays.asList(createMockMention(0, "Brent Watson")))
+        val cached = Mentions.Builder(RuntimeEnvironment.application,
+                EditText(RuntimeEnvironment.application))
+                .suggestionProvider(SuggestionCache<Mentionable>(index, 10, 100, 60000, true), 10,
+                        SuggestionsResultListener<Mentionable> { query, _ ->
+                            deliveredQueries.add(query)
+                        })
+                .suggestionExecutor(Executor { searches.add(it) })
+                .build()
+
+        cached.queryReceived("B")
+        searches.poll().run()
+        assertEquals(listOf("B"), deliveredQueries)
+
+        cached.queryReceived("Br")
+        assertTrue("A cached query was searched.", searches.isEmpty())
+        assertEquals(listOf("B", "Br"), deliveredQueries)
+    }
+}
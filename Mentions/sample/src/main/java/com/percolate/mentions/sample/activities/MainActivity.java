@@ -138,6 +138,7 @@ public class MainActivity extends AppCompatActivity implements QueryListener, Su
 
                     // add comment to list
                     final Comment comment = new Comment();
+                    comment.setId(commentsAdapter.getItemCount());
                     comment.setComment(commentField.getText().toString());
                     comment.setMentions(mentions.getInsertedMentions());
                     commentsAdapter.add(comment);
@@ -3,42 +3,48 @@ package com.percolate.mentions.sample.adapters;
 import android.content.Context;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.widget.RecyclerView;
-import android.text.Spannable;
-import android.text.SpannableString;
-import android.text.style.ForegroundColorSpan;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import com.percolate.caffeine.ViewUtils;
+import com.percolate.mentions.MentionRenderer;
 import com.percolate.mentions.Mentionable;
 import com.percolate.mentions.sample.R;
 import com.percolate.mentions.sample.models.Comment;
 
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.List;
-
 /**
  * Adapter for added {@link Comment}s.
  */
 public class CommentsAdapter extends RecyclerArrayAdapter<Comment, CommentsAdapter.CommentViewHolder> {
 
+    /**
+     * Number of comments after the bound one rendered ahead of scrolling.
+     */
+    private static final int PREFETCH_DISTANCE = 10;
+
     /**
      * {@link Context}.
      */
     private final Context context;
 
     /**
-     * Orange color.
+     * Renders the comments with their {@link Mentionable}s highlighted in orange.
+     */
+    private final MentionRenderer mentionRenderer;
+
+    /**
+     * True once the comments are measured in the background like the bound views.
      */
-    private final int orange;
+    private boolean textMetricsSet;
 
     public CommentsAdapter(final Context context) {
         this.context = context;
-        this.orange = ContextCompat.getColor(context, R.color.mentions_default_color);
+        this.mentionRenderer = new MentionRenderer(
+                ContextCompat.getColor(context, R.color.mentions_default_color), 200);
     }
 
     /**
@@ -51,38 +57,28 @@ public class CommentsAdapter extends RecyclerArrayAdapter<Comment, CommentsAdapt
     }
 
     /**
-     * Display comment and commenter's image. Highlight any {@link Mentionable}s in the {@link Comment}s.
+     * Display comment and commenter's image. Highlight any {@link Mentionable}s in the
+     * {@link Comment}s, and render and measure the next comments in the background so they are
+     * ready when scrolled to.
      */
     @Override
     public void onBindViewHolder(CommentViewHolder holder, int position) {
         final Comment comment = getItem(position);
         if(comment != null && StringUtils.isNotBlank(comment.getComment())) {
-            holder.comment.setText(comment.getComment());
-            highlightMentions(holder.comment, comment.getMentions());
+            mentionRenderer.bind(holder.comment, comment.getId(), comment.getVersion(),
+                    comment.getComment(), comment.getMentions());
         }
-    }
-
-    /**
-     * Highlights all the {@link Mentionable}s in the test {@link Comment}.
-     */
-    private void highlightMentions(final TextView commentTextView, final List<Mentionable> mentions) {
-        if(commentTextView != null && mentions != null && !mentions.isEmpty()) {
-            final Spannable spannable = new SpannableString(commentTextView.getText());
-
-            for (Mentionable mention: mentions) {
-                if (mention != null) {
-                    final int start = mention.getMentionOffset();
-                    final int end = start + mention.getMentionLength();
 
-                    if (commentTextView.length() >= end) {
-                        spannable.setSpan(new ForegroundColorSpan(orange), start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-                        commentTextView.setText(spannable, TextView.BufferType.SPANNABLE);
-                    } else {
-                        //Something went wrong.  The expected text that we're trying to highlight does not
-                        // match the actual text at that position.
-                        Log.w("Mentions Sample", "Mention lost. [" + mention + "]");
-                    }
-                }
+        if (!textMetricsSet && holder.comment.getWidth() > 0) {
+            mentionRenderer.setTextMetrics(holder.comment);
+            textMetricsSet = true;
+        }
+        final int last = Math.min(position + PREFETCH_DISTANCE, getItemCount() - 1);
+        for (int i = position + 1; i <= last; i++) {
+            final Comment next = getItem(i);
+            if (next != null && StringUtils.isNotBlank(next.getComment())) {
+                mentionRenderer.prefetch(next.getId(), next.getVersion(), next.getComment(),
+                        next.getMentions());
             }
         }
     }
@@ -12,6 +12,13 @@ import java.util.List;
  */
 public class Comment {
 
+    private long id;
+
+    /**
+     * Incremented whenever the comment is edited.
+     */
+    private long version;
+
     private String comment;
 
     private List<Mentionable> mentions;
@@ -21,6 +28,22 @@ public class Comment {
         return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
     }
 
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public String getComment() {
         return comment;
     }